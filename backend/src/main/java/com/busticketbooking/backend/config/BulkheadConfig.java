@@ -0,0 +1,26 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.service.Bulkhead;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * One bulkhead per blocking dependency. SMTP has none here because the mail
+ * dispatcher already caps its in-flight batches (mail.dispatch.concurrency).
+ */
+@Configuration
+public class BulkheadConfig {
+
+    @Bean
+    public Bulkhead firestoreBulkhead(@Value("${bulkhead.firestore.max-concurrent:64}") int maxConcurrent,
+                                      @Value("${bulkhead.firestore.max-wait-millis:100}") long maxWaitMillis) {
+        return new Bulkhead("firestore", maxConcurrent, maxWaitMillis);
+    }
+
+    @Bean
+    public Bulkhead razorpayBulkhead(@Value("${bulkhead.razorpay.max-concurrent:32}") int maxConcurrent,
+                                     @Value("${bulkhead.razorpay.max-wait-millis:100}") long maxWaitMillis) {
+        return new Bulkhead("razorpay", maxConcurrent, maxWaitMillis);
+    }
+}
@@ -0,0 +1,65 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.service.BusService;
+import com.busticketbooking.backend.service.ClusterCoordinator;
+import com.busticketbooking.backend.service.ClusterService;
+import com.busticketbooking.backend.service.EmbeddedCoordinator;
+import com.busticketbooking.backend.service.StandaloneCoordinator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+import java.time.Duration;
+
+/**
+ * Cluster membership and request routing. To coordinate through an external
+ * service, implement {@link ClusterCoordinator} and return it from
+ * {@link #clusterCoordinator}.
+ */
+@Slf4j
+@Configuration
+public class ClusterConfig {
+
+    // "standalone" for a single node, "embedded" for several nodes in one JVM
+    @Value("${cluster.coordinator:standalone}")
+    private String coordinator;
+
+    @Value("${cluster.name:zybus}")
+    private String clusterName;
+
+    @Value("${cluster.secret:}")
+    private String secret;
+
+    @Bean
+    public ClusterCoordinator clusterCoordinator() {
+        if ("standalone".equalsIgnoreCase(coordinator)) {
+            return new StandaloneCoordinator();
+        }
+        // Nodes trust each other's forwarded requests and handoffs by this shared secret
+        if (secret.isBlank()) {
+            throw new IllegalStateException("cluster.secret must be set when cluster.coordinator is " + coordinator);
+        }
+        if ("embedded".equalsIgnoreCase(coordinator)) {
+            log.info("Cluster: using embedded coordinator for cluster {}", clusterName);
+            return new EmbeddedCoordinator(clusterName);
+        }
+        throw new IllegalStateException("Unknown cluster.coordinator: " + coordinator);
+    }
+
+    @Bean
+    public FilterRegistrationBean<ClusterFilter> clusterFilter(ClusterService clusterService, BusService busService,
+                                                               ObjectMapper objectMapper,
+                                                               @Value("${cluster.forward-timeout-ms:10000}") long forwardTimeoutMillis) {
+        FilterRegistrationBean<ClusterFilter> registration = new FilterRegistrationBean<>(
+                new ClusterFilter(clusterService, busService, objectMapper, Duration.ofMillis(forwardTimeoutMillis)));
+        registration.addUrlPatterns("/api/buses/*", "/api/bookings", "/api/payments/*", "/api/auth/*");
+        registration.setName("clusterFilter");
+        // After the rate limit, so requests are limited where they arrive rather than where they are served
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE);
+        return registration;
+    }
+}
@@ -0,0 +1,299 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.service.BusService;
+import com.busticketbooking.backend.service.ClusterCoordinator.Member;
+import com.busticketbooking.backend.service.ClusterService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.AsyncContext;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Sends requests that touch a trip's seats to the node that owns the trip.
+ *
+ * The trip comes from the path (seat map, fares and seat stream) or from the
+ * busId and date in the JSON body (bookings, payment orders, and payment
+ * verification when the client includes them); the date defaults to the bus's
+ * scheduled date, as in the controllers. Owned trips go down the chain as usual.
+ * Other trips are proxied to the owner once: a forwarded request that reaches
+ * a node which does not own the trip (the view is changing) gets a 503, as does
+ * any request for a partition still waiting for its handoff.
+ *
+ * OTP requests are routed the same way by email address, so the node that
+ * issued a code is the one that checks it. Pending OTPs are not handed off; a
+ * code issued just before its address moves has to be requested again.
+ */
+@Slf4j
+public class ClusterFilter extends OncePerRequestFilter {
+
+    private static final Pattern TRIP_PATH = Pattern.compile("^/api/buses/([^/]+)/(seats|fares|seats/stream)$");
+    private static final Set<String> TRIP_POSTS = Set.of("/api/bookings", "/api/payments/create-order", "/api/payments/verify");
+    private static final Set<String> OTP_POSTS = Set.of("/api/auth/send-otp", "/api/auth/verify-otp");
+    // Hop-by-hop headers, and the ones HttpClient sets itself
+    private static final Set<String> SKIPPED_HEADERS = Set.of("connection", "content-length", "expect", "host",
+            "upgrade", "keep-alive", "transfer-encoding", "te", "trailer", "http2-settings",
+            "x-cluster-node", "x-cluster-token");
+
+    private static final String MOVING = "Seats for this trip are moving between servers, try again shortly";
+    private static final String UNREACHABLE = "Could not reach the server for this trip, try again shortly";
+
+    private final ClusterService clusterService;
+    private final BusService busService;
+    private final ObjectMapper objectMapper;
+    private final Duration forwardTimeout;
+    private final HttpClient client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+
+    public ClusterFilter(ClusterService clusterService, BusService busService, ObjectMapper objectMapper, Duration forwardTimeout) {
+        this.clusterService = clusterService;
+        this.busService = busService;
+        this.objectMapper = objectMapper;
+        this.forwardTimeout = forwardTimeout;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !clusterService.isClustered() || "OPTIONS".equals(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String busId;
+        String date;
+        byte[] body = null;
+        Matcher path = TRIP_PATH.matcher(request.getRequestURI());
+        if ("GET".equals(request.getMethod()) && path.matches()) {
+            busId = path.group(1);
+            date = request.getParameter("date");
+        } else if ("POST".equals(request.getMethod()) && TRIP_POSTS.contains(request.getRequestURI())) {
+            body = request.getInputStream().readAllBytes();
+            JsonNode json = readJson(body);
+            busId = json != null && json.hasNonNull("busId") ? json.get("busId").asText() : null;
+            date = json != null && json.hasNonNull("date") ? json.get("date").asText() : null;
+            request = new CachedBodyRequest(request, body);
+        } else if ("POST".equals(request.getMethod()) && OTP_POSTS.contains(request.getRequestURI())) {
+            body = request.getInputStream().readAllBytes();
+            JsonNode json = readJson(body);
+            String email = json != null && json.hasNonNull("email") ? json.get("email").asText() : null;
+            request = new CachedBodyRequest(request, body);
+            if (email == null || email.isBlank()) {
+                chain.doFilter(request, response);
+                return;
+            }
+            // OTPs live in memory only, so there is nothing to wait for after a view change
+            route(clusterService.partitionOfEmail(email), false, request, response, chain, body);
+            return;
+        } else {
+            chain.doFilter(request, response);
+            return;
+        }
+
+        Bus bus = busId != null ? busService.getBusById(busId) : null;
+        if (bus == null) {
+            // Not a trip request, or an unknown bus; the controller answers it
+            chain.doFilter(request, response);
+            return;
+        }
+        route(clusterService.partitionOf(busId, date != null ? date : bus.getDate()), true, request, response, chain, body);
+    }
+
+    // Serve the request here if this node owns the partition, otherwise proxy it to the owner
+    private void route(int partition, boolean waitForHandoff, HttpServletRequest request, HttpServletResponse response,
+                       FilterChain chain, byte[] body) throws ServletException, IOException {
+        clusterService.enter(partition);
+        Member owner = clusterService.ownerOf(partition);
+        if (owner == null) {
+            try {
+                if (waitForHandoff && clusterService.isPending(partition)) {
+                    unavailable(response, MOVING);
+                } else {
+                    chain.doFilter(request, response);
+                }
+            } finally {
+                clusterService.exit(partition);
+            }
+            return;
+        }
+        // A forwarded request does no work on this node, so it does not hold up a handoff
+        clusterService.exit(partition);
+        if (clusterService.isTrustedHop(request)) {
+            unavailable(response, MOVING);
+            return;
+        }
+        forward(owner, request, response, body);
+    }
+
+    private JsonNode readJson(byte[] body) {
+        try {
+            JsonNode json = objectMapper.readTree(body);
+            return json != null && json.isObject() ? json : null;
+        } catch (IOException e) {
+            // Let the controller report the bad body
+            return null;
+        }
+    }
+
+    private void forward(Member owner, HttpServletRequest request, HttpServletResponse response, byte[] body) throws IOException {
+        String query = request.getQueryString();
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(owner.url() + request.getRequestURI()
+                        + (query != null ? "?" + query : "")))
+                .method(request.getMethod(), body != null
+                        ? HttpRequest.BodyPublishers.ofByteArray(body)
+                        : HttpRequest.BodyPublishers.noBody())
+                .header(ClusterService.NODE_HEADER, clusterService.getNodeId())
+                .header(ClusterService.TOKEN_HEADER, clusterService.getSecret());
+        for (String name : Collections.list(request.getHeaderNames())) {
+            if (SKIPPED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) continue;
+            for (String value : Collections.list(request.getHeaders(name))) {
+                builder.header(name, value);
+            }
+        }
+        boolean stream = request.getRequestURI().endsWith("/seats/stream");
+        if (!stream) {
+            builder.timeout(forwardTimeout);
+        }
+        clusterService.recordForward();
+
+        HttpResponse<InputStream> upstream;
+        try {
+            upstream = client.send(builder.build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            unavailable(response, UNREACHABLE);
+            return;
+        } catch (IOException e) {
+            log.atWarn().addKeyValue("owner", owner.id()).log("Cluster: forward failed: {}", e.toString());
+            unavailable(response, UNREACHABLE);
+            return;
+        }
+
+        response.setStatus(upstream.statusCode());
+        for (Map.Entry<String, List<String>> header : upstream.headers().map().entrySet()) {
+            if (SKIPPED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT)) || header.getKey().startsWith(":")) continue;
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+        if (!stream) {
+            try (InputStream in = upstream.body()) {
+                in.transferTo(response.getOutputStream());
+            }
+            return;
+        }
+        // Relay the event stream without holding this request's thread
+        AsyncContext async = request.startAsync();
+        async.setTimeout(0);
+        Thread.ofVirtual().name("cluster-stream-relay").start(() -> relay(upstream.body(), response, async));
+    }
+
+    private static void relay(InputStream in, HttpServletResponse response, AsyncContext async) {
+        byte[] buffer = new byte[8192];
+        try (in) {
+            OutputStream out = response.getOutputStream();
+            int n;
+            while ((n = in.read(buffer)) >= 0) {
+                out.write(buffer, 0, n);
+                out.flush();
+            }
+        } catch (IOException e) {
+            // Either side went away; closing the upstream stream ends the other
+        } finally {
+            async.complete();
+        }
+    }
+
+    private static void unavailable(HttpServletResponse response, String message) throws IOException {
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"error\":\"" + message + "\"}");
+    }
+
+    // Replays a body this filter already read
+    private static final class CachedBodyRequest extends HttpServletRequestWrapper {
+        private final byte[] body;
+
+        CachedBodyRequest(HttpServletRequest request, byte[] body) {
+            super(request);
+            this.body = body;
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream in = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public boolean isFinished() {
+                    return in.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                // The whole body is already in memory, so it is available and read at once
+                @Override
+                public void setReadListener(ReadListener listener) {
+                    try {
+                        listener.onDataAvailable();
+                        listener.onAllDataRead();
+                    } catch (IOException e) {
+                        listener.onError(e);
+                    }
+                }
+
+                @Override
+                public int read() {
+                    return in.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return in.read(b, off, len);
+                }
+            };
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
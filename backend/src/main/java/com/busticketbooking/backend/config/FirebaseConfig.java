@@ -1,48 +1,140 @@
 package com.busticketbooking.backend.config;
 
 import com.google.auth.oauth2.GoogleCredentials;
+import com.google.cloud.firestore.Firestore;
 import com.google.firebase.FirebaseApp;
 import com.google.firebase.FirebaseOptions;
+import com.google.firebase.cloud.FirestoreClient;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
 import org.springframework.core.io.ClassPathResource;
 
-import javax.annotation.PostConstruct;
 import java.io.ByteArrayInputStream;
-import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
 import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Firebase Admin SDK bootstrap.
+ *
+ * Nothing is initialized while the context starts, so search is served as
+ * soon as Tomcat is up. The first {@link #getFirestore()} call reads the
+ * credentials and creates the FirebaseApp and Firestore client; later calls
+ * return the memoized client. Once the application is ready a virtual thread
+ * does that first call (and optionally one small read to open the Firestore
+ * channel) in the background. The "firebase" health indicator is part of the
+ * readiness group and reports OUT_OF_SERVICE until the warm-up has finished.
+ */
+@Slf4j
 @Configuration
 public class FirebaseConfig {
 
-    @PostConstruct
-    public void initialize() {
+    @Value("${firebase.warmup.enabled:true}")
+    private boolean warmupEnabled;
+
+    @Value("${firebase.warmup.query:true}")
+    private boolean warmupQuery;
+
+    @Value("${firebase.warmup.timeout-seconds:10}")
+    private long warmupTimeoutSeconds;
+
+    // A lock rather than synchronized: callers may be virtual threads, and credential loading does I/O
+    private final ReentrantLock initLock = new ReentrantLock();
+    private volatile boolean initialized;
+    private volatile Firestore firestore;
+    private volatile boolean warm;
+
+    /**
+     * The Firestore client, initializing Firebase on first use.
+     *
+     * @return null if no credentials are configured or initialization failed
+     */
+    public Firestore getFirestore() {
+        if (!initialized) {
+            initialize();
+        }
+        return firestore;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        if (!warmupEnabled) {
+            warm = true;
+            return;
+        }
+        Thread.ofVirtual().name("firebase-warmup").start(() -> {
+            long start = System.nanoTime();
+            try {
+                Firestore db = getFirestore();
+                if (db != null && warmupQuery) {
+                    db.collection("bookings").limit(1).get().get(warmupTimeoutSeconds, TimeUnit.SECONDS);
+                }
+                log.info("Firebase warm-up finished in {} ms", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+            } catch (Exception e) {
+                log.warn("Firebase warm-up query failed, the first request will open the connection: {}", e.getMessage());
+            } finally {
+                warm = true;
+            }
+        });
+    }
+
+    @Bean
+    public HealthIndicator firebaseHealthIndicator() {
+        return () -> {
+            if (!warm) {
+                return Health.outOfService().withDetail("firestore", "warming up").build();
+            }
+            // Without Firestore the app still serves search and the other booking stores, so stay UP
+            return Health.up().withDetail("firestore", firestore != null ? "ready" : "unavailable").build();
+        };
+    }
+
+    private void initialize() {
+        initLock.lock();
+        try {
+            if (!initialized) {
+                firestore = connect();
+                initialized = true;
+            }
+        } finally {
+            initLock.unlock();
+        }
+    }
+
+    private Firestore connect() {
         try {
             InputStream serviceAccount = null;
-            
+
             // First try: Environment variable (for production - Render, Heroku, etc.)
             String firebaseCredentialsJson = System.getenv("FIREBASE_CREDENTIALS_JSON");
             String firebaseCredentialsBase64 = System.getenv("FIREBASE_CREDENTIALS_BASE64");
-            
+
             if (firebaseCredentialsJson != null && !firebaseCredentialsJson.isEmpty()) {
                 // Raw JSON from environment variable
                 serviceAccount = new ByteArrayInputStream(firebaseCredentialsJson.getBytes(StandardCharsets.UTF_8));
-                System.out.println("Firebase: Using credentials from FIREBASE_CREDENTIALS_JSON env variable");
+                log.info("Firebase: using credentials from FIREBASE_CREDENTIALS_JSON env variable");
             } else if (firebaseCredentialsBase64 != null && !firebaseCredentialsBase64.isEmpty()) {
                 // Base64 encoded JSON from environment variable
                 byte[] decoded = Base64.getDecoder().decode(firebaseCredentialsBase64);
                 serviceAccount = new ByteArrayInputStream(decoded);
-                System.out.println("Firebase: Using credentials from FIREBASE_CREDENTIALS_BASE64 env variable");
+                log.info("Firebase: using credentials from FIREBASE_CREDENTIALS_BASE64 env variable");
             } else {
                 // Fallback: Try to load from classpath (for local development)
                 ClassPathResource resource = new ClassPathResource("serviceAccountKey.json");
                 if (resource.exists()) {
                     serviceAccount = resource.getInputStream();
-                    System.out.println("Firebase: Using credentials from serviceAccountKey.json file");
+                    log.info("Firebase: using credentials from serviceAccountKey.json file");
                 }
             }
-            
+
             if (serviceAccount != null) {
                 FirebaseOptions options = FirebaseOptions.builder()
                         .setCredentials(GoogleCredentials.fromStream(serviceAccount))
@@ -50,16 +142,17 @@ public class FirebaseConfig {
 
                 if (FirebaseApp.getApps().isEmpty()) {
                     FirebaseApp.initializeApp(options);
-                    System.out.println("Firebase Admin SDK initialized successfully.");
+                    log.info("Firebase Admin SDK initialized");
                 }
+                return FirestoreClient.getFirestore();
             } else {
-                System.out.println("Warning: No Firebase credentials found. Firebase Admin SDK not initialized.");
-                System.out.println("Set FIREBASE_CREDENTIALS_JSON or FIREBASE_CREDENTIALS_BASE64 environment variable for production.");
+                log.warn("No Firebase credentials found, Firebase Admin SDK not initialized. "
+                        + "Set FIREBASE_CREDENTIALS_JSON or FIREBASE_CREDENTIALS_BASE64 for production.");
             }
         } catch (Exception e) {
-            System.err.println("Warning: Firebase initialization failed. Continuing without Firebase.");
-            System.err.println("Error: " + e.getMessage());
+            log.warn("Firebase initialization failed, continuing without Firebase: {}", e.getMessage());
             // Don't crash the app if Firebase fails - just log and continue
         }
+        return null;
     }
 }
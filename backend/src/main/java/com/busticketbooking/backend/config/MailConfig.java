@@ -0,0 +1,35 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.service.LocalMailTransport;
+import com.busticketbooking.backend.service.MailTransport;
+import com.busticketbooking.backend.service.SmtpMailTransport;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.mail.javamail.JavaMailSender;
+
+@Slf4j
+@Configuration
+public class MailConfig {
+
+    @Autowired(required = false)
+    private JavaMailSender mailSender;
+
+    // "smtp" for real delivery, "local" to count messages without a mail server
+    @Value("${mail.transport:smtp}")
+    private String transport;
+
+    @Value("${mail.transport.local.latency-ms:0}")
+    private long localLatencyMs;
+
+    @Bean
+    public MailTransport mailTransport() {
+        if ("local".equalsIgnoreCase(transport)) {
+            log.info("Mail: using local transport, messages will not be delivered");
+            return new LocalMailTransport(localLatencyMs);
+        }
+        return new SmtpMailTransport(mailSender);
+    }
+}
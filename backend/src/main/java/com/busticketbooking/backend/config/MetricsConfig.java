@@ -0,0 +1,146 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.repository.BookingRepository;
+import com.busticketbooking.backend.service.Bulkhead;
+import com.busticketbooking.backend.service.BusService;
+import com.busticketbooking.backend.service.ClusterService;
+import com.busticketbooking.backend.service.FareEngine;
+import com.busticketbooking.backend.service.IdempotencyService;
+import com.busticketbooking.backend.service.MailDispatcher;
+import com.busticketbooking.backend.service.OtpService;
+import com.busticketbooking.backend.service.RateLimiter;
+import com.busticketbooking.backend.service.SearchResponseCache;
+import com.busticketbooking.backend.service.SeatFeed;
+import com.busticketbooking.backend.service.SeatHoldService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Gauges and counters read straight from the components that own the state,
+ * so nothing on the request path pays for them; they are sampled at scrape time.
+ * Timers for external calls live next to the calls themselves.
+ */
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public MeterBinder mailMetrics(MailDispatcher mailDispatcher) {
+        return registry -> {
+            for (MailDispatcher.Priority priority : MailDispatcher.Priority.values()) {
+                Gauge.builder("mail.queue.depth", mailDispatcher, d -> d.getQueueDepth(priority))
+                        .tag("priority", priority.name().toLowerCase(Locale.ROOT))
+                        .description("Emails waiting to be sent")
+                        .register(registry);
+            }
+            FunctionCounter.builder("mail.messages.sent", mailDispatcher, MailDispatcher::getSentCount)
+                    .register(registry);
+            FunctionCounter.builder("mail.messages.failed", mailDispatcher, MailDispatcher::getFailedCount)
+                    .description("Emails dropped after the last retry")
+                    .register(registry);
+            FunctionCounter.builder("mail.messages.rejected", mailDispatcher, MailDispatcher::getRejectedCount)
+                    .description("Emails refused because the queue was full")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder clusterMetrics(ClusterService clusterService) {
+        return registry -> {
+            Gauge.builder("cluster.partitions.owned", clusterService, ClusterService::getOwnedPartitions)
+                    .description("Trip partitions this node serves")
+                    .register(registry);
+            Gauge.builder("cluster.partitions.pending", clusterService, ClusterService::getPendingPartitions)
+                    .description("Partitions waiting for seats from their previous owner")
+                    .register(registry);
+            FunctionCounter.builder("cluster.requests.forwarded", clusterService, ClusterService::getForwardedCount)
+                    .description("Requests proxied to the node that owns the trip")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder pricingMetrics(FareEngine fareEngine) {
+        return registry -> {
+            Gauge.builder("fare.trips.priced", fareEngine, FareEngine::getTripCount)
+                    .description("Trips with a cached fare quote")
+                    .register(registry);
+            FunctionCounter.builder("fare.reprices", fareEngine, FareEngine::getRepricedCount)
+                    .description("Fare quotes computed")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder bookingMetrics(BookingRepository bookingRepository, SeatHoldService seatHoldService,
+                                      IdempotencyService idempotencyService, SeatFeed seatFeed) {
+        return registry -> {
+            Gauge.builder("booking.store.queue.depth", bookingRepository, BookingRepository::queueDepth)
+                    .description("Bookings waiting for their group commit")
+                    .register(registry);
+            Gauge.builder("seat.holds.active", seatHoldService, SeatHoldService::activeHolds)
+                    .description("Seat holds waiting for payment")
+                    .register(registry);
+            Gauge.builder("idempotency.entries", idempotencyService, IdempotencyService::size)
+                    .register(registry);
+            Gauge.builder("seat.feed.subscribers", seatFeed, SeatFeed::getSubscriberCount)
+                    .description("Open seat-map event streams")
+                    .register(registry);
+            FunctionCounter.builder("seat.feed.dropped", seatFeed, SeatFeed::getDroppedCount)
+                    .description("Streams closed because the client fell too far behind")
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public MeterBinder bulkheadMetrics(List<Bulkhead> bulkheads) {
+        return registry -> {
+            for (Bulkhead bulkhead : bulkheads) {
+                Gauge.builder("bulkhead.in.flight", bulkhead, Bulkhead::getInFlight)
+                        .tag("dependency", bulkhead.getName())
+                        .register(registry);
+                FunctionCounter.builder("bulkhead.rejected", bulkhead, Bulkhead::getRejectedCount)
+                        .tag("dependency", bulkhead.getName())
+                        .description("Calls refused because the dependency was at its concurrency limit")
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder rateLimitMetrics(List<RateLimiter> rateLimiters) {
+        return registry -> {
+            for (RateLimiter limiter : rateLimiters) {
+                Gauge.builder("rate.limit.keys", limiter, RateLimiter::size)
+                        .tag("limiter", limiter.getName())
+                        .register(registry);
+                FunctionCounter.builder("rate.limit.rejected", limiter, RateLimiter::getRejectedCount)
+                        .tag("limiter", limiter.getName())
+                        .description("Requests refused with 429")
+                        .register(registry);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder otpMetrics(OtpService otpService) {
+        return registry -> Gauge.builder("otp.pending", otpService, OtpService::pendingCount)
+                .description("OTPs issued and not yet used or swept")
+                .register(registry);
+    }
+
+    @Bean
+    public MeterBinder catalogueMetrics(BusService busService, SearchResponseCache searchResponseCache) {
+        return registry -> {
+            Gauge.builder("catalogue.trips", busService, BusService::getTripCount)
+                    .register(registry);
+            Gauge.builder("search.cache.entries", searchResponseCache, SearchResponseCache::size)
+                    .register(registry);
+        };
+    }
+}
@@ -0,0 +1,58 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.service.ClusterService;
+import com.busticketbooking.backend.service.RateLimiter;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+/**
+ * Token-bucket limits for endpoints that cost us something per call: auth
+ * (email sends), bookings and payments (Firestore and Razorpay). Bus search
+ * is served from cache and left unlimited.
+ */
+@Configuration
+public class RateLimitConfig {
+
+    @Value("${rate-limit.max-keys:100000}")
+    private int maxKeys;
+
+    @Value("${rate-limit.stripes:64}")
+    private int stripes;
+
+    @Bean
+    public RateLimiter authIpRateLimiter(@Value("${rate-limit.auth.per-ip.capacity:20}") int capacity,
+                                         @Value("${rate-limit.auth.per-ip.refill-per-minute:10}") double refillPerMinute) {
+        return new RateLimiter("auth-ip", capacity, refillPerMinute, maxKeys, stripes);
+    }
+
+    @Bean
+    public RateLimiter apiIpRateLimiter(@Value("${rate-limit.api.per-ip.capacity:120}") int capacity,
+                                        @Value("${rate-limit.api.per-ip.refill-per-minute:600}") double refillPerMinute) {
+        return new RateLimiter("api-ip", capacity, refillPerMinute, maxKeys, stripes);
+    }
+
+    @Bean
+    public RateLimiter otpEmailRateLimiter(@Value("${rate-limit.otp.per-email.capacity:3}") int capacity,
+                                           @Value("${rate-limit.otp.per-email.refill-per-minute:1}") double refillPerMinute) {
+        return new RateLimiter("otp-email", capacity, refillPerMinute, maxKeys, stripes);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(
+            @Qualifier("authIpRateLimiter") RateLimiter authLimiter,
+            @Qualifier("apiIpRateLimiter") RateLimiter apiLimiter,
+            ClusterService clusterService,
+            @Value("${rate-limit.enabled:true}") boolean enabled) {
+        FilterRegistrationBean<RateLimitFilter> registration =
+                new FilterRegistrationBean<>(new RateLimitFilter(authLimiter, apiLimiter, clusterService::isTrustedHop));
+        registration.addUrlPatterns("/api/auth/*", "/api/bookings/*", "/api/payments/*");
+        registration.setName("rateLimitFilter");
+        registration.setOrder(Ordered.LOWEST_PRECEDENCE - 1);
+        registration.setEnabled(enabled);
+        return registration;
+    }
+}
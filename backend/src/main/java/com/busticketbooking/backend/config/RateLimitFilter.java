@@ -0,0 +1,69 @@
+package com.busticketbooking.backend.config;
+
+import com.busticketbooking.backend.service.RateLimiter;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.function.Predicate;
+
+/**
+ * Per client IP rate limit, checked before a request reaches a controller.
+ *
+ * Auth endpoints (which send email) get a tighter bucket than booking and
+ * payment endpoints. Refused requests get a 429 with Retry-After and never
+ * take a request thread past this point. The client IP is the remote address;
+ * behind a proxy, set server.forward-headers-strategy so it is the real client.
+ * Requests forwarded by another node of the cluster were limited where they arrived.
+ */
+@Slf4j
+public class RateLimitFilter extends OncePerRequestFilter {
+
+    private final RateLimiter authLimiter;
+    private final RateLimiter apiLimiter;
+    private final Predicate<HttpServletRequest> exempt;
+
+    public RateLimitFilter(RateLimiter authLimiter, RateLimiter apiLimiter, Predicate<HttpServletRequest> exempt) {
+        this.authLimiter = authLimiter;
+        this.apiLimiter = apiLimiter;
+        this.exempt = exempt;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        // CORS preflights carry no work and browsers send one before many real requests
+        return "OPTIONS".equals(request.getMethod()) || exempt.test(request);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RateLimiter limiter = request.getRequestURI().startsWith("/api/auth/") ? authLimiter : apiLimiter;
+        String ip = request.getRemoteAddr();
+        long waitNanos = limiter.tryAcquire(ip);
+        if (waitNanos == 0) {
+            chain.doFilter(request, response);
+            return;
+        }
+        long retryAfter = RateLimiter.retryAfterSeconds(waitNanos);
+        log.atDebug().addKeyValue("limiter", limiter.getName()).addKeyValue("ip", ip)
+                .addKeyValue("retryAfter", retryAfter).log("Rate limited");
+        tooManyRequests(response, retryAfter);
+    }
+
+    static void tooManyRequests(HttpServletResponse response, long retryAfterSeconds) throws IOException {
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfterSeconds));
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        response.getWriter().write("{\"error\":\"Too many requests, try again in " + retryAfterSeconds + " seconds\"}");
+    }
+}
@@ -13,6 +13,7 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedOriginPatterns("*") // Allow all origins
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 .allowedHeaders("*")
+                .exposedHeaders("X-Total-Count", "X-Page", "X-Page-Size", "X-Next-Cursor", "Idempotent-Replayed", "ETag")
                 .allowCredentials(true);
     }
 }
@@ -1,10 +1,16 @@
 package com.busticketbooking.backend.controller;
 
-import com.busticketbooking.backend.service.EmailService;
+import com.busticketbooking.backend.service.OtpService;
+import com.busticketbooking.backend.service.OtpStore;
+import com.busticketbooking.backend.service.RateLimiter;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -13,22 +19,65 @@ import java.util.Map;
 public class AuthController {
 
     @Autowired
-    private EmailService emailService;
+    private OtpService otpService;
 
+    // Per address, on top of the per-IP limit in RateLimitFilter, so one inbox cannot be flooded from many IPs
+    @Autowired
+    @Qualifier("otpEmailRateLimiter")
+    private RateLimiter otpEmailRateLimiter;
+
+    /**
+     * Generate an OTP and email it. The code is never returned to the caller.
+     */
     @PostMapping("/send-otp")
     public ResponseEntity<?> sendOtp(@RequestBody Map<String, String> request) {
         String email = request.get("email");
-        String otp = request.get("otp");
 
-        if (email == null || otp == null) {
-            return ResponseEntity.badRequest().body(Map.of("error", "Email and OTP are required"));
+        if (email == null || email.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Email is required"));
+        }
+
+        long waitNanos = otpEmailRateLimiter.tryAcquire(email.trim().toLowerCase(Locale.ROOT));
+        if (waitNanos > 0) {
+            long retryAfter = RateLimiter.retryAfterSeconds(waitNanos);
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, String.valueOf(retryAfter))
+                    .body(Map.of("error", "Too many OTP requests for this email, try again in " + retryAfter + " seconds"));
         }
 
         try {
-            emailService.sendOtpEmail(email, otp);
+            if (!otpService.issue(email)) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .header(HttpHeaders.RETRY_AFTER, "60")
+                        .body(Map.of("error", "Too many pending OTPs, please try again shortly"));
+            }
             return ResponseEntity.ok(Map.of("message", "OTP sent successfully", "email", email));
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body(Map.of("error", "Failed to send OTP: " + e.getMessage()));
         }
     }
+
+    /**
+     * Check an OTP sent by send-otp. A correct code can be used once; after
+     * otp.max-attempts wrong guesses the code is locked and a new one is needed.
+     */
+    @PostMapping("/verify-otp")
+    public ResponseEntity<?> verifyOtp(@RequestBody Map<String, String> request) {
+        String email = request.get("email");
+        String otp = request.get("otp");
+
+        if (email == null || email.isBlank() || otp == null || otp.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Email and OTP are required"));
+        }
+
+        OtpStore.Result result = otpService.verify(email, otp);
+        return switch (result) {
+            case VERIFIED -> ResponseEntity.ok(Map.of("verified", true, "email", email));
+            case INVALID -> ResponseEntity.badRequest().body(Map.of("error", "Invalid OTP"));
+            case LOCKED -> ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Too many wrong attempts, request a new OTP"));
+            case EXPIRED -> ResponseEntity.status(HttpStatus.GONE)
+                    .body(Map.of("error", "OTP expired or not requested, request a new one"));
+        };
+    }
 }
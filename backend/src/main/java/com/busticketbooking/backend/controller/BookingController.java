@@ -1,13 +1,24 @@
 package com.busticketbooking.backend.controller;
 
+import com.busticketbooking.backend.model.BookingPage;
 import com.busticketbooking.backend.model.BookingRequest;
+import com.busticketbooking.backend.service.BookingExportService;
+import com.busticketbooking.backend.service.BookingPendingException;
 import com.busticketbooking.backend.service.BookingService;
+import com.busticketbooking.backend.service.BulkheadFullException;
+import com.busticketbooking.backend.service.FareChangedException;
+import com.busticketbooking.backend.service.IdempotencyService;
+import com.busticketbooking.backend.service.SeatUnavailableException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.Collections;
-import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -15,18 +26,121 @@ import java.util.Map;
 
 public class BookingController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+
     @Autowired
     private BookingService bookingService;
 
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private BookingExportService bookingExportService;
+
+    /**
+     * Create a booking. Clients that may retry should send an Idempotency-Key header;
+     * a repeated key returns the first response instead of booking again.
+     * The amount comes from the trip's fare quote; if totalAmount is sent and no
+     * longer matches it, the response is 409 with the current quote. If the store is
+     * slow to save the booking, the response is 202 with status "pending" and the
+     * bookingId, which appears in the user's history once saved.
+     */
     @PostMapping
-    public ResponseEntity<Map<String, String>> createBooking(@RequestBody BookingRequest request) {
-        String bookingId = bookingService.createBooking(request);
-        return ResponseEntity.ok(Collections.singletonMap("bookingId", bookingId));
+    public ResponseEntity<?> createBooking(@RequestBody BookingRequest request,
+                                           @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("bookings", IdempotencyService.principal(request.getUserId(), request.getEmail()),
+                idempotencyKey, request, () -> book(request));
     }
 
+    private ResponseEntity<?> book(BookingRequest request) {
+        try {
+            String bookingId = bookingService.createBooking(request);
+            return ResponseEntity.ok(Collections.singletonMap("bookingId", bookingId));
+        } catch (BookingPendingException e) {
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("status", "pending", "bookingId", e.getBookingId()));
+        } catch (FareChangedException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "quote", e.getQuote()));
+        } catch (SeatUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Collections.singletonMap("error", e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", e.getMessage()));
+        } catch (BulkheadFullException e) {
+            return busy(e);
+        }
+    }
+
+    /**
+     * A page of the user's bookings, newest first. When more exist, the X-Next-Cursor header carries
+     * the value to pass as cursor for the next page.
+     */
     @GetMapping("/user/{userId}")
-    public ResponseEntity<List<Map<String, Object>>> getUserBookings(@PathVariable String userId) {
-        List<Map<String, Object>> bookings = bookingService.getBookingsByUserId(userId);
-        return ResponseEntity.ok(bookings);
+    public ResponseEntity<?> getUserBookings(@PathVariable String userId,
+                                                                @RequestParam(defaultValue = "100") int limit,
+                                                                @RequestParam(required = false) String cursor) {
+        BookingPage page;
+        try {
+            page = bookingService.getBookingsByUserId(userId, Math.min(Math.max(1, limit), MAX_PAGE_SIZE), cursor);
+        } catch (BulkheadFullException e) {
+            return busy(e);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", "Invalid cursor"));
+        }
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header("X-Next-Cursor", page.getNextCursor());
+        }
+        return response.body(page.getBookings());
+    }
+
+    /**
+     * Stream every booking for a bus and/or travel date as NDJSON (default) or CSV.
+     * With reconcile=true each row also carries the Razorpay order status and amounts.
+     * Requires "Authorization: Bearer {booking.export.token}"; one export runs at a time.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<?> exportBookings(@RequestParam(required = false) String busId,
+                                            @RequestParam(required = false) String date,
+                                            @RequestParam(defaultValue = "ndjson") String format,
+                                            @RequestParam(defaultValue = "false") boolean reconcile,
+                                            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!bookingExportService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Collections.singletonMap("error", "Booking export is disabled"));
+        }
+        if (!bookingExportService.isAuthorized(authorization)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                    .body(Collections.singletonMap("error", "Export token required"));
+        }
+        BookingExportService.Format exportFormat;
+        try {
+            exportFormat = BookingExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", "format must be ndjson or csv"));
+        }
+        if (!bookingExportService.tryStart()) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "60")
+                    .body(Collections.singletonMap("error", "Another export is running"));
+        }
+        StreamingResponseBody body = out -> bookingExportService.export(busId, date, exportFormat, reconcile, out);
+        String fileName = "bookings" + (busId != null ? "-" + busId : "") + (date != null ? "-" + date : "")
+                + (exportFormat == BookingExportService.Format.CSV ? ".csv" : ".ndjson");
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat == BookingExportService.Format.CSV
+                        ? "text/csv;charset=UTF-8" : MediaType.APPLICATION_NDJSON_VALUE))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + fileName.replaceAll("[^A-Za-z0-9._-]", "_") + "\"")
+                .body(body);
+    }
+
+    private static ResponseEntity<Map<String, String>> busy(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(Collections.singletonMap("error", e.getMessage()));
     }
 }
@@ -1,28 +1,204 @@
 package com.busticketbooking.backend.controller;
 
 import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.BusSearchCriteria;
+import com.busticketbooking.backend.model.FareQuote;
 import com.busticketbooking.backend.service.BusService;
+import com.busticketbooking.backend.service.FareEngine;
+import com.busticketbooking.backend.service.SearchResponseCache;
+import com.busticketbooking.backend.service.SearchResponseCache.EncodedResponse;
+import com.busticketbooking.backend.service.SeatFeed;
+import com.busticketbooking.backend.service.SeatInventoryService;
+import com.busticketbooking.backend.service.SeatMap;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.List;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/buses")
 public class BusController {
 
+    private static final int MAX_PAGE_SIZE = 200;
+
     @Autowired
     private BusService busService;
 
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SearchResponseCache searchResponseCache;
+
+    @Autowired
+    private SeatFeed seatFeed;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    /**
+     * Search buses on a route. Paging details are returned in the
+     * X-Total-Count, X-Page and X-Page-Size headers so the body stays a plain list.
+     * With connections=earliest|cheapest the body is a list of itineraries
+     * (journeys of one or more trips, first departing on date) instead.
+     * Responses come pre-serialized from the search cache and carry an ETag.
+     */
     @GetMapping
-    public List<Bus> getBuses(@RequestParam(required = false) String from,
-                              @RequestParam(required = false) String to,
-                              @RequestParam(required = false) String date) {
-        return busService.searchBuses(from, to, date);
+    public ResponseEntity<byte[]> getBuses(@RequestParam(required = false) String from,
+                                              @RequestParam(required = false) String to,
+                                              @RequestParam(required = false) String date,
+                                              @RequestParam(required = false) String departAfter,
+                                              @RequestParam(required = false) String departBefore,
+                                              @RequestParam(required = false) Double minPrice,
+                                              @RequestParam(required = false) Double maxPrice,
+                                              @RequestParam(required = false) Double minRating,
+                                              @RequestParam(required = false) Boolean ac,
+                                              @RequestParam(required = false) Boolean sleeper,
+                                              @RequestParam(defaultValue = "departure") String sort,
+                                              @RequestParam(defaultValue = "0") int page,
+                                              @RequestParam(defaultValue = "50") int size,
+                                              @RequestParam(required = false) String connections,
+                                              @RequestParam(required = false) Integer minLayover,
+                                              @RequestParam(required = false) Integer maxLegs,
+                                              @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        BusSearchCriteria criteria = new BusSearchCriteria();
+        criteria.setFrom(from);
+        criteria.setTo(to);
+        criteria.setDate(date);
+        criteria.setDepartAfter(departAfter);
+        criteria.setDepartBefore(departBefore);
+        criteria.setMinPrice(minPrice);
+        criteria.setMaxPrice(maxPrice);
+        criteria.setMinRating(minRating);
+        criteria.setAc(ac);
+        criteria.setSleeper(sleeper);
+        criteria.setSortBy(sort);
+        criteria.setPage(Math.max(0, page));
+        criteria.setSize(Math.min(Math.max(1, size), MAX_PAGE_SIZE));
+        if (connections != null && !connections.isBlank()) {
+            criteria.setConnections("cheapest".equalsIgnoreCase(connections.trim()) ? "cheapest" : "earliest");
+            criteria.setMinLayover(minLayover);
+            criteria.setMaxLegs(maxLegs);
+        }
+
+        return respond(searchResponseCache.search(criteria), ifNoneMatch, acceptEncoding);
     }
-    
+
     @GetMapping("/{id}")
-    public Bus getBusById(@PathVariable String id) {
-        return busService.getBusById(id);
+    public ResponseEntity<byte[]> getBusById(@PathVariable String id,
+                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding) {
+        EncodedResponse response = searchResponseCache.bus(id);
+        if (response == null) {
+            return ResponseEntity.ok().build();
+        }
+        return respond(response, ifNoneMatch, acceptEncoding);
+    }
+
+    /**
+     * Live seat map for a trip. Date defaults to the bus's scheduled date; a date
+     * the bus does not run on gets 400.
+     */
+    @GetMapping("/{id}/seats")
+    public ResponseEntity<?> getSeats(@PathVariable String id,
+                                      @RequestParam(required = false) String date) {
+        Bus bus = busService.getBusById(id);
+        if (bus == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String tripDate;
+        try {
+            tripDate = busService.tripDate(bus, date);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+        SeatMap seatMap = seatInventoryService.peek(id, tripDate);
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("capacity", seatMap.capacity());
+        response.put("available", seatMap.available());
+        response.put("held", seatMap.seatsIn(SeatMap.HELD));
+        response.put("booked", seatMap.seatsIn(SeatMap.BOOKED));
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * Current per-seat fares for a trip. Date defaults to the bus's scheduled date.
+     * The quote changes with occupancy; order and booking amounts are checked against it.
+     */
+    @GetMapping("/{id}/fares")
+    public ResponseEntity<?> getFares(@PathVariable String id,
+                                      @RequestParam(required = false) String date) {
+        Bus bus = busService.getBusById(id);
+        if (bus == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String tripDate;
+        try {
+            tripDate = busService.tripDate(bus, date);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(Collections.singletonMap("error", e.getMessage()));
+        }
+        FareQuote quote = fareEngine.quote(id, tripDate, seatInventoryService.peek(id, tripDate));
+        return ResponseEntity.ok().cacheControl(CacheControl.noCache()).body(quote);
+    }
+
+    /**
+     * Seat map updates as server-sent events: a "snapshot" event with the full map,
+     * then "delta" events with the new state of each seat that changed.
+     */
+    @GetMapping(value = "/{id}/seats/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamSeats(@PathVariable String id,
+                                                  @RequestParam(required = false) String date) {
+        Bus bus = busService.getBusById(id);
+        if (bus == null) {
+            return ResponseEntity.notFound().build();
+        }
+        String tripDate;
+        try {
+            tripDate = busService.tripDate(bus, date);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        // Subscribers follow the live map, so this one is created if needed
+        SseEmitter emitter = seatFeed.subscribe(id, tripDate, seatInventoryService.getSeatMap(id, tripDate));
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noCache())
+                // Stop nginx-style proxies from buffering the stream
+                .header("X-Accel-Buffering", "no")
+                .body(emitter);
+    }
+
+    // 304 when the client already has this version, otherwise the cached bytes (gzipped if accepted)
+    private static ResponseEntity<byte[]> respond(EncodedResponse response, String ifNoneMatch, String acceptEncoding) {
+        if (ifNoneMatch != null && (ifNoneMatch.contains(response.eTag()) || ifNoneMatch.trim().equals("*"))) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(response.eTag())
+                    .cacheControl(CacheControl.noCache())
+                    .build();
+        }
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .eTag(response.eTag())
+                .cacheControl(CacheControl.noCache())
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        response.headers().forEach(builder::header);
+        if (response.gzipped() != null && acceptEncoding != null && acceptEncoding.contains("gzip")) {
+            return builder.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(response.gzipped());
+        }
+        return builder.body(response.body());
     }
 }
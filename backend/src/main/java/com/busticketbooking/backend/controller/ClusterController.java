@@ -0,0 +1,51 @@
+package com.busticketbooking.backend.controller;
+
+import com.busticketbooking.backend.model.PartitionHandoff;
+import com.busticketbooking.backend.service.ClusterService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Node-to-node endpoints. Only callers presenting the cluster secret are served.
+ */
+@RestController
+@RequestMapping("/internal/cluster")
+public class ClusterController {
+
+    @Autowired
+    private ClusterService clusterService;
+
+    /**
+     * This node's view: members, epoch, and how many partitions it owns or is waiting for.
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status(HttpServletRequest request) {
+        if (!clusterService.isTrustedHop(request)) {
+            return forbidden();
+        }
+        return ResponseEntity.ok(clusterService.status());
+    }
+
+    /**
+     * Seats and holds from the previous owner of some partitions.
+     */
+    @PostMapping("/handoff")
+    public ResponseEntity<Map<String, Object>> handoff(@RequestBody PartitionHandoff handoff, HttpServletRequest request) {
+        if (!clusterService.isTrustedHop(request)) {
+            return forbidden();
+        }
+        clusterService.acceptHandoff(handoff);
+        return ResponseEntity.ok(Collections.singletonMap("status", "accepted"));
+    }
+
+    private static ResponseEntity<Map<String, Object>> forbidden() {
+        return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                .body(Collections.singletonMap("error", "Not a member of this cluster"));
+    }
+}
@@ -1,43 +1,117 @@
 package com.busticketbooking.backend.controller;
 
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.SeatHold;
+import com.busticketbooking.backend.service.BookingExportService;
+import com.busticketbooking.backend.service.BookingPendingException;
+import com.busticketbooking.backend.service.BookingService;
+import com.busticketbooking.backend.service.BulkheadFullException;
+import com.busticketbooking.backend.service.BusService;
+import com.busticketbooking.backend.service.FareChangedException;
+import com.busticketbooking.backend.service.FareEngine;
+import com.busticketbooking.backend.service.IdempotencyService;
 import com.busticketbooking.backend.service.PaymentService;
+import com.busticketbooking.backend.service.SeatHoldService;
+import com.busticketbooking.backend.service.SeatInventoryService;
+import com.busticketbooking.backend.service.SeatUnavailableException;
 import com.razorpay.RazorpayException;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 
 @RestController
 @RequestMapping("/api/payments")
-
+@Slf4j
 public class PaymentController {
 
+    private static final int MAX_BATCH_VERIFICATIONS = 1_000;
+
     @Autowired
     private PaymentService paymentService;
 
+    @Autowired
+    private SeatHoldService seatHoldService;
+
+    @Autowired
+    private BookingService bookingService;
+
+    @Autowired
+    private BusService busService;
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private BookingExportService bookingExportService;
+
     /**
-     * Create a payment order
-     * Request body: { "amount": 100 } (amount in INR)
+     * Create a payment order for seats on a trip, holding them until the payment
+     * is verified or the hold expires.
+     * Request body: { "busId", "selectedSeats", "date", "userId", "email", "couponCode", "amount" }
+     * The order is for the trip's current fare quote. amount (INR) is what the client
+     * showed the user; if it no longer matches the quote the response is 409 with the quote.
+     * A repeated Idempotency-Key header returns the first order instead of creating another.
      */
     @PostMapping("/create-order")
-    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> request) {
+    public ResponseEntity<?> createOrder(@RequestBody Map<String, Object> request,
+                                         @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+        return idempotencyService.execute("create-order", IdempotencyService.principal(request.get("userId"), request.get("email")),
+                idempotencyKey, request, () -> placeOrder(request));
+    }
+
+    private ResponseEntity<?> placeOrder(Map<String, Object> request) {
+        String receipt = "rcpt_" + UUID.randomUUID().toString().substring(0, 8);
         try {
-            double amount = Double.parseDouble(request.get("amount").toString());
-            String receipt = "rcpt_" + UUID.randomUUID().toString().substring(0, 8);
-            
-            Map<String, Object> orderDetails = paymentService.createOrder(amount, receipt);
+            double amount = request.get("amount") != null ? Double.parseDouble(request.get("amount").toString()) : 0;
+            SeatHold hold = holdSeats(request, receipt, amount);
+
+            Map<String, Object> orderDetails = new HashMap<>(paymentService.createOrder(hold.getAmount(), receipt));
+            seatHoldService.attachOrder(receipt, String.valueOf(orderDetails.get("orderId")));
+            orderDetails.put("receipt", receipt);
+            orderDetails.put("holdExpiresAt", hold.getExpiresAt());
             return ResponseEntity.ok(orderDetails);
-            
+
+        } catch (FareChangedException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", e.getMessage(), "quote", e.getQuote()));
+        } catch (SeatUnavailableException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Collections.singletonMap("error", e.getMessage()));
+        } catch (BulkheadFullException e) {
+            seatHoldService.release(receipt);
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Collections.singletonMap("error", e.getMessage()));
         } catch (RazorpayException e) {
-            System.err.println("Razorpay error: " + e.getMessage());
+            seatHoldService.release(receipt);
+            log.atError().addKeyValue("receipt", receipt).log("Razorpay error: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
                     .body(Collections.singletonMap("error", "Failed to create payment order: " + e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            // Unknown bus, seat or coupon, or no trip given
+            seatHoldService.release(receipt);
+            return ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", e.getMessage()));
         } catch (Exception e) {
-            System.err.println("Error creating order: " + e.getMessage());
+            seatHoldService.release(receipt);
+            log.atWarn().addKeyValue("receipt", receipt).log("Error creating order: {}", e.getMessage());
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Collections.singletonMap("error", "Invalid request"));
         }
@@ -45,7 +119,13 @@ public class PaymentController {
 
     /**
      * Verify payment after completion
-     * Request body: { "orderId": "...", "paymentId": "...", "signature": "..." }
+     * Request body: { "orderId": "...", "paymentId": "...", "signature": "...", "busId": "...", "date": "..." }
+     * The seats held for the order are converted into a booking; verifying the same order
+     * again returns the same bookingId. If the hold lapsed before the payment was verified,
+     * or its seats could not be booked, the payment is recorded for a refund and the
+     * response is 409 with status "hold_expired" (or 500 for a failed booking). A booking
+     * that is slow to save gets 202 with status "pending" and its bookingId.
+     * busId and date are optional; in a cluster they route the request to the node holding the seats.
      */
     @PostMapping("/verify")
     public ResponseEntity<?> verifyPayment(@RequestBody Map<String, String> request) {
@@ -60,11 +140,115 @@ public class PaymentController {
 
         boolean isValid = paymentService.verifyPayment(orderId, paymentId, signature);
         
-        if (isValid) {
-            return ResponseEntity.ok(Collections.singletonMap("status", "success"));
-        } else {
+        if (!isValid) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body(Collections.singletonMap("error", "Payment verification failed"));
         }
+
+        SeatHold hold = seatHoldService.claim(orderId);
+        if (hold == null) {
+            return alreadySettled(orderId, paymentId);
+        }
+        try {
+            String bookingId = bookingService.createBookingFromHold(hold, paymentId);
+            seatHoldService.booked(orderId, bookingId);
+            return ResponseEntity.ok(Map.of("status", "success", "bookingId", bookingId));
+        } catch (BookingPendingException e) {
+            // Seats stay held until the save finishes; a failed save is refunded from there
+            seatHoldService.booked(orderId, e.getBookingId());
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .body(Map.of("status", "pending", "bookingId", e.getBookingId()));
+        } catch (RuntimeException e) {
+            log.atError().addKeyValue("orderId", orderId).setCause(e).log("Error booking held seats");
+            seatHoldService.bookingFailed(orderId);
+            String refundId = bookingService.recordRefundDue(orderId, paymentId, hold);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Map.of("status", "booking_failed", "refundId", refundId,
+                            "error", "Payment received but the booking could not be saved; it will be refunded"));
+        }
+    }
+
+    // No hold to claim: replay a booking already made for this order, otherwise the payment needs a refund
+    private ResponseEntity<?> alreadySettled(String orderId, String paymentId) {
+        SeatHoldService.Settled settled = seatHoldService.settled(orderId);
+        if (settled != null && settled.outcome() == SeatHoldService.Outcome.BOOKED) {
+            return ResponseEntity.ok(Map.of("status", "success", "bookingId", settled.bookingId()));
+        }
+        if (settled != null && settled.outcome() == SeatHoldService.Outcome.BOOKING) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .header(HttpHeaders.RETRY_AFTER, "1")
+                    .body(Map.of("status", "processing", "error", "This payment is still being booked"));
+        }
+        String refundId = bookingService.recordRefundDue(orderId, paymentId, settled != null ? settled.hold() : null);
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(Map.of("status", "hold_expired", "refundId", refundId,
+                        "error", "Payment received but the seat hold expired; it will be refunded"));
+    }
+
+    /**
+     * Verify a batch of payment signatures for reconciliation jobs.
+     * Request body: [ { "orderId": "...", "paymentId": "...", "signature": "..." }, ... ]
+     * Response: { "results": [true, false, ...], "valid": n, "invalid": m } in request order.
+     * Only checks signatures; no seats are booked. Requires the export token,
+     * like the booking export it reconciles against.
+     */
+    @PostMapping("/verify-batch")
+    public ResponseEntity<?> verifyPayments(@RequestBody List<Map<String, String>> payments,
+                                            @RequestHeader(value = HttpHeaders.AUTHORIZATION, required = false) String authorization) {
+        if (!bookingExportService.isEnabled()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN)
+                    .body(Collections.singletonMap("error", "Batch verification is disabled"));
+        }
+        if (!bookingExportService.isAuthorized(authorization)) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED)
+                    .header(HttpHeaders.WWW_AUTHENTICATE, "Bearer")
+                    .body(Collections.singletonMap("error", "Export token required"));
+        }
+        if (payments.size() > MAX_BATCH_VERIFICATIONS) {
+            return ResponseEntity.badRequest()
+                    .body(Collections.singletonMap("error", "At most " + MAX_BATCH_VERIFICATIONS + " payments per batch"));
+        }
+        boolean[] results = paymentService.verifyPayments(payments);
+        int valid = 0;
+        for (boolean result : results) {
+            if (result) valid++;
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("results", results);
+        response.put("valid", valid);
+        response.put("invalid", results.length - valid);
+        return ResponseEntity.ok(response);
+    }
+
+    // Price the seats, then hold them; the amount is checked before the hold changes occupancy
+    private SeatHold holdSeats(Map<String, Object> request, String receipt, double amount) {
+        Object seats = request.get("selectedSeats");
+        if (request.get("busId") == null || !(seats instanceof List<?> seatList) || seatList.isEmpty()) {
+            throw new IllegalArgumentException("busId and selectedSeats are required");
+        }
+        String busId = request.get("busId").toString();
+        Bus bus = busService.getBusById(busId);
+        if (bus == null) {
+            throw new IllegalArgumentException("Unknown bus: " + busId);
+        }
+        List<Integer> seatNumbers = new ArrayList<>();
+        for (Object seat : seatList) {
+            seatNumbers.add(Integer.parseInt(seat.toString()));
+        }
+
+        String date = busService.tripDate(bus, request.get("date") != null ? request.get("date").toString() : null);
+        String couponCode = request.get("couponCode") != null ? request.get("couponCode").toString() : null;
+        long amountPaise = fareEngine.checkAmount(busId, date, seatInventoryService.getSeatMap(busId, date),
+                seatNumbers, couponCode, amount);
+
+        SeatHold hold = new SeatHold();
+        hold.setReceipt(receipt);
+        hold.setBusId(busId);
+        hold.setDate(date);
+        hold.setSeats(seatNumbers);
+        hold.setUserId(request.get("userId") != null ? request.get("userId").toString() : null);
+        hold.setEmail(request.get("email") != null ? request.get("email").toString() : null);
+        hold.setAmount(amountPaise / 100.0);
+        return seatHoldService.hold(hold);
     }
 }
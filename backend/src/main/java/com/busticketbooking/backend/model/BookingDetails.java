@@ -0,0 +1,26 @@
+package com.busticketbooking.backend.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class BookingDetails {
+    private String id;
+    private String userId;
+    private String email;
+    private String busId;
+    private List<Integer> selectedSeats;
+    private double totalAmount;
+    private String date;
+    private String status;
+    private String orderId;
+    private String paymentId;
+    private String bookedAt;
+
+    // Filled in from the bus catalogue
+    private String busName;
+    private String busType;
+    private String departure;
+    private String arrival;
+}
@@ -0,0 +1,17 @@
+package com.busticketbooking.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BookingPage {
+    private List<BookingDetails> bookings;
+    // Where the next page starts, or null when there are no more pages. For a user's history it is
+    // an encoded HistoryCursor (bookedAt and id of the last booking); for a trip, the last booking's id
+    private String nextCursor;
+}
@@ -9,6 +9,7 @@ public class BookingRequest {
     private String email;
     private String busId;
     private List<Integer> selectedSeats;
-    private double totalAmount;
+    private double totalAmount;   // optional; checked against the fare quote, which sets it
+    private String couponCode;
     private String date;
 }
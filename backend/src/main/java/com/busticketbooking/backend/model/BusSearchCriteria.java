@@ -0,0 +1,23 @@
+package com.busticketbooking.backend.model;
+
+import lombok.Data;
+
+@Data
+public class BusSearchCriteria {
+    private String from;
+    private String to;
+    private String date;
+    private String departAfter;   // "HH:mm", inclusive
+    private String departBefore;  // "HH:mm", inclusive
+    private Double minPrice;
+    private Double maxPrice;
+    private Double minRating;
+    private Boolean ac;
+    private Boolean sleeper;
+    private String sortBy = "departure"; // departure | price | rating
+    private int page = 0;
+    private int size = 50;
+    private String connections;   // null: direct trips only | earliest | cheapest
+    private Integer minLayover;   // minutes between legs of a connection
+    private Integer maxLegs;
+}
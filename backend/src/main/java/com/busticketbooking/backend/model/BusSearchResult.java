@@ -0,0 +1,17 @@
+package com.busticketbooking.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class BusSearchResult {
+    private List<Bus> buses;
+    private long total;
+    private int page;
+    private int size;
+}
@@ -0,0 +1,21 @@
+package com.busticketbooking.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class FareQuote {
+    private String busId;
+    private String date;
+    private long version;          // bumped each time the trip's fares are repriced
+    private double basePrice;      // catalogue fare per seat
+    private double[] seatPrices;   // INR, index 0 is seat 1
+    private double minPrice;
+    private double maxPrice;
+    private int occupancyPercent;
+    private int daysToDeparture;   // -1 if the date could not be read
+    private String validUntil;     // ISO instant; a new quote is computed after this even without seat changes
+}
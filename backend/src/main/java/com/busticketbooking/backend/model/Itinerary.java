@@ -0,0 +1,19 @@
+package com.busticketbooking.backend.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class Itinerary {
+    private List<Bus> legs;
+    private double totalPrice;
+    private String departAt;      // first departure, "yyyy-MM-ddTHH:mm"
+    private String arriveAt;      // final arrival, "yyyy-MM-ddTHH:mm"
+    private int durationMinutes;
+    private int transfers;
+}
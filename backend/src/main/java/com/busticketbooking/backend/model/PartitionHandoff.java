@@ -0,0 +1,25 @@
+package com.busticketbooking.backend.model;
+
+import lombok.Data;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Seat state a node sends to the new owner of partitions it no longer owns.
+ */
+@Data
+public class PartitionHandoff {
+    private String fromNode;
+    private long epoch;            // view that moved the partitions
+    private int[] partitions;
+    private List<Trip> trips = new ArrayList<>();
+    private List<SeatHold> holds = new ArrayList<>();
+
+    @Data
+    public static class Trip {
+        private String busId;
+        private String date;
+        private List<Integer> booked;
+    }
+}
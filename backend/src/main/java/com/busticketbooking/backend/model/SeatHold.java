@@ -0,0 +1,18 @@
+package com.busticketbooking.backend.model;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class SeatHold {
+    private String receipt;
+    private String orderId;
+    private String userId;
+    private String email;
+    private String busId;
+    private String date;
+    private List<Integer> seats;
+    private double amount;
+    private long expiresAt;
+}
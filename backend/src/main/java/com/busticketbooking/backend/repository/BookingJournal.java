@@ -0,0 +1,427 @@
+package com.busticketbooking.backend.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local write-ahead journal of seat events, kept in memory-mapped segment files.
+ *
+ * Every event is one fixed-size 128-byte record ending in a CRC32C. Appends reserve a
+ * slot with a single atomic increment and copy the record into the mapped segment, so
+ * an append costs a memory copy; the OS owns the pages from then on and a background
+ * flush forces them to disk every {@code booking.journal.flush-millis}. On startup the
+ * sealed segments are replayed to rebuild booked seats without touching Firestore.
+ * Compaction folds sealed segments into a single snapshot segment.
+ *
+ * A record's sequence number is its segment's first sequence plus its slot, so
+ * slot order, sequence order and replay order are the same. Appends take no lock,
+ * so two events for the same trip can land in either order; each event also carries
+ * the trip sequence its caller stamped, which orders a trip's events on replay.
+ * A seat is booked when its BOOKED events (and snapshot) outnumber its CANCELLED
+ * ones, which does not depend on the order the events landed in.
+ *
+ * Record layout:
+ * <pre>
+ *   0  long  sequence        56  ref (24 bytes)
+ *   8  long  timestamp       80  seat bitmap (2 longs, seats 1-128)
+ *  16  byte  event type      96  long  trip sequence
+ *  17  byte  busId length   104  reserved
+ *  18  byte  date length    124  int CRC32C of bytes 0-123
+ *  19  byte  ref length
+ *  20  busId (24 bytes)
+ *  44  date (12 bytes)
+ * </pre>
+ */
+@Slf4j
+@Repository
+public class BookingJournal {
+
+    public enum EventType { HELD, RELEASED, BOOKED, CANCELLED, SNAPSHOT }
+
+    public record Event(long sequence, long tripSequence, long timestamp, EventType type, String busId, String date,
+                        String ref, int[] seats) {
+    }
+
+    public static final int RECORD_SIZE = 128;
+    public static final int MAX_SEATS = 128;
+
+    private static final int BUS_ID_OFFSET = 20;
+    private static final int BUS_ID_MAX = 24;
+    private static final int DATE_OFFSET = 44;
+    private static final int DATE_MAX = 12;
+    private static final int REF_OFFSET = 56;
+    private static final int REF_MAX = 24;
+    private static final int SEATS_OFFSET = 80;
+    private static final int TRIP_SEQUENCE_OFFSET = 96;
+    private static final int CRC_OFFSET = 124;
+    private static final String SEGMENT_PREFIX = "journal-";
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    @Value("${booking.journal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${booking.journal.dir:data/journal}")
+    private String directory;
+
+    @Value("${booking.journal.segment-records:65536}")
+    private int segmentRecords;
+
+    @Value("${booking.journal.flush-millis:200}")
+    private long flushMillis;
+
+    @Value("${booking.journal.compact-minutes:10}")
+    private long compactMinutes;
+
+    private Path dir;
+    private final List<Path> sealed = new ArrayList<>();
+    private volatile Segment active;
+    private long nextGeneration;
+    private ScheduledExecutorService maintenance;
+
+    @PostConstruct
+    public void start() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        dir = Paths.get(directory);
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            files.filter(p -> p.getFileName().toString().startsWith(SEGMENT_PREFIX)
+                            && p.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                    .sorted()
+                    .forEach(sealed::add);
+        }
+        nextGeneration = sealed.isEmpty() ? 1 : generationOf(sealed.get(sealed.size() - 1)) + 1;
+        long[] lastSequence = new long[1];
+        for (Path segment : sealed) {
+            forEachRecord(segment, e -> lastSequence[0] = Math.max(lastSequence[0], e.sequence()));
+        }
+        active = openSegment(lastSequence[0] + 1);
+
+        maintenance = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "booking-journal");
+            thread.setDaemon(true);
+            return thread;
+        });
+        maintenance.scheduleWithFixedDelay(this::flush, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+        maintenance.scheduleWithFixedDelay(this::compactQuietly, compactMinutes, compactMinutes, TimeUnit.MINUTES);
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (!enabled) {
+            return;
+        }
+        maintenance.shutdownNow();
+        active.buffer.force();
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Replay every event written before this process started, oldest first.
+     */
+    public synchronized void replay(Consumer<Event> consumer) throws IOException {
+        if (!enabled) {
+            return;
+        }
+        for (Path segment : sealed) {
+            forEachRecord(segment, consumer);
+        }
+    }
+
+    /**
+     * Check that an event fits in a record, so it can be rejected before any seat changes.
+     * @throws IllegalArgumentException if busId, date or ref is too long or a seat is outside 1-128
+     */
+    public void validate(String busId, String date, String ref, int[] seats) {
+        if (!enabled) {
+            return;
+        }
+        checkLength(busId, BUS_ID_MAX);
+        checkLength(date, DATE_MAX);
+        checkLength(ref, REF_MAX);
+        for (int seat : seats) {
+            if (seat < 1 || seat > MAX_SEATS) {
+                throw new IllegalArgumentException("Seat " + seat + " cannot be journaled");
+            }
+        }
+    }
+
+    /**
+     * The sequence the next record will get. Sequences carry on across restarts,
+     * so a trip that starts its trip sequences here stays ahead of its older events.
+     */
+    public long nextSequence() {
+        if (!enabled) {
+            return 0;
+        }
+        Segment segment = active;
+        return segment.firstSequence + Math.min(segment.next.get(), segmentRecords);
+    }
+
+    /**
+     * @param tripSequence the event's place among the trip's events
+     * @throws IllegalArgumentException if the event does not fit in a record (see {@link #validate})
+     * @throws IllegalStateException if no segment could be opened to hold it
+     */
+    public void append(EventType type, String busId, String date, int[] seats, String ref, long tripSequence) {
+        if (!enabled) {
+            return;
+        }
+        long timestamp = System.currentTimeMillis();
+        while (true) {
+            Segment segment = active;
+            int slot = segment.next.getAndIncrement();
+            if (slot < segmentRecords) {
+                byte[] record = encode(segment.firstSequence + slot, tripSequence, timestamp, type, busId, date, ref, seats);
+                segment.buffer.put(slot * RECORD_SIZE, record);
+                return;
+            }
+            roll(segment);
+        }
+    }
+
+    /**
+     * Fold all sealed segments into one snapshot segment holding the booked seats per trip.
+     */
+    public synchronized void compact() throws IOException {
+        if (!enabled || sealed.size() < 2) {
+            return;
+        }
+        Map<String, Fold> trips = new LinkedHashMap<>();
+        long[] lastSequence = new long[1];
+        List<Path> compacted = new ArrayList<>(sealed);
+        for (Path segment : compacted) {
+            forEachRecord(segment, e -> {
+                lastSequence[0] = Math.max(lastSequence[0], e.sequence());
+                trips.computeIfAbsent(e.busId() + "|" + e.date(), k -> new Fold()).add(e);
+            });
+        }
+
+        Path target = compacted.get(0);
+        Path tmp = dir.resolve(target.getFileName() + ".tmp");
+        int records = 0;
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, Fold> trip : trips.entrySet()) {
+                int[] seats = trip.getValue().booked();
+                if (seats.length == 0) continue;
+                int split = trip.getKey().indexOf('|');
+                // Everything folded into the snapshot is older than the segments after it
+                byte[] record = encode(lastSequence[0], trip.getValue().tripSequence, System.currentTimeMillis(),
+                        EventType.SNAPSHOT, trip.getKey().substring(0, split), trip.getKey().substring(split + 1), "", seats);
+                ByteBuffer buffer = ByteBuffer.wrap(record);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                records++;
+            }
+            channel.force(true);
+        }
+        // Replacing the oldest segment is atomic; if we crash before deleting the rest,
+        // replaying them again on top of the snapshot gives the same seat state
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        for (int i = 1; i < compacted.size(); i++) {
+            Files.deleteIfExists(compacted.get(i));
+        }
+        sealed.clear();
+        sealed.add(target);
+        log.info("Booking journal: compacted {} segments into {} snapshot records", compacted.size(), records);
+    }
+
+    private synchronized void roll(Segment full) {
+        if (active != full) {
+            return;
+        }
+        try {
+            full.buffer.force();
+            sealed.add(full.path);
+            active = openSegment(full.firstSequence + segmentRecords);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not open a new journal segment", e);
+        }
+    }
+
+    private Segment openSegment(long firstSequence) throws IOException {
+        Path path = dir.resolve(String.format("%s%020d%s", SEGMENT_PREFIX, nextGeneration++, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) segmentRecords * RECORD_SIZE);
+            return new Segment(path, buffer, firstSequence);
+        }
+    }
+
+    private void flush() {
+        try {
+            active.buffer.force();
+        } catch (RuntimeException e) {
+            log.error("Booking journal flush failed", e);
+        }
+    }
+
+    private void compactQuietly() {
+        try {
+            compact();
+        } catch (IOException | RuntimeException e) {
+            log.error("Booking journal compaction failed", e);
+        }
+    }
+
+    // Unwritten slots and torn records fail the CRC check and are skipped
+    private static void forEachRecord(Path segment, Consumer<Event> consumer) throws IOException {
+        byte[] bytes = Files.readAllBytes(segment);
+        CRC32C crc = new CRC32C();
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        for (int offset = 0; offset + RECORD_SIZE <= bytes.length; offset += RECORD_SIZE) {
+            if (bytes[offset + 16] == 0) {
+                continue;
+            }
+            crc.reset();
+            crc.update(bytes, offset, CRC_OFFSET);
+            if ((int) crc.getValue() != buffer.getInt(offset + CRC_OFFSET)) {
+                continue;
+            }
+            consumer.accept(decode(buffer, offset));
+        }
+    }
+
+    private static byte[] encode(long seq, long tripSequence, long timestamp, EventType type, String busId, String date,
+                                 String ref, int[] seats) {
+        byte[] record = new byte[RECORD_SIZE];
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        buffer.putLong(0, seq);
+        buffer.putLong(8, timestamp);
+        // Stored as ordinal + 1 so an all-zero slot never looks like an event
+        record[16] = (byte) (type.ordinal() + 1);
+        record[17] = putString(record, BUS_ID_OFFSET, BUS_ID_MAX, busId);
+        record[18] = putString(record, DATE_OFFSET, DATE_MAX, date);
+        record[19] = putString(record, REF_OFFSET, REF_MAX, ref);
+        long[] bitmap = new long[2];
+        setBits(bitmap, seats);
+        buffer.putLong(SEATS_OFFSET, bitmap[0]);
+        buffer.putLong(SEATS_OFFSET + 8, bitmap[1]);
+        buffer.putLong(TRIP_SEQUENCE_OFFSET, tripSequence);
+        CRC32C crc = new CRC32C();
+        crc.update(record, 0, CRC_OFFSET);
+        buffer.putInt(CRC_OFFSET, (int) crc.getValue());
+        return record;
+    }
+
+    private static Event decode(ByteBuffer buffer, int offset) {
+        byte[] record = new byte[RECORD_SIZE];
+        buffer.get(offset, record);
+        EventType type = EventType.values()[record[16] - 1];
+        String busId = new String(record, BUS_ID_OFFSET, record[17], StandardCharsets.UTF_8);
+        String date = new String(record, DATE_OFFSET, record[18], StandardCharsets.UTF_8);
+        String ref = new String(record, REF_OFFSET, record[19], StandardCharsets.UTF_8);
+        long[] bitmap = { buffer.getLong(offset + SEATS_OFFSET), buffer.getLong(offset + SEATS_OFFSET + 8) };
+        return new Event(buffer.getLong(offset), buffer.getLong(offset + TRIP_SEQUENCE_OFFSET), buffer.getLong(offset + 8),
+                type, busId, date, ref, seatsOf(bitmap));
+    }
+
+    private static byte putString(byte[] record, int offset, int max, String value) {
+        byte[] bytes = checkLength(value, max);
+        System.arraycopy(bytes, 0, record, offset, bytes.length);
+        return (byte) bytes.length;
+    }
+
+    private static byte[] checkLength(String value, int max) {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > max) {
+            throw new IllegalArgumentException("'" + value + "' is too long for a journal record");
+        }
+        return bytes;
+    }
+
+    private static void setBits(long[] bitmap, int[] seats) {
+        for (int seat : seats) {
+            if (seat < 1 || seat > MAX_SEATS) {
+                throw new IllegalArgumentException("Seat " + seat + " cannot be journaled");
+            }
+            int bit = seat - 1;
+            bitmap[bit >>> 6] |= 1L << (bit & 63);
+        }
+    }
+
+    private static int[] seatsOf(long[] bitmap) {
+        int[] seats = new int[Long.bitCount(bitmap[0]) + Long.bitCount(bitmap[1])];
+        int n = 0;
+        for (int word = 0; word < 2; word++) {
+            long bits = bitmap[word];
+            while (bits != 0) {
+                seats[n++] = word * 64 + Long.numberOfTrailingZeros(bits) + 1;
+                bits &= bits - 1;
+            }
+        }
+        return seats;
+    }
+
+    private static long generationOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    /** Per-seat count of bookings less cancellations for one trip, as compaction folds it. */
+    private static final class Fold {
+        final int[] net = new int[MAX_SEATS];
+        long tripSequence;
+
+        void add(Event e) {
+            tripSequence = Math.max(tripSequence, e.tripSequence());
+            int delta = switch (e.type()) {
+                case BOOKED, SNAPSHOT -> 1;
+                case CANCELLED -> -1;
+                default -> 0;
+            };
+            for (int seat : e.seats()) {
+                net[seat - 1] += delta;
+            }
+        }
+
+        int[] booked() {
+            return IntStream.rangeClosed(1, MAX_SEATS).filter(seat -> net[seat - 1] > 0).toArray();
+        }
+    }
+
+    private static final class Segment {
+        final Path path;
+        final MappedByteBuffer buffer;
+        final long firstSequence;
+        final AtomicInteger next = new AtomicInteger();
+
+        Segment(Path path, MappedByteBuffer buffer, long firstSequence) {
+            this.path = path;
+            this.buffer = buffer;
+            this.firstSequence = firstSequence;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.busticketbooking.backend.repository;
+
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Storage for bookings. Which implementation is active is chosen with the
+ * {@code booking.store} property: firestore (default), memory or file.
+ */
+public interface BookingRepository {
+
+    /**
+     * Persist a booking. Implementations may group concurrent saves into one write;
+     * the returned future completes when this booking's write is durable.
+     */
+    CompletableFuture<Void> save(BookingDetails booking);
+
+    /**
+     * One page of a user's bookings, newest first (bookedAt, then id, descending),
+     * starting after the cursor when one is given. Cursors are {@link HistoryCursor}s;
+     * a page's nextCursor is the encoded position of its last booking.
+     * @throws IllegalArgumentException for a cursor that is not a HistoryCursor
+     */
+    BookingPage findByUserId(String userId, int limit, String cursor) throws Exception;
+
+    /**
+     * One page of all bookings ordered by booking id, optionally narrowed to a bus
+     * and/or travel date (null matches any). Used for bulk exports.
+     */
+    BookingPage findByTrip(String busId, String date, int limit, String cursor) throws Exception;
+
+    /**
+     * Saves accepted but not yet written.
+     */
+    default int queueDepth() {
+        return 0;
+    }
+}
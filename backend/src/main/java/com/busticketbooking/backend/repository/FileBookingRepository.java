@@ -0,0 +1,122 @@
+package com.busticketbooking.backend.repository;
+
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Append-only file of bookings, one JSON document per line, for local runs without Firestore.
+ *
+ * Each group-committed batch is appended and fsynced once. The file is replayed into an
+ * in-memory index at startup, which also serves reads.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "booking.store", havingValue = "file")
+public class FileBookingRepository implements BookingRepository {
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${booking.store.file.path:data/bookings.jsonl}")
+    private String path;
+
+    @Value("${booking.store.group-commit.window-millis:2}")
+    private long groupCommitWindowMillis;
+
+    @Value("${booking.store.queue-capacity:10000}")
+    private int queueCapacity;
+
+    private final InMemoryBookingRepository index = new InMemoryBookingRepository();
+    private FileChannel channel;
+    private GroupCommitWriter<BookingDetails> writer;
+
+    @PostConstruct
+    public void start() throws IOException {
+        Path file = Paths.get(path);
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        int replayed = 0;
+        if (Files.exists(file)) {
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+                    try {
+                        index.put(objectMapper.readValue(line, BookingDetails.class));
+                        replayed++;
+                    } catch (IOException e) {
+                        // A torn last line from a crash mid-append; everything before it is intact
+                        log.warn("Skipping unreadable booking record: {}", e.getMessage());
+                    }
+                }
+            }
+        }
+        log.info("Booking file store: replayed {} bookings from {}", replayed, file);
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        writer = new GroupCommitWriter<>("file-booking-writer", queueCapacity, 1000, groupCommitWindowMillis, this::append);
+    }
+
+    @Override
+    public int queueDepth() {
+        return writer.queueDepth();
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        writer.close();
+        channel.close();
+    }
+
+    @Override
+    public CompletableFuture<Void> save(BookingDetails booking) {
+        return writer.submit(booking);
+    }
+
+    @Override
+    public BookingPage findByUserId(String userId, int limit, String cursor) {
+        return index.findByUserId(userId, limit, cursor);
+    }
+
+    @Override
+    public BookingPage findByTrip(String busId, String date, int limit, String cursor) {
+        return index.findByTrip(busId, date, limit, cursor);
+    }
+
+    private void append(List<BookingDetails> bookings) throws IOException {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(bookings.size() * 256);
+        for (BookingDetails booking : bookings) {
+            buffer.write(objectMapper.writeValueAsBytes(booking));
+            buffer.write('\n');
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buffer.toByteArray());
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        channel.force(false);
+        for (BookingDetails booking : bookings) {
+            index.put(booking);
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.busticketbooking.backend.repository;
+
+import com.busticketbooking.backend.config.FirebaseConfig;
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
+import com.busticketbooking.backend.service.Bulkhead;
+import com.google.cloud.firestore.DocumentSnapshot;
+import com.google.cloud.firestore.FieldPath;
+import com.google.cloud.firestore.Firestore;
+import com.google.cloud.firestore.Query;
+import com.google.cloud.firestore.QueryDocumentSnapshot;
+import com.google.cloud.firestore.WriteBatch;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Bookings in the Firestore "bookings" collection.
+ * Saves are group-committed: concurrent bookings share one WriteBatch commit.
+ * Booking history needs a composite index on userId ascending, bookedAt
+ * descending and __name__ descending.
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "booking.store", havingValue = "firestore", matchIfMissing = true)
+public class FirestoreBookingRepository implements BookingRepository {
+
+    // Firestore rejects write batches with more than 500 operations
+    private static final int MAX_WRITES_PER_BATCH = 500;
+
+    @Value("${booking.store.group-commit.window-millis:2}")
+    private long groupCommitWindowMillis;
+
+    @Value("${booking.store.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Autowired
+    private FirebaseConfig firebase;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("firestoreBulkhead")
+    private Bulkhead bulkhead;
+
+    private GroupCommitWriter<BookingDetails> writer;
+    private Timer writeTimer;
+    private Timer queryTimer;
+
+    @PostConstruct
+    public void start() {
+        writeTimer = Timer.builder("firestore.write")
+                .description("Firestore booking batch commit")
+                .register(meterRegistry);
+        queryTimer = Timer.builder("firestore.query")
+                .description("Firestore booking history query")
+                .register(meterRegistry);
+        writer = new GroupCommitWriter<>("firestore-booking-writer", queueCapacity, MAX_WRITES_PER_BATCH,
+                groupCommitWindowMillis, this::commit);
+    }
+
+    @PreDestroy
+    public void stop() {
+        writer.close();
+    }
+
+    @Override
+    public CompletableFuture<Void> save(BookingDetails booking) {
+        return writer.submit(booking);
+    }
+
+    @Override
+    public BookingPage findByUserId(String userId, int limit, String cursor) throws Exception {
+        Firestore db = firebase.getFirestore();
+        if (db == null) {
+            return new BookingPage(new ArrayList<>(), null);
+        }
+        Query query = db.collection("bookings").whereEqualTo("userId", userId)
+                .orderBy("bookedAt", Query.Direction.DESCENDING)
+                .orderBy(FieldPath.documentId(), Query.Direction.DESCENDING);
+        if (cursor != null && !cursor.isEmpty()) {
+            HistoryCursor after = HistoryCursor.decode(cursor);
+            query = query.startAfter(after.bookedAt(), after.id());
+        }
+        return fetchPage(query, limit, booking -> HistoryCursor.of(booking).encode());
+    }
+
+    @Override
+    public BookingPage findByTrip(String busId, String date, int limit, String cursor) throws Exception {
+        Firestore db = firebase.getFirestore();
+        if (db == null) {
+            return new BookingPage(new ArrayList<>(), null);
+        }
+        Query query = db.collection("bookings");
+        if (busId != null) {
+            query = query.whereEqualTo("busId", busId);
+        }
+        if (date != null) {
+            query = query.whereEqualTo("date", date);
+        }
+        query = query.orderBy(FieldPath.documentId());
+        if (cursor != null && !cursor.isEmpty()) {
+            query = query.startAfter(cursor);
+        }
+        return fetchPage(query, limit, BookingDetails::getId);
+    }
+
+    // cursorOf gives the value a next page starts after, from the last booking on this one
+    private BookingPage fetchPage(Query ordered, int limit, Function<BookingDetails, String> cursorOf) throws Exception {
+        // Fetch one extra document to learn whether another page exists
+        Query pageQuery = ordered.limit(limit + 1);
+        List<QueryDocumentSnapshot> documents = bulkhead.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                return pageQuery.get().get().getDocuments();
+            } finally {
+                queryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        
+        List<BookingDetails> bookings = new ArrayList<>();
+        int count = Math.min(limit, documents.size());
+        for (int i = 0; i < count; i++) {
+            bookings.add(toBookingDetails(documents.get(i)));
+        }
+        String nextCursor = documents.size() > limit ? cursorOf.apply(bookings.get(limit - 1)) : null;
+        return new BookingPage(bookings, nextCursor);
+    }
+
+    @Override
+    public int queueDepth() {
+        return writer.queueDepth();
+    }
+
+    private void commit(List<BookingDetails> bookings) throws Exception {
+        Firestore db = firebase.getFirestore();
+        if (db == null) {
+            log.warn("Firestore not initialized, skipping write of {} bookings", bookings.size());
+            return;
+        }
+        WriteBatch batch = db.batch();
+        for (BookingDetails booking : bookings) {
+            batch.set(db.collection("bookings").document(booking.getId()), toDocument(booking));
+        }
+        bulkhead.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                return batch.commit().get();
+            } finally {
+                writeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+        log.debug("Committed {} bookings to Firestore", bookings.size());
+    }
+
+    /**
+     * Firestore fields for a booking. Catalogue fields (bus name, times) are not stored.
+     */
+    public static Map<String, Object> toDocument(BookingDetails booking) {
+        Map<String, Object> document = new HashMap<>();
+        document.put("id", booking.getId());
+        document.put("userId", booking.getUserId());
+        document.put("email", booking.getEmail());
+        document.put("busId", booking.getBusId());
+        document.put("selectedSeats", booking.getSelectedSeats());
+        document.put("totalAmount", booking.getTotalAmount());
+        document.put("date", booking.getDate());
+        document.put("status", booking.getStatus());
+        document.put("bookedAt", booking.getBookedAt());
+        if (booking.getOrderId() != null) {
+            document.put("orderId", booking.getOrderId());
+        }
+        if (booking.getPaymentId() != null) {
+            document.put("paymentId", booking.getPaymentId());
+        }
+        return document;
+    }
+
+    private static BookingDetails toBookingDetails(DocumentSnapshot doc) {
+        BookingDetails booking = new BookingDetails();
+        booking.setId(doc.getId());
+        booking.setUserId(doc.getString("userId"));
+        booking.setEmail(doc.getString("email"));
+        booking.setBusId(doc.get("busId") != null ? doc.get("busId").toString() : null);
+        booking.setDate(doc.getString("date"));
+        booking.setStatus(doc.getString("status"));
+        booking.setOrderId(doc.getString("orderId"));
+        booking.setPaymentId(doc.getString("paymentId"));
+        booking.setBookedAt(doc.getString("bookedAt"));
+        Double totalAmount = doc.getDouble("totalAmount");
+        booking.setTotalAmount(totalAmount != null ? totalAmount : 0);
+        
+        List<Integer> seats = new ArrayList<>();
+        if (doc.get("selectedSeats") instanceof List<?> storedSeats) {
+            for (Object seat : storedSeats) {
+                if (seat instanceof Number number) {
+                    seats.add(number.intValue());
+                }
+            }
+        }
+        booking.setSelectedSeats(seats);
+        return booking;
+    }
+}
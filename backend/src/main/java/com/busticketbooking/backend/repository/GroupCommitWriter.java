@@ -0,0 +1,121 @@
+package com.busticketbooking.backend.repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Coalesces concurrent writes into batches.
+ *
+ * Callers submit an item and get a future for it. A single writer thread takes
+ * everything queued (waiting up to a short window for more to arrive), commits it
+ * as one batch and completes the futures of that batch only. Writes that arrive
+ * while a batch is committing simply form the next batch.
+ */
+public class GroupCommitWriter<T> implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface BatchCommitter<T> {
+        void commit(List<T> batch) throws Exception;
+    }
+
+    private record Pending<T>(T item, CompletableFuture<Void> done) {
+    }
+
+    private final BlockingQueue<Pending<T>> queue;
+    private final int maxBatchSize;
+    private final long windowNanos;
+    private final BatchCommitter<T> committer;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public GroupCommitWriter(String name, int queueCapacity, int maxBatchSize, long windowMillis, BatchCommitter<T> committer) {
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchSize = maxBatchSize;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMillis);
+        this.committer = committer;
+        this.writer = Thread.ofVirtual().name(name).start(this::run);
+    }
+
+    /**
+     * @return a future completed once the batch containing this item is committed
+     */
+    public CompletableFuture<Void> submit(T item) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        if (!running) {
+            done.completeExceptionally(new IllegalStateException("Writer is closed"));
+        } else if (!queue.offer(new Pending<>(item, done))) {
+            done.completeExceptionally(new IllegalStateException("Write queue is full"));
+        }
+        return done;
+    }
+
+    public int queueDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting writes and commit whatever is already queued.
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+                long deadline = System.nanoTime() + windowNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    Pending<T> next = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                commit(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (!batch.isEmpty()) {
+                    commit(batch);
+                }
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Pending<T>> batch) {
+        List<T> items = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            items.add(pending.item());
+        }
+        try {
+            committer.commit(items);
+            for (Pending<T> pending : batch) {
+                pending.done().complete(null);
+            }
+        } catch (Exception e) {
+            for (Pending<T> pending : batch) {
+                pending.done().completeExceptionally(e);
+            }
+        }
+    }
+}
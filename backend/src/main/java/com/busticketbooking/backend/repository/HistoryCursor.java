@@ -0,0 +1,42 @@
+package com.busticketbooking.backend.repository;
+
+import com.busticketbooking.backend.model.BookingDetails;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Comparator;
+
+/**
+ * Position in a user's booking history, which is ordered newest first by bookedAt
+ * and then by id for bookings made in the same instant. Clients see it as one
+ * opaque URL-safe string.
+ */
+public record HistoryCursor(String bookedAt, String id) {
+
+    /** History order: bookedAt descending, then id descending. */
+    public static final Comparator<HistoryCursor> NEWEST_FIRST =
+            Comparator.comparing(HistoryCursor::bookedAt).thenComparing(HistoryCursor::id).reversed();
+
+    private static final char SEPARATOR = '\n';
+
+    public static HistoryCursor of(BookingDetails booking) {
+        return new HistoryCursor(booking.getBookedAt() != null ? booking.getBookedAt() : "", booking.getId());
+    }
+
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((bookedAt + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException if the cursor was not made by {@link #encode}
+     */
+    public static HistoryCursor decode(String cursor) {
+        String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        int split = value.indexOf(SEPARATOR);
+        if (split < 0) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return new HistoryCursor(value.substring(0, split), value.substring(split + 1));
+    }
+}
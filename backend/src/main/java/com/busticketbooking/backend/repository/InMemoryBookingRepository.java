@@ -0,0 +1,120 @@
+package com.busticketbooking.backend.repository;
+
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.Function;
+
+/**
+ * Keeps bookings in process memory. Nothing survives a restart; meant for local runs and tests.
+ * {@code booking.store.memory.write-latency-ms} makes each save block the caller like a
+ * remote write would, for load tests.
+ */
+@Repository
+@ConditionalOnProperty(name = "booking.store", havingValue = "memory")
+public class InMemoryBookingRepository implements BookingRepository {
+
+    @Value("${booking.store.memory.write-latency-ms:0}")
+    private long writeLatencyMillis;
+
+    private final Map<String, NavigableMap<HistoryCursor, BookingDetails>> bookingsByUser = new ConcurrentHashMap<>();
+    private final NavigableMap<String, BookingDetails> bookingsById = new ConcurrentSkipListMap<>();
+
+    @Override
+    public CompletableFuture<Void> save(BookingDetails booking) {
+        if (writeLatencyMillis > 0) {
+            try {
+                Thread.sleep(writeLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        put(booking);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    @Override
+    public BookingPage findByUserId(String userId, int limit, String cursor) {
+        NavigableMap<HistoryCursor, BookingDetails> bookings = bookingsByUser.get(userId);
+        if (bookings == null) {
+            return new BookingPage(new ArrayList<>(), null);
+        }
+        if (cursor != null && !cursor.isEmpty()) {
+            bookings = bookings.tailMap(HistoryCursor.decode(cursor), false);
+        }
+        return page(bookings, null, null, limit, booking -> HistoryCursor.of(booking).encode());
+    }
+
+    @Override
+    public BookingPage findByTrip(String busId, String date, int limit, String cursor) {
+        NavigableMap<String, BookingDetails> bookings = bookingsById;
+        if (cursor != null && !cursor.isEmpty()) {
+            bookings = bookings.tailMap(cursor, false);
+        }
+        return page(bookings, busId, date, limit, BookingDetails::getId);
+    }
+
+    // Synchronized so a re-saved booking leaves its old history entry in one step
+    synchronized void put(BookingDetails booking) {
+        BookingDetails stored = copyOf(booking);
+        BookingDetails previous = bookingsById.put(booking.getId(), stored);
+        if (previous != null) {
+            NavigableMap<HistoryCursor, BookingDetails> history = bookingsByUser.get(String.valueOf(previous.getUserId()));
+            if (history != null) {
+                history.remove(HistoryCursor.of(previous));
+            }
+        }
+        bookingsByUser.computeIfAbsent(String.valueOf(booking.getUserId()),
+                        k -> new ConcurrentSkipListMap<>(HistoryCursor.NEWEST_FIRST))
+                .put(HistoryCursor.of(stored), stored);
+    }
+
+    private static BookingPage page(NavigableMap<?, BookingDetails> bookings, String busId, String date,
+                                    int limit, Function<BookingDetails, String> cursorOf) {
+        List<BookingDetails> page = new ArrayList<>(Math.min(limit, 1024));
+        Iterator<BookingDetails> it = bookings.values().iterator();
+        boolean more = false;
+        while (it.hasNext()) {
+            BookingDetails booking = it.next();
+            if ((busId != null && !busId.equals(booking.getBusId())) || (date != null && !date.equals(booking.getDate()))) {
+                continue;
+            }
+            if (page.size() == limit) {
+                more = true;
+                break;
+            }
+            page.add(copyOf(booking));
+        }
+        String nextCursor = more ? cursorOf.apply(page.get(page.size() - 1)) : null;
+        return new BookingPage(page, nextCursor);
+    }
+
+    // Callers enrich returned bookings in place, so never hand out the stored instance
+    private static BookingDetails copyOf(BookingDetails booking) {
+        BookingDetails copy = new BookingDetails();
+        copy.setId(booking.getId());
+        copy.setUserId(booking.getUserId());
+        copy.setEmail(booking.getEmail());
+        copy.setBusId(booking.getBusId());
+        copy.setSelectedSeats(booking.getSelectedSeats() != null ? new ArrayList<>(booking.getSelectedSeats()) : null);
+        copy.setTotalAmount(booking.getTotalAmount());
+        copy.setDate(booking.getDate());
+        copy.setStatus(booking.getStatus());
+        copy.setOrderId(booking.getOrderId());
+        copy.setPaymentId(booking.getPaymentId());
+        copy.setBookedAt(booking.getBookedAt());
+        return copy;
+    }
+}
@@ -0,0 +1,296 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.repository.BookingRepository;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams bookings out as NDJSON or CSV, one page at a time.
+ *
+ * Only the current page is in memory: each page is read with the repository
+ * cursor, joined with the bus catalogue (and, when reconciling, the Razorpay
+ * order), written and flushed before the next page is read. Heap use does not
+ * grow with the size of the export.
+ *
+ * Exports carry every customer's contact and payment ids, so they need the ops
+ * token and only one runs at a time. Razorpay lookups for reconciliation are
+ * paced by their own token bucket, whatever the size of the export.
+ */
+@Slf4j
+@Service
+public class BookingExportService {
+
+    public enum Format { NDJSON, CSV }
+
+    private static final List<String> COLUMNS = List.of(
+            "id", "userId", "email", "busId", "busName", "date", "departure", "selectedSeats",
+            "totalAmount", "status", "bookedAt", "orderId", "paymentId");
+    private static final List<String> RECONCILE_COLUMNS = List.of(
+            "orderStatus", "orderAmount", "orderAmountPaid", "reconciled");
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private BusService busService;
+
+    @Autowired
+    private PaymentService paymentService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${booking.export.page-size:500}")
+    private int pageSize;
+
+    // Kept below the Razorpay bulkhead so an export cannot take every slot from checkout
+    @Value("${booking.export.reconcile-concurrency:8}")
+    private int reconcileConcurrency;
+
+    @Value("${booking.export.reconcile-per-second:10}")
+    private int reconcilePerSecond;
+
+    // Empty disables exports
+    @Value("${booking.export.token:}")
+    private String token;
+
+    private static final String BEARER = "Bearer ";
+    private static final String RECONCILE_KEY = "razorpay";
+
+    private final Semaphore running = new Semaphore(1);
+    private RateLimiter reconcileLimiter;
+
+    @PostConstruct
+    public void init() {
+        reconcileLimiter = new RateLimiter("export.reconcile", reconcilePerSecond, reconcilePerSecond * 60.0, 1, 1);
+    }
+
+    public boolean isEnabled() {
+        return !token.isEmpty();
+    }
+
+    /**
+     * Whether an Authorization header carries the ops token.
+     */
+    public boolean isAuthorized(String authorization) {
+        if (!isEnabled() || authorization == null || !authorization.startsWith(BEARER)) {
+            return false;
+        }
+        return MessageDigest.isEqual(authorization.substring(BEARER.length()).trim().getBytes(StandardCharsets.UTF_8),
+                token.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Claim the export slot. Returns false while another export is running;
+     * otherwise the caller must run {@link #export} (or {@link #finish}) to release it.
+     */
+    public boolean tryStart() {
+        return running.tryAcquire();
+    }
+
+    public void finish() {
+        running.release();
+    }
+
+    /**
+     * Write every booking matching busId and date (null matches any) to out, then release
+     * the slot taken by {@link #tryStart}.
+     * With reconcile, each booking with an order id is checked against its Razorpay order.
+     */
+    public long export(String busId, String date, Format format, boolean reconcile, OutputStream out) throws IOException {
+        try {
+            return write(busId, date, format, reconcile, out);
+        } finally {
+            finish();
+        }
+    }
+
+    private long write(String busId, String date, Format format, boolean reconcile, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 64 * 1024);
+        if (format == Format.CSV) {
+            writeCsvLine(writer, reconcile ? concat(COLUMNS, RECONCILE_COLUMNS) : COLUMNS);
+        }
+
+        long rows = 0;
+        String cursor = null;
+        do {
+            BookingPage page;
+            try {
+                page = bookingRepository.findByTrip(busId, date, pageSize, cursor);
+            } catch (Exception e) {
+                throw new IOException("Could not read bookings after " + cursor, e);
+            }
+            Map<String, Bus> buses = busService.getBusesByIds(busIdsOf(page.getBookings()));
+            Map<String, Map<String, Object>> orders = reconcile ? fetchOrders(page.getBookings()) : Map.of();
+
+            for (BookingDetails booking : page.getBookings()) {
+                Map<String, Object> row = toRow(booking, buses.get(booking.getBusId()));
+                if (reconcile) {
+                    addReconciliation(row, booking, booking.getOrderId() != null ? orders.get(booking.getOrderId()) : null);
+                }
+                if (format == Format.CSV) {
+                    writeCsvLine(writer, row.values());
+                } else {
+                    writer.write(objectMapper.writeValueAsString(row));
+                    writer.write('\n');
+                }
+                rows++;
+            }
+            // Hand this page to the client before reading the next one
+            writer.flush();
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        log.atInfo().addKeyValue("busId", busId).addKeyValue("date", date).addKeyValue("rows", rows)
+                .log("Booking export finished");
+        return rows;
+    }
+
+    private static Set<String> busIdsOf(List<BookingDetails> bookings) {
+        Set<String> ids = new HashSet<>();
+        for (BookingDetails booking : bookings) {
+            if (booking.getBusId() != null) {
+                ids.add(booking.getBusId());
+            }
+        }
+        return ids;
+    }
+
+    private static Map<String, Object> toRow(BookingDetails booking, Bus bus) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("id", booking.getId());
+        row.put("userId", booking.getUserId());
+        row.put("email", booking.getEmail());
+        row.put("busId", booking.getBusId());
+        row.put("busName", bus != null ? bus.getName() : null);
+        row.put("date", booking.getDate());
+        row.put("departure", bus != null ? bus.getDeparture() : null);
+        row.put("selectedSeats", booking.getSelectedSeats());
+        row.put("totalAmount", booking.getTotalAmount());
+        row.put("status", booking.getStatus());
+        row.put("bookedAt", booking.getBookedAt());
+        row.put("orderId", booking.getOrderId());
+        row.put("paymentId", booking.getPaymentId());
+        return row;
+    }
+
+    // An order is reconciled when Razorpay says it is paid in full for the amount we booked
+    private static void addReconciliation(Map<String, Object> row, BookingDetails booking, Map<String, Object> order) {
+        Object status = order != null ? order.get("status") : null;
+        Object amount = order != null ? order.get("amount") : null;
+        Object amountPaid = order != null ? order.get("amountPaid") : null;
+        row.put("orderStatus", status);
+        row.put("orderAmount", amount);
+        row.put("orderAmountPaid", amountPaid);
+        row.put("reconciled", "paid".equals(status) && amountPaid instanceof Number paid
+                && paid.longValue() == Math.round(booking.getTotalAmount() * 100));
+    }
+
+    private Map<String, Map<String, Object>> fetchOrders(List<BookingDetails> bookings) {
+        Map<String, Map<String, Object>> orders = new ConcurrentHashMap<>();
+        Semaphore permits = new Semaphore(reconcileConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (BookingDetails booking : bookings) {
+                String orderId = booking.getOrderId();
+                if (orderId == null) {
+                    continue;
+                }
+                executor.execute(() -> {
+                    try {
+                        pace();
+                        permits.acquire();
+                        try {
+                            orders.put(orderId, paymentService.fetchOrder(orderId));
+                        } finally {
+                            permits.release();
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    } catch (Exception e) {
+                        // One missing order should not abort the export; the row shows it as an error
+                        orders.put(orderId, Map.of("status", "error: " + e.getMessage()));
+                    }
+                });
+            }
+        }
+        return orders;
+    }
+
+    // Wait for the reconcile bucket, shared by every page of the export
+    private void pace() throws InterruptedException {
+        long waitNanos;
+        while ((waitNanos = reconcileLimiter.tryAcquire(RECONCILE_KEY)) > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    private static void writeCsvLine(Writer writer, Iterable<?> values) throws IOException {
+        boolean first = true;
+        for (Object value : values) {
+            if (!first) {
+                writer.write(',');
+            }
+            first = false;
+            writer.write(csvField(value));
+        }
+        writer.write("\r\n");
+    }
+
+    private static String csvField(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value instanceof List<?> list ? joinSeats(list) : value.toString();
+        // Spreadsheets run cells starting with these as formulas; user-entered text must stay text
+        if (value instanceof CharSequence && !text.isEmpty() && "=+-@".indexOf(text.charAt(0)) >= 0) {
+            text = "'" + text;
+        }
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private static String joinSeats(List<?> seats) {
+        StringBuilder joined = new StringBuilder();
+        for (Object seat : seats) {
+            if (!joined.isEmpty()) {
+                joined.append(' ');
+            }
+            joined.append(seat);
+        }
+        return joined.toString();
+    }
+
+    private static List<String> concat(List<String> first, List<String> second) {
+        List<String> all = new ArrayList<>(first);
+        all.addAll(second);
+        return all;
+    }
+}
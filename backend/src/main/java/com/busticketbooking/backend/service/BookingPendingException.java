@@ -0,0 +1,19 @@
+package com.busticketbooking.backend.service;
+
+/**
+ * Thrown when a booking's store write outlasted its timeout but may still succeed.
+ * Its seats stay HELD until the write completes, then are confirmed or released.
+ */
+public class BookingPendingException extends RuntimeException {
+
+    private final String bookingId;
+
+    public BookingPendingException(String bookingId) {
+        super("Booking " + bookingId + " is still being saved");
+        this.bookingId = bookingId;
+    }
+
+    public String getBookingId() {
+        return bookingId;
+    }
+}
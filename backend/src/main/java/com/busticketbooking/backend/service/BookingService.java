@@ -1,17 +1,32 @@
 package com.busticketbooking.backend.service;
 
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
 import com.busticketbooking.backend.model.BookingRequest;
 import com.busticketbooking.backend.model.Bus;
-import com.google.cloud.firestore.Firestore;
-import com.google.firebase.cloud.FirestoreClient;
+import com.busticketbooking.backend.model.SeatHold;
+import com.busticketbooking.backend.repository.BookingRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.util.HashMap;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
+@Slf4j
 @Service
 public class BookingService {
 
@@ -21,85 +36,290 @@ public class BookingService {
     @Autowired
     private BusService busService;
 
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    @Value("${booking.pipeline.persist-timeout-ms:5000}")
+    private long persistTimeoutMillis;
+
+    @Value("${booking.pipeline.enrich-timeout-ms:200}")
+    private long enrichTimeoutMillis;
+
+    @Value("${booking.pipeline.notify-timeout-ms:1000}")
+    private long notifyTimeoutMillis;
+
+    private static final String UNKNOWN_BUS = "Unknown Bus";
+    public static final String REFUND_DUE = "REFUND_DUE";
+    private static final String REFUND_ID_PREFIX = "RF_";
+
+    private final ExecutorService pipelineExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    @PreDestroy
+    public void stop() {
+        pipelineExecutor.shutdown();
+    }
+
+    /**
+     * Book seats without a payment order. The amount is priced from the trip's
+     * current fare quote; a client-sent totalAmount that differs from it is
+     * rejected with {@link FareChangedException}. A {@link BookingPendingException}
+     * means the store write is still running; the booking id it carries becomes
+     * CONFIRMED or is dropped when it finishes.
+     */
     public String createBooking(BookingRequest request) {
-        String bookingId = "NB" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
-        
+        Bus bus = busService.getBusById(request.getBusId());
+        if (bus == null) {
+            throw new IllegalArgumentException("Unknown bus: " + request.getBusId());
+        }
+        request.setDate(busService.tripDate(bus, request.getDate()));
+        // Priced before the hold, which itself changes occupancy
+        long amount = fareEngine.checkAmount(request.getBusId(), request.getDate(),
+                seatInventoryService.getSeatMap(request.getBusId(), request.getDate()),
+                request.getSelectedSeats(), request.getCouponCode(), request.getTotalAmount());
+        request.setTotalAmount(amount / 100.0);
+
+        String bookingId = newBookingId();
+        // Hold the seats first so a concurrent request for the same seats fails fast
+        if (!seatInventoryService.hold(request.getBusId(), request.getDate(), request.getSelectedSeats(), bookingId)) {
+            throw new SeatUnavailableException("One or more selected seats are no longer available");
+        }
+        return persistHeldBooking(request, bookingId, null, null);
+    }
+
+    /**
+     * Turn a paid seat hold into a booking. The hold's seats must still be HELD.
+     * Throws {@link BookingPendingException} like {@link #createBooking}.
+     */
+    public String createBookingFromHold(SeatHold hold, String paymentId) {
+        BookingRequest request = new BookingRequest();
+        request.setUserId(hold.getUserId());
+        request.setEmail(hold.getEmail());
+        request.setBusId(hold.getBusId());
+        request.setSelectedSeats(hold.getSeats());
+        request.setTotalAmount(hold.getAmount());
+        request.setDate(hold.getDate());
+        return persistHeldBooking(request, newBookingId(), hold.getOrderId(), paymentId);
+    }
+
+    /**
+     * Record a verified payment that did not get its seats (the hold lapsed during
+     * checkout, or booking the held seats failed) with status REFUND_DUE, so it
+     * shows in the customer's history and in exports for refund or follow-up.
+     * The record's id comes from the order id, so recording an order again
+     * overwrites the first record.
+     * @param hold the order's hold if this node still knows it, else null
+     * @return the record's id
+     */
+    public String recordRefundDue(String orderId, String paymentId, SeatHold hold) {
+        BookingDetails record = new BookingDetails();
+        record.setOrderId(orderId);
+        record.setPaymentId(paymentId);
+        if (hold != null) {
+            record.setUserId(hold.getUserId());
+            record.setEmail(hold.getEmail());
+            record.setBusId(hold.getBusId());
+            record.setDate(hold.getDate());
+            record.setSelectedSeats(hold.getSeats());
+            record.setTotalAmount(hold.getAmount());
+        }
+        return storeRefundDue(record);
+    }
+
+    private String storeRefundDue(BookingDetails record) {
+        String orderId = record.getOrderId();
+        record.setId(REFUND_ID_PREFIX + orderId);
+        record.setStatus(REFUND_DUE);
+        record.setBookedAt(Instant.now().toString());
+        // Logged first, so the payment is on record even if the write fails
+        log.atError().addKeyValue("orderId", orderId).addKeyValue("paymentId", record.getPaymentId())
+                .log("Payment received without seats; refund due");
+        bookingRepository.save(record).whenComplete((ignored, error) -> {
+            if (error != null) {
+                log.atError().addKeyValue("orderId", orderId).setCause(unwrap(error)).log("Could not store refund record");
+            }
+        });
+        return record.getId();
+    }
+
+    private static String newBookingId() {
+        return "NB" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+    }
+
+    /**
+     * Store a booking whose seats are HELD under bookingId, as overlapping stages:
+     * the bus lookup for the confirmation email starts alongside the store write,
+     * seats are confirmed once the write succeeds, and the email is queued after
+     * both. Each stage has its own timeout. If the write fails, the seats are
+     * released. If it times out, the result is a {@link BookingPendingException}
+     * and the seats stay HELD until the write settles (see {@link #settleLater}).
+     * The email stage never fails the booking.
+     * @param orderId the paid order behind the booking, or null; never taken from a client request
+     */
+    CompletableFuture<String> persistHeldBookingAsync(BookingRequest request, String bookingId,
+                                                      String orderId, String paymentId) {
+        BookingDetails booking = newBooking(request, bookingId, orderId, paymentId);
+
+        CompletableFuture<String> busName = CompletableFuture
+                .supplyAsync(() -> busNameOf(request.getBusId()), pipelineExecutor)
+                .completeOnTimeout(UNKNOWN_BUS, enrichTimeoutMillis, TimeUnit.MILLISECONDS)
+                .exceptionally(e -> UNKNOWN_BUS);
+
+        CompletableFuture<Void> write = bookingRepository.save(booking);
+        CompletableFuture<String> confirmed = write.copy()
+                .orTimeout(persistTimeoutMillis, TimeUnit.MILLISECONDS)
+                .handle((ignored, error) -> {
+                    if (error != null) {
+                        Throwable cause = unwrap(error);
+                        if (cause instanceof TimeoutException) {
+                            throw settleLater(booking, request, write, busName);
+                        }
+                        throw compensate(request, bookingId, cause);
+                    }
+                    seatInventoryService.confirm(request.getBusId(), request.getDate(), request.getSelectedSeats(), bookingId);
+                    log.atInfo().addKeyValue("bookingId", bookingId).addKeyValue("busId", request.getBusId()).log("Booking saved");
+                    return bookingId;
+                });
+
+        // The email's timeout starts once the booking is confirmed
+        confirmed.thenCompose(id -> busName
+                        .thenAcceptAsync(name -> sendConfirmationNotification(request, id, name), pipelineExecutor)
+                        .orTimeout(notifyTimeoutMillis, TimeUnit.MILLISECONDS))
+                .exceptionally(e -> {
+                    if (!confirmed.isCompletedExceptionally()) {
+                        log.atWarn().addKeyValue("bookingId", bookingId).log("Confirmation email not queued: {}", unwrap(e).toString());
+                    }
+                    return null;
+                });
+        return confirmed;
+    }
+
+    private String persistHeldBooking(BookingRequest request, String bookingId, String orderId, String paymentId) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            if (db != null) {
-                Map<String, Object> booking = new HashMap<>();
-                booking.put("id", bookingId);
-                booking.put("userId", request.getUserId());
-                booking.put("email", request.getEmail());
-                booking.put("busId", request.getBusId());
-                booking.put("selectedSeats", request.getSelectedSeats());
-                booking.put("totalAmount", request.getTotalAmount());
-                booking.put("date", request.getDate());
-                booking.put("status", "CONFIRMED");
-                
-                db.collection("bookings").document(bookingId).set(booking).get();
-                System.out.println("Booking created in Firestore: " + bookingId);
-            } else {
-                System.out.println("Firestore not initialized. Skipping DB write.");
+            return persistHeldBookingAsync(request, bookingId, orderId, paymentId).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
             }
-        } catch (Exception e) {
-            System.err.println("Error saving to Firestore: " + e.getMessage());
-            throw new RuntimeException("Failed to save booking to backend");
+            throw e;
         }
-        
-        // Send Email Notification
-        sendConfirmationNotification(request, bookingId);
-        
-        return bookingId;
     }
 
-    private void sendConfirmationNotification(BookingRequest request, String bookingId) {
-        Bus bus = busService.getBusById(request.getBusId());
-        String busName = bus != null ? bus.getName() : "Unknown Bus";
-        String seats = request.getSelectedSeats().toString();
-        
+    // Release the held seats and turn the failure into what the controllers report
+    private RuntimeException compensate(BookingRequest request, String bookingId, Throwable error) {
+        log.atError().addKeyValue("bookingId", bookingId).setCause(error).log("Error saving booking");
+        seatInventoryService.release(request.getBusId(), request.getDate(), request.getSelectedSeats(), bookingId);
+        if (error instanceof BulkheadFullException busy) {
+            return busy;
+        }
+        return new RuntimeException("Failed to save booking to backend");
+    }
+
+    /*
+     * The write timed out but may still land. Releasing now could sell the seats a
+     * second time, so they stay HELD until the write settles: confirmed (and the
+     * email sent) if it succeeded, released if it failed, with a refund record for
+     * a paid order.
+     */
+    private BookingPendingException settleLater(BookingDetails booking, BookingRequest request,
+                                                CompletableFuture<Void> write, CompletableFuture<String> busName) {
+        String bookingId = booking.getId();
+        log.atWarn().addKeyValue("bookingId", bookingId).log("Booking save timed out; seats stay held until it completes");
+        write.whenComplete((ignored, error) -> {
+            if (error == null) {
+                seatInventoryService.confirm(request.getBusId(), request.getDate(), request.getSelectedSeats(), bookingId);
+                log.atInfo().addKeyValue("bookingId", bookingId).log("Booking saved after its save timed out");
+                busName.thenAcceptAsync(name -> sendConfirmationNotification(request, bookingId, name), pipelineExecutor);
+                return;
+            }
+            log.atError().addKeyValue("bookingId", bookingId).setCause(unwrap(error)).log("Booking save failed after timing out");
+            seatInventoryService.release(request.getBusId(), request.getDate(), request.getSelectedSeats(), bookingId);
+            if (booking.getOrderId() != null) {
+                storeRefundDue(booking);
+            }
+        });
+        return new BookingPendingException(bookingId);
+    }
+
+    private String busNameOf(String busId) {
+        Bus bus = busService.getBusById(busId);
+        return bus != null ? bus.getName() : UNKNOWN_BUS;
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
+    /**
+     * The stored record for a confirmed booking made from this request.
+     */
+    static BookingDetails newBooking(BookingRequest request, String bookingId, String orderId, String paymentId) {
+        BookingDetails booking = new BookingDetails();
+        booking.setId(bookingId);
+        booking.setUserId(request.getUserId());
+        booking.setEmail(request.getEmail());
+        booking.setBusId(request.getBusId());
+        booking.setSelectedSeats(request.getSelectedSeats());
+        booking.setTotalAmount(request.getTotalAmount());
+        booking.setDate(request.getDate());
+        booking.setStatus("CONFIRMED");
+        booking.setBookedAt(Instant.now().toString());
+        booking.setOrderId(orderId);
+        booking.setPaymentId(paymentId);
+        return booking;
+    }
+
+    private void sendConfirmationNotification(BookingRequest request, String bookingId, String busName) {
         emailService.sendBookingConfirmation(
             request.getEmail(),
             bookingId,
             busName,
-            seats,
+            request.getSelectedSeats().toString(),
             request.getTotalAmount()
         );
     }
 
-    public List<Map<String, Object>> getBookingsByUserId(String userId) {
-        List<Map<String, Object>> bookings = new java.util.ArrayList<>();
-        
+    /**
+     * One page of a user's bookings, newest first.
+     * @param limit page size
+     * @param cursor nextCursor from the previous page, or null for the first page
+     * @throws IllegalArgumentException for a cursor that did not come from a previous page
+     */
+    public BookingPage getBookingsByUserId(String userId, int limit, String cursor) {
         try {
-            Firestore db = FirestoreClient.getFirestore();
-            if (db != null) {
-                var querySnapshot = db.collection("bookings")
-                    .whereEqualTo("userId", userId)
-                    .get()
-                    .get();
-                
-                for (var doc : querySnapshot.getDocuments()) {
-                    Map<String, Object> booking = doc.getData();
-                    
-                    // Enrich booking with bus details
-                    String busId = (String) booking.get("busId");
-                    if (busId != null) {
-                        Bus bus = busService.getBusById(busId);
-                        if (bus != null) {
-                            booking.put("busName", bus.getName());
-                            booking.put("busType", bus.getType());
-                            booking.put("departure", bus.getDeparture());
-                            booking.put("arrival", bus.getArrival());
-                        }
-                    }
-                    
-                    bookings.add(booking);
-                }
-            }
+            BookingPage page = bookingRepository.findByUserId(userId, limit, cursor);
+            enrichWithBusDetails(page.getBookings());
+            return page;
+        } catch (BulkheadFullException | IllegalArgumentException e) {
+            throw e;
         } catch (Exception e) {
-            System.err.println("Error fetching bookings: " + e.getMessage());
+            log.atError().addKeyValue("userId", userId).setCause(e).log("Error fetching bookings");
+            return new BookingPage(new ArrayList<>(), null);
+        }
+    }
+
+    // One catalogue lookup for all the buses on the page
+    private void enrichWithBusDetails(List<BookingDetails> bookings) {
+        Set<String> busIds = new HashSet<>();
+        for (BookingDetails booking : bookings) {
+            if (booking.getBusId() != null) {
+                busIds.add(booking.getBusId());
+            }
+        }
+        Map<String, Bus> buses = busService.getBusesByIds(busIds);
+        for (BookingDetails booking : bookings) {
+            Bus bus = buses.get(booking.getBusId());
+            if (bus != null) {
+                booking.setBusName(bus.getName());
+                booking.setBusType(bus.getType());
+                booking.setDeparture(bus.getDeparture());
+                booking.setArrival(bus.getArrival());
+            }
         }
-        
-        return bookings;
     }
 }
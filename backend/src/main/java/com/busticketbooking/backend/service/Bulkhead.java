@@ -0,0 +1,68 @@
+package com.busticketbooking.backend.service;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps concurrent calls to one dependency.
+ *
+ * With virtual threads nothing else limits how many requests pile up on a slow
+ * backend, so each dependency gets its own permits. A call waits at most
+ * {@code maxWaitMillis} for a permit and then fails with {@link BulkheadFullException}.
+ * That way a stalled Firestore cannot take every request down with it.
+ */
+public final class Bulkhead {
+
+    @FunctionalInterface
+    public interface Call<T, E extends Exception> {
+        T run() throws E;
+    }
+
+    private final String name;
+    private final int maxConcurrent;
+    private final long maxWaitMillis;
+    private final Semaphore permits;
+    private final AtomicLong rejected = new AtomicLong();
+
+    public Bulkhead(String name, int maxConcurrent, long maxWaitMillis) {
+        if (maxConcurrent <= 0) {
+            throw new IllegalArgumentException("Bulkhead " + name + " needs at least one permit");
+        }
+        this.name = name;
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaitMillis = maxWaitMillis;
+        this.permits = new Semaphore(maxConcurrent);
+    }
+
+    public <T, E extends Exception> T execute(Call<T, E> call) throws E {
+        boolean acquired;
+        try {
+            acquired = permits.tryAcquire(maxWaitMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new BulkheadFullException("Interrupted waiting for " + name);
+        }
+        if (!acquired) {
+            rejected.incrementAndGet();
+            throw new BulkheadFullException(name + " is busy, try again shortly");
+        }
+        try {
+            return call.run();
+        } finally {
+            permits.release();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getInFlight() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+}
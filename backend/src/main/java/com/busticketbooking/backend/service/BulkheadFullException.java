@@ -0,0 +1,11 @@
+package com.busticketbooking.backend.service;
+
+/**
+ * Thrown when a dependency already has as many calls in flight as its bulkhead allows.
+ */
+public class BulkheadFullException extends RuntimeException {
+
+    public BulkheadFullException(String message) {
+        super(message);
+    }
+}
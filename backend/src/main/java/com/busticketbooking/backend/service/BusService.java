@@ -1,36 +1,157 @@
 package com.busticketbooking.backend.service;
 
 import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.BusSearchCriteria;
+import com.busticketbooking.backend.model.BusSearchResult;
+import com.busticketbooking.backend.model.Itinerary;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Map;
 
 @Service
 public class BusService {
 
-    private List<Bus> busList = new ArrayList<>();
+    private final TripIndex tripIndex = new TripIndex();
+
+    // Initialized for instances created outside Spring (benchmarks)
+    @Value("${search.connections.min-layover-minutes:30}")
+    private int defaultMinLayover = 30;
+
+    @Value("${search.connections.max-legs:3}")
+    private int maxLegs = 3;
+
+    @Value("${search.connections.max-journey-hours:48}")
+    private int maxJourneyHours = 48;
+
+    @Value("${search.connections.max-results:10}")
+    private int maxConnectionResults = 10;
+
+    @Value("${booking.max-advance-days:365}")
+    private int maxAdvanceDays = 365;
 
     public BusService() {
         // Initialize with Mock Data for now
+        List<Bus> busList = new ArrayList<>();
         busList.add(new Bus("1", "NeoTravels Premium", "AC Sleeper (2+1)", "22:00", "06:00", "8h 00m", 50, 12, 4.5, "Mumbai", "Pune", "2023-10-25"));
         busList.add(new Bus("2", "CityExpress", "Non-AC Seater (2+2)", "20:30", "05:00", "8h 30m", 50, 24, 4.0, "Mumbai", "Pune", "2023-10-25"));
         busList.add(new Bus("3", "NightRider", "AC Volvo", "23:00", "06:30", "7h 30m", 50, 5, 4.8, "Mumbai", "Pune", "2023-10-25"));
         busList.add(new Bus("4", "InterCity Gold", "AC Sleeper", "21:15", "05:45", "8h 30m", 50, 15, 4.2, "Mumbai", "Pune", "2023-10-25"));
+        tripIndex.putAll(busList);
     }
 
+    /**
+     * Direct trips for a route, ordered by departure time.
+     * A missing date matches every date on the route; missing cities list the catalogue.
+     */
     public List<Bus> searchBuses(String from, String to, String date) {
-        // For current demo, ignoring date/cities filtering to return data always
-        return busList;
-        
-        // Real filtering would be:
-        // return busList.stream()
-        //         .filter(b -> b.getFromCity().equalsIgnoreCase(from) && b.getToCity().equalsIgnoreCase(to))
-        //         .collect(Collectors.toList());
-    }
-    
+        BusSearchCriteria criteria = new BusSearchCriteria();
+        criteria.setFrom(from);
+        criteria.setTo(to);
+        criteria.setDate(date);
+        criteria.setSize(Integer.MAX_VALUE);
+        return tripIndex.search(criteria).getBuses();
+    }
+
+    /**
+     * Filtered, sorted and paged search over the route/date index.
+     */
+    public BusSearchResult search(BusSearchCriteria criteria) {
+        return tripIndex.search(criteria);
+    }
+
+    /**
+     * Journeys with changes between two cities, first trip on criteria.date.
+     * criteria.connections picks "earliest" or "cheapest"; minLayover and maxLegs
+     * fall back to the configured defaults, and size is capped at max-results.
+     */
+    public List<Itinerary> searchConnections(BusSearchCriteria criteria) {
+        int minLayover = criteria.getMinLayover() == null ? defaultMinLayover : Math.max(0, criteria.getMinLayover());
+        int legs = criteria.getMaxLegs() == null ? maxLegs : Math.max(1, Math.min(maxLegs, criteria.getMaxLegs()));
+        int limit = Math.max(1, Math.min(maxConnectionResults, criteria.getSize()));
+        return tripIndex.connections(criteria, minLayover, legs, maxJourneyHours * 60, limit);
+    }
+
     public Bus getBusById(String id) {
-        return busList.stream().filter(b -> b.getId().equals(id)).findFirst().orElse(null);
+        return tripIndex.get(id);
+    }
+
+    /**
+     * The travel date a seat, fare or booking request for this bus is for; the bus's
+     * scheduled date when none is given. A bus with a date runs only on that date.
+     * One without runs every day and takes ISO dates from yesterday (for clients
+     * behind UTC) up to booking.max-advance-days ahead.
+     *
+     * @throws IllegalArgumentException if the bus does not run on the date
+     */
+    public String tripDate(Bus bus, String date) {
+        String scheduled = bus.getDate() == null || bus.getDate().isBlank() ? null : bus.getDate().trim();
+        if (date == null || date.isBlank()) {
+            if (scheduled == null) {
+                throw new IllegalArgumentException("date is required for bus " + bus.getId());
+            }
+            return scheduled;
+        }
+        String requested = date.trim();
+        if (scheduled != null) {
+            if (!scheduled.equals(requested)) {
+                throw new IllegalArgumentException("Bus " + bus.getId() + " only runs on " + scheduled);
+            }
+            return scheduled;
+        }
+        LocalDate day;
+        try {
+            day = LocalDate.parse(requested);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("date must be YYYY-MM-DD");
+        }
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        if (day.isBefore(today.minusDays(1)) || day.isAfter(today.plusDays(maxAdvanceDays))) {
+            throw new IllegalArgumentException("Bus " + bus.getId() + " cannot be booked for " + requested);
+        }
+        return day.toString();
+    }
+
+    /**
+     * Look up several buses at once. Unknown ids are left out of the result.
+     */
+    public Map<String, Bus> getBusesByIds(Collection<String> ids) {
+        Map<String, Bus> buses = new HashMap<>();
+        for (String id : ids) {
+            Bus bus = tripIndex.get(id);
+            if (bus != null) {
+                buses.put(id, bus);
+            }
+        }
+        return buses;
+    }
+
+    /**
+     * Add or replace trips in the catalogue. Trips with an existing id replace the old entry.
+     */
+    public void addBuses(Collection<Bus> buses) {
+        tripIndex.putAll(buses);
+    }
+
+    public Bus removeBus(String id) {
+        return tripIndex.remove(id);
+    }
+
+    public int getTripCount() {
+        return tripIndex.size();
+    }
+
+    /**
+     * Changes whenever the catalogue changes; used to invalidate cached responses.
+     */
+    public long getCatalogVersion() {
+        return tripIndex.version();
     }
 }
@@ -0,0 +1,59 @@
+package com.busticketbooking.backend.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Membership for a cluster of backend nodes. {@link ClusterService} only needs
+ * to know who is in the cluster; it works out partition ownership itself, the
+ * same way on every node, from the members in a view.
+ *
+ * An implementation calls each member's listener with every new view, in epoch
+ * order, including views where a member dropped out because it failed rather
+ * than left. Views must list the members in the same order on every node.
+ */
+public interface ClusterCoordinator {
+
+    /**
+     * @param id  unique and stable across restarts of the same node
+     * @param url base URL other nodes use to reach this node, e.g. http://10.0.0.5:8080
+     */
+    record Member(String id, String url) {
+    }
+
+    /**
+     * @param epoch grows with every membership change
+     */
+    record View(long epoch, List<Member> members) {
+
+        public boolean contains(String memberId) {
+            for (Member member : members) {
+                if (member.id().equals(memberId)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * Add self to the cluster. The listener is called with the view that includes
+     * self, then after every later change until {@link #leave}.
+     */
+    void join(Member self, Consumer<View> listener);
+
+    /**
+     * Remove self from the cluster; the other members get a view without it.
+     */
+    void leave(Member self);
+
+    View view();
+
+    /**
+     * True when this node can only ever be the cluster's one member, so the seats
+     * it restored from its own journal are all there is.
+     */
+    default boolean isStandalone() {
+        return false;
+    }
+}
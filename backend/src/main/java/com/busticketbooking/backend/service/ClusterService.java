@@ -0,0 +1,511 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingPage;
+import com.busticketbooking.backend.model.PartitionHandoff;
+import com.busticketbooking.backend.repository.BookingRepository;
+import com.busticketbooking.backend.model.SeatHold;
+import com.busticketbooking.backend.service.ClusterCoordinator.Member;
+import com.busticketbooking.backend.service.ClusterCoordinator.View;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Splits seat inventory between the nodes of a cluster.
+ *
+ * Trips hash to a fixed number of partitions and each partition has one owner
+ * ({@link PartitionTable}); only the owner holds, books or prices seats on the
+ * partition's trips, and other nodes forward those requests to it. Membership
+ * comes from a {@link ClusterCoordinator}. When a view moves a partition, the
+ * old owner waits for its in-flight requests on that partition to finish, then
+ * sends the booked seats and open holds to the new owner, which answers 503
+ * for the partition until they arrive. A partition whose old owner died, or
+ * whose handoff does not arrive within handoff-timeout, is rebuilt from the
+ * confirmed bookings in the {@link BookingRepository} first, and stays 503
+ * until that finishes; holds open on a dead node are lost with it.
+ *
+ * With the standalone coordinator the view has one member, nothing is
+ * forwarded and the request path only checks the member count.
+ */
+@Slf4j
+@Service
+public class ClusterService {
+
+    public static final String NODE_HEADER = "X-Cluster-Node";
+    public static final String TOKEN_HEADER = "X-Cluster-Token";
+    public static final String HANDOFF_PATH = "/internal/cluster/handoff";
+
+    private static final int HANDOFF_ATTEMPTS = 3;
+    private static final String CONFIRMED = "CONFIRMED";
+    private static final String REBUILD_REF = "rebuild";
+    private static final int REBUILD_PAGE_SIZE = 500;
+    private static final long REBUILD_RETRY_SECONDS = 5;
+    // pendingUntil value for a partition being rebuilt from stored bookings; it has no deadline
+    private static final long REBUILDING = Long.MAX_VALUE;
+
+    @Autowired
+    private ClusterCoordinator coordinator;
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Autowired
+    private SeatHoldService seatHoldService;
+
+    @Autowired
+    private BookingRepository bookingRepository;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${cluster.node-id:local}")
+    private String nodeId;
+
+    @Value("${cluster.node-url:http://localhost:8080}")
+    private String nodeUrl;
+
+    @Value("${cluster.partitions:271}")
+    private int partitions;
+
+    @Value("${cluster.virtual-nodes:64}")
+    private int virtualNodes;
+
+    @Value("${cluster.secret:}")
+    private String secret;
+
+    @Value("${cluster.handoff-timeout-ms:10000}")
+    private long handoffTimeoutMillis;
+
+    @Value("${cluster.drain-timeout-ms:5000}")
+    private long drainTimeoutMillis;
+
+    private Member self;
+    private volatile PartitionTable table;
+    private volatile boolean joined;
+    // Requests being served here, per partition, so a partition can be drained before it moves
+    private AtomicIntegerArray inFlight;
+    // Until when (epoch millis) a gained partition waits for its handoff, or REBUILDING; 0 once it is ready
+    private AtomicLongArray pendingUntil;
+    // Newest view epoch a handoff has arrived for, per partition; it can arrive before the view does
+    private AtomicLongArray handoffEpoch;
+    private final ReentrantLock viewLock = new ReentrantLock();
+    private final ExecutorService handoffExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final AtomicLong forwarded = new AtomicLong();
+    // Partitions waiting for a rebuild; one scan of the bookings serves all of them
+    private final BitSet rebuildQueue = new BitSet();
+    private boolean rebuildRunning;
+    private HttpClient client;
+
+    @PostConstruct
+    public void init() {
+        if (partitions <= 0 || virtualNodes <= 0) {
+            throw new IllegalArgumentException("cluster.partitions and cluster.virtual-nodes must be positive");
+        }
+        self = new Member(nodeId, nodeUrl);
+        inFlight = new AtomicIntegerArray(partitions);
+        pendingUntil = new AtomicLongArray(partitions);
+        handoffEpoch = new AtomicLongArray(partitions);
+        // Until the node joins, it serves everything itself
+        table = PartitionTable.build(new View(0, List.of(self)), partitions, virtualNodes);
+        client = HttpClient.newBuilder().connectTimeout(Duration.ofSeconds(2)).build();
+    }
+
+    // Joined once the web server is up, so other nodes can reach this one as soon as they see it
+    @EventListener(ApplicationReadyEvent.class)
+    public void join() {
+        coordinator.join(self, this::onView);
+    }
+
+    @PreDestroy
+    public void leave() {
+        if (joined) {
+            // Hand everything over first, so the remaining nodes never wait for a node that is gone
+            List<Member> others = new ArrayList<>(table.view().members());
+            others.removeIf(member -> member.id().equals(self.id()));
+            List<CompletableFuture<Void>> handoffs = applyView(new View(table.view().epoch() + 1, others));
+            try {
+                CompletableFuture.allOf(handoffs.toArray(new CompletableFuture[0]))
+                        .get(drainTimeoutMillis + handoffTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (Exception e) {
+                log.warn("Cluster: not all partitions were handed off before shutdown: {}", e.toString());
+            }
+            coordinator.leave(self);
+        }
+        handoffExecutor.shutdown();
+    }
+
+    public boolean isClustered() {
+        return table.size() > 1;
+    }
+
+    public int partitionOf(String busId, String date) {
+        return PartitionTable.partitionOf(SeatInventoryService.tripKey(busId, date), partitions);
+    }
+
+    /**
+     * Partition for state kept per email address (pending OTPs). The prefix keeps
+     * these keys apart from trip keys, which never contain '@'.
+     */
+    public int partitionOfEmail(String email) {
+        return PartitionTable.partitionOf("email|" + email.trim().toLowerCase(Locale.ROOT), partitions);
+    }
+
+    /**
+     * Mark a request on the partition as started. Call before {@link #ownerOf}, and
+     * {@link #exit} when the request is done, however it ends.
+     */
+    public void enter(int partition) {
+        inFlight.incrementAndGet(partition);
+    }
+
+    public void exit(int partition) {
+        inFlight.decrementAndGet(partition);
+    }
+
+    /**
+     * @return null if this node owns the partition, otherwise the member that does
+     */
+    public Member ownerOf(int partition) {
+        Member owner = table.owner(partition);
+        return owner == null || owner.id().equals(self.id()) ? null : owner;
+    }
+
+    /**
+     * True while this node owns the partition but is still waiting for its seats.
+     */
+    public boolean isPending(int partition) {
+        long until = pendingUntil.get(partition);
+        if (until == 0) {
+            return false;
+        }
+        if (until == REBUILDING || System.currentTimeMillis() < until) {
+            return true;
+        }
+        if (pendingUntil.compareAndSet(partition, until, REBUILDING)) {
+            log.atWarn().addKeyValue("partition", partition).log("Cluster: no handoff arrived, rebuilding partition from stored bookings");
+            rebuild(partition);
+        }
+        return true;
+    }
+
+    /**
+     * Whether a request came from another node of this cluster (and so was already
+     * rate limited and routed there).
+     */
+    public boolean isTrustedHop(HttpServletRequest request) {
+        String token = request.getHeader(TOKEN_HEADER);
+        return request.getHeader(NODE_HEADER) != null && token != null && !secret.isEmpty()
+                && MessageDigest.isEqual(token.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public String getNodeId() {
+        return self.id();
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void recordForward() {
+        forwarded.incrementAndGet();
+    }
+
+    public long getForwardedCount() {
+        return forwarded.get();
+    }
+
+    public int getOwnedPartitions() {
+        int owned = 0;
+        for (int p = 0; p < partitions; p++) {
+            if (ownerOf(p) == null) owned++;
+        }
+        return owned;
+    }
+
+    public int getPendingPartitions() {
+        int pending = 0;
+        for (int p = 0; p < partitions; p++) {
+            if (pendingUntil.get(p) != 0) pending++;
+        }
+        return pending;
+    }
+
+    /**
+     * This node's view of the cluster, for the internal status endpoint.
+     */
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("node", self.id());
+        status.put("epoch", table.view().epoch());
+        status.put("members", table.view().members());
+        status.put("partitions", partitions);
+        status.put("owned", getOwnedPartitions());
+        status.put("pending", getPendingPartitions());
+        status.put("trips", seatInventoryService.tripKeys().size());
+        return status;
+    }
+
+    /**
+     * Apply seat state sent by the previous owner of some partitions.
+     */
+    public void acceptHandoff(PartitionHandoff handoff) {
+        // Node ids can be longer than a journal ref; the log line below names the sender
+        String ref = "handoff";
+        for (PartitionHandoff.Trip trip : handoff.getTrips()) {
+            seatInventoryService.adopt(trip.getBusId(), trip.getDate(), trip.getBooked(), ref);
+        }
+        for (SeatHold hold : handoff.getHolds()) {
+            seatHoldService.adopt(hold);
+        }
+        for (int p : handoff.getPartitions()) {
+            handoffEpoch.accumulateAndGet(p, handoff.getEpoch(), Math::max);
+            pendingUntil.set(p, 0);
+        }
+        log.atInfo().addKeyValue("from", handoff.getFromNode()).addKeyValue("epoch", handoff.getEpoch())
+                .log("Cluster: took over {} partitions with {} trips and {} holds",
+                        handoff.getPartitions().length, handoff.getTrips().size(), handoff.getHolds().size());
+    }
+
+    private void onView(View view) {
+        applyView(view);
+    }
+
+    // Swap in the table for a new view and start handing off the partitions this node lost
+    private List<CompletableFuture<Void>> applyView(View view) {
+        viewLock.lock();
+        try {
+            PartitionTable previous = table;
+            PartitionTable next = PartitionTable.build(view, partitions, virtualNodes);
+            // Before the first view, whoever owned a partition is who would own it without this node
+            if (!joined) {
+                List<Member> others = new ArrayList<>(view.members());
+                others.removeIf(member -> member.id().equals(self.id()));
+                previous = PartitionTable.build(new View(view.epoch() - 1, others), partitions, virtualNodes);
+            }
+            table = next;
+
+            long now = System.currentTimeMillis();
+            Map<Member, BitSet> lost = new HashMap<>();
+            int gained = 0;
+            for (int p = 0; p < partitions; p++) {
+                Member before = previous.owner(p);
+                Member after = next.owner(p);
+                boolean wasMine = before != null && before.id().equals(self.id());
+                boolean isMine = after != null && after.id().equals(self.id());
+                if (isMine && !wasMine) {
+                    gained++;
+                    boolean previousOwnerAlive = before != null && view.contains(before.id());
+                    if (handoffEpoch.get(p) >= view.epoch() || coordinator.isStandalone()) {
+                        pendingUntil.set(p, 0);
+                    } else if (previousOwnerAlive) {
+                        pendingUntil.set(p, now + handoffTimeoutMillis);
+                    } else {
+                        // Nobody is left to send the seats; local state may be empty or stale
+                        pendingUntil.set(p, REBUILDING);
+                        rebuild(p);
+                    }
+                } else if (!isMine) {
+                    pendingUntil.set(p, 0);
+                    if (wasMine && joined && after != null) {
+                        lost.computeIfAbsent(after, k -> new BitSet()).set(p);
+                    }
+                }
+            }
+            joined = true;
+            log.atInfo().addKeyValue("epoch", view.epoch()).addKeyValue("members", view.members().size())
+                    .log("Cluster: view changed, gained {} partitions, handing off {}", gained,
+                            lost.values().stream().mapToInt(BitSet::cardinality).sum());
+
+            List<CompletableFuture<Void>> handoffs = new ArrayList<>();
+            for (Map.Entry<Member, BitSet> entry : lost.entrySet()) {
+                handoffs.add(CompletableFuture.runAsync(
+                        () -> handOff(entry.getKey(), entry.getValue(), view.epoch()), handoffExecutor));
+            }
+            return handoffs;
+        } finally {
+            viewLock.unlock();
+        }
+    }
+
+    private void rebuild(int partition) {
+        synchronized (rebuildQueue) {
+            rebuildQueue.set(partition);
+            if (rebuildRunning) {
+                return;
+            }
+            rebuildRunning = true;
+        }
+        handoffExecutor.execute(this::runRebuilds);
+    }
+
+    private void runRebuilds() {
+        while (true) {
+            BitSet batch;
+            synchronized (rebuildQueue) {
+                batch = (BitSet) rebuildQueue.clone();
+                rebuildQueue.clear();
+                if (batch.isEmpty()) {
+                    rebuildRunning = false;
+                    return;
+                }
+            }
+            try {
+                rebuildFromBookings(batch);
+            } catch (Exception e) {
+                log.atError().addKeyValue("partitions", batch.cardinality()).setCause(e)
+                        .log("Cluster: rebuilding partitions failed, retrying in {}s", REBUILD_RETRY_SECONDS);
+                CompletableFuture.runAsync(() -> batch.stream().forEach(this::rebuild),
+                        CompletableFuture.delayedExecutor(REBUILD_RETRY_SECONDS, TimeUnit.SECONDS, handoffExecutor));
+            }
+        }
+    }
+
+    /*
+     * Book every seat of a confirmed booking on the partitions' trips that is free here.
+     * Seats are only added: a booking cancelled on the dead node may stay booked until
+     * support releases it, which is safer than selling a seat twice.
+     */
+    private void rebuildFromBookings(BitSet batch) throws Exception {
+        Map<String, PartitionHandoff.Trip> trips = new HashMap<>();
+        String cursor = null;
+        do {
+            BookingPage page = bookingRepository.findByTrip(null, null, REBUILD_PAGE_SIZE, cursor);
+            for (BookingDetails booking : page.getBookings()) {
+                if (!CONFIRMED.equals(booking.getStatus()) || booking.getBusId() == null || booking.getDate() == null
+                        || booking.getSelectedSeats() == null || !batch.get(partitionOf(booking.getBusId(), booking.getDate()))) {
+                    continue;
+                }
+                trips.computeIfAbsent(SeatInventoryService.tripKey(booking.getBusId(), booking.getDate()), key -> {
+                    PartitionHandoff.Trip trip = new PartitionHandoff.Trip();
+                    trip.setBusId(booking.getBusId());
+                    trip.setDate(booking.getDate().trim());
+                    trip.setBooked(new ArrayList<>());
+                    return trip;
+                }).getBooked().addAll(booking.getSelectedSeats());
+            }
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+
+        for (PartitionHandoff.Trip trip : trips.values()) {
+            // Lost or handed back while the scan ran; the new owner does its own
+            if (pendingUntil.get(partitionOf(trip.getBusId(), trip.getDate())) != REBUILDING) continue;
+            seatInventoryService.bookFree(trip.getBusId(), trip.getDate(), trip.getBooked(), REBUILD_REF);
+        }
+        for (int p = batch.nextSetBit(0); p >= 0; p = batch.nextSetBit(p + 1)) {
+            pendingUntil.compareAndSet(p, REBUILDING, 0);
+        }
+        log.atInfo().addKeyValue("partitions", batch.cardinality())
+                .log("Cluster: rebuilt {} trips from stored bookings", trips.size());
+    }
+
+    private void handOff(Member to, BitSet moved, long epoch) {
+        drain(moved);
+
+        PartitionHandoff handoff = new PartitionHandoff();
+        handoff.setFromNode(self.id());
+        handoff.setEpoch(epoch);
+        handoff.setPartitions(moved.stream().toArray());
+        List<String> tripKeys = new ArrayList<>();
+        for (String key : seatInventoryService.tripKeys()) {
+            if (!moved.get(PartitionTable.partitionOf(key, partitions))) continue;
+            SeatMap seatMap = seatInventoryService.seatMapIfPresent(key);
+            if (seatMap == null) continue;
+            // Trip keys are busId|date; bus ids never contain '|'
+            int split = key.indexOf('|');
+            PartitionHandoff.Trip trip = new PartitionHandoff.Trip();
+            trip.setBusId(key.substring(0, split));
+            trip.setDate(key.substring(split + 1));
+            trip.setBooked(seatMap.seatsIn(SeatMap.BOOKED));
+            handoff.getTrips().add(trip);
+            tripKeys.add(key);
+        }
+        handoff.getHolds().addAll(seatHoldService.detach(
+                hold -> moved.get(partitionOf(hold.getBusId(), hold.getDate()))));
+
+        if (send(to, handoff)) {
+            tripKeys.forEach(seatInventoryService::drop);
+        }
+    }
+
+    // Wait for requests that were routed here before the view changed
+    private void drain(BitSet moved) {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(drainTimeoutMillis);
+        for (int p = moved.nextSetBit(0); p >= 0; p = moved.nextSetBit(p + 1)) {
+            while (inFlight.get(p) > 0) {
+                if (System.nanoTime() > deadline) {
+                    log.atWarn().addKeyValue("partition", p).log("Cluster: handing off with requests still in flight");
+                    return;
+                }
+                try {
+                    Thread.sleep(5);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private boolean send(Member to, PartitionHandoff handoff) {
+        for (int attempt = 1; attempt <= HANDOFF_ATTEMPTS; attempt++) {
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(to.url() + HANDOFF_PATH))
+                        .header("Content-Type", "application/json")
+                        .header(NODE_HEADER, self.id())
+                        .header(TOKEN_HEADER, secret)
+                        .timeout(Duration.ofMillis(handoffTimeoutMillis))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(handoff)))
+                        .build();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() == 200) {
+                    log.atInfo().addKeyValue("to", to.id()).addKeyValue("epoch", handoff.getEpoch())
+                            .log("Cluster: handed off {} partitions with {} trips and {} holds",
+                                    handoff.getPartitions().length, handoff.getTrips().size(), handoff.getHolds().size());
+                    return true;
+                }
+                log.atWarn().addKeyValue("to", to.id()).addKeyValue("attempt", attempt)
+                        .log("Cluster: handoff refused with status {}", response.statusCode());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.atWarn().addKeyValue("to", to.id()).addKeyValue("attempt", attempt).log("Cluster: handoff failed: {}", e.toString());
+            }
+        }
+        log.atError().addKeyValue("to", to.id()).addKeyValue("epoch", handoff.getEpoch())
+                .log("Cluster: gave up handing off {} partitions; the new owner will serve them without this node's seats",
+                        handoff.getPartitions().length);
+        return false;
+    }
+}
@@ -1,19 +1,23 @@
 package com.busticketbooking.backend.service;
 
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.mail.SimpleMailMessage;
-import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.stereotype.Service;
 
+/**
+ * Builds outgoing emails and queues them on the {@link MailDispatcher}; nothing here waits on SMTP.
+ */
+@Slf4j
 @Service
 public class EmailService {
 
-    @Autowired(required = false)
-    private JavaMailSender mailSender;
+    @Autowired
+    private MailDispatcher mailDispatcher;
 
     public void sendBookingConfirmation(String toEmail, String bookingId, String busName, String seats, double totalAmount) {
-        if (mailSender == null) {
-            System.out.println("Email service not configured. Skipping email to: " + toEmail);
+        if (!mailDispatcher.isConfigured()) {
+            log.info("Email service not configured, skipping booking confirmation");
             return;
         }
 
@@ -33,16 +37,21 @@ public class EmailService {
                 "Have a safe journey."
             );
 
-            mailSender.send(message);
-            System.out.println("Confirmation email sent to: " + toEmail);
+            if (!mailDispatcher.enqueue(message, MailDispatcher.Priority.NORMAL)) {
+                log.atWarn().addKeyValue("bookingId", bookingId).log("Email queue full, dropping booking confirmation");
+            }
         } catch (Exception e) {
-            System.err.println("Failed to send email: " + e.getMessage());
+            log.atError().addKeyValue("bookingId", bookingId).log("Failed to queue booking confirmation: {}", e.getMessage());
         }
     }
 
-    public void sendOtpEmail(String toEmail, String otp) {
-        if (mailSender == null) {
-            System.out.println("Email service not configured. OTP for " + toEmail + ": " + otp);
+    /**
+     * Queue an OTP email ahead of any booking confirmations.
+     * @throws RuntimeException if mail is not configured or the OTP queue is full
+     */
+    public void sendOtpEmail(String toEmail, String otp, long validMinutes) {
+        if (!mailDispatcher.isConfigured()) {
+            log.warn("Email service not configured; OTP for {} not sent", toEmail);
             throw new RuntimeException("Email service not configured");
         }
 
@@ -55,16 +64,17 @@ public class EmailService {
                 "Dear Customer,\n\n" +
                 "Your OTP for password reset is:\n\n" +
                 "    " + otp + "\n\n" +
-                "This OTP is valid for 10 minutes.\n" +
+                "This OTP is valid for " + validMinutes + " minutes.\n" +
                 "If you did not request this, please ignore this email.\n\n" +
                 "Thank you,\n" +
                 "Zybus Team"
             );
 
-            mailSender.send(message);
-            System.out.println("OTP email sent to: " + toEmail);
+            if (!mailDispatcher.enqueue(message, MailDispatcher.Priority.HIGH)) {
+                throw new RuntimeException("Email queue is full, please try again shortly");
+            }
         } catch (Exception e) {
-            System.err.println("Failed to send OTP email: " + e.getMessage());
+            log.error("Failed to queue OTP email: {}", e.getMessage());
             throw e;
         }
     }
@@ -0,0 +1,85 @@
+package com.busticketbooking.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Membership shared by every node started in the same JVM under the same cluster
+ * name, for running a multi-node cluster on one machine (several application
+ * contexts on different ports). Views are delivered synchronously, under the
+ * group's lock, so every node sees the same sequence of views.
+ */
+@Slf4j
+public class EmbeddedCoordinator implements ClusterCoordinator {
+
+    private static final Map<String, Group> GROUPS = new ConcurrentHashMap<>();
+
+    private static final class Group {
+        final ReentrantLock lock = new ReentrantLock();
+        // Sorted by member id, so views list members in the same order everywhere
+        final Map<String, Registration> members = new TreeMap<>();
+        long epoch;
+        volatile View view = new View(0, List.of());
+    }
+
+    private record Registration(Member member, Consumer<View> listener) {
+    }
+
+    private final Group group;
+
+    public EmbeddedCoordinator(String clusterName) {
+        this.group = GROUPS.computeIfAbsent(clusterName, k -> new Group());
+    }
+
+    @Override
+    public void join(Member self, Consumer<View> listener) {
+        group.lock.lock();
+        try {
+            group.members.put(self.id(), new Registration(self, listener));
+            publish();
+        } finally {
+            group.lock.unlock();
+        }
+    }
+
+    @Override
+    public void leave(Member self) {
+        group.lock.lock();
+        try {
+            if (group.members.remove(self.id()) != null) {
+                publish();
+            }
+        } finally {
+            group.lock.unlock();
+        }
+    }
+
+    @Override
+    public View view() {
+        return group.view;
+    }
+
+    // Caller holds the group's lock
+    private void publish() {
+        List<Member> members = new ArrayList<>();
+        for (Registration registration : group.members.values()) {
+            members.add(registration.member());
+        }
+        View view = new View(++group.epoch, List.copyOf(members));
+        group.view = view;
+        for (Registration registration : group.members.values()) {
+            try {
+                registration.listener().accept(view);
+            } catch (RuntimeException e) {
+                log.atError().addKeyValue("member", registration.member().id()).setCause(e).log("Cluster view listener failed");
+            }
+        }
+    }
+}
@@ -0,0 +1,175 @@
+package com.busticketbooking.backend.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for expiring large numbers of short-lived entries.
+ *
+ * Scheduling and cancelling are O(1): new timeouts go onto a lock-free queue and
+ * cancelled ones are only flagged. A single ticker thread moves pending timeouts
+ * into their slot and, on each tick, visits only the slot whose time has come,
+ * so the cost of a tick depends on what is due, not on how many entries exist.
+ */
+@Slf4j
+public final class ExpiryWheel<T> implements AutoCloseable {
+
+    // Upper bound on timeouts moved from the pending queue per tick, so a burst cannot stall expiry
+    private static final int MAX_TRANSFER_PER_TICK = 100_000;
+
+    private final long tickNanos;
+    private final int mask;
+    private final ArrayDeque<Timeout<T>>[] slots;
+    private final Queue<Timeout<T>> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger active = new AtomicInteger();
+    private final Consumer<T> onExpire;
+    private final ScheduledExecutorService ticker;
+    private final long startNanos = System.nanoTime();
+    private long tick;
+
+    @SuppressWarnings("unchecked")
+    public ExpiryWheel(String name, long tickDuration, TimeUnit unit, int wheelSize, Consumer<T> onExpire) {
+        if (wheelSize <= 0 || Integer.bitCount(wheelSize) != 1) {
+            throw new IllegalArgumentException("Wheel size must be a power of two");
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        this.mask = wheelSize - 1;
+        this.slots = new ArrayDeque[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            slots[i] = new ArrayDeque<>();
+        }
+        this.onExpire = onExpire;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true);
+            return thread;
+        });
+        ticker.scheduleAtFixedRate(this::advance, tickDuration, tickDuration, unit);
+    }
+
+    public Timeout<T> schedule(T item, long delay, TimeUnit unit) {
+        long deadline = System.nanoTime() - startNanos + unit.toNanos(delay);
+        Timeout<T> timeout = new Timeout<>(item, deadline, active);
+        active.incrementAndGet();
+        pending.add(timeout);
+        return timeout;
+    }
+
+    /**
+     * Number of scheduled timeouts that have neither fired nor been cancelled.
+     */
+    public int size() {
+        return active.get();
+    }
+
+    @Override
+    public void close() {
+        ticker.shutdownNow();
+    }
+
+    // Runs on the ticker thread only; catches up on any ticks missed while the thread was delayed
+    private void advance() {
+        try {
+            long elapsed = System.nanoTime() - startNanos;
+            while ((tick + 1) * tickNanos <= elapsed) {
+                transferPending();
+                expire(slots[(int) (tick & mask)], tick);
+                tick++;
+            }
+        } catch (RuntimeException e) {
+            log.error("Expiry wheel tick failed", e);
+        }
+    }
+
+    private void transferPending() {
+        for (int i = 0; i < MAX_TRANSFER_PER_TICK; i++) {
+            Timeout<T> timeout = pending.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            // Anything already overdue lands in the current slot and fires on this tick
+            long dueTick = Math.max(timeout.deadline / tickNanos, tick);
+            timeout.remainingRounds = (dueTick - tick) / slots.length;
+            slots[(int) (dueTick & mask)].add(timeout);
+        }
+    }
+
+    private void expire(ArrayDeque<Timeout<T>> slot, long currentTick) {
+        int count = slot.size();
+        for (int i = 0; i < count; i++) {
+            Timeout<T> timeout = slot.poll();
+            if (timeout.isCancelled()) {
+                continue;
+            }
+            if (timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                slot.add(timeout);
+                continue;
+            }
+            if (timeout.markExpired()) {
+                try {
+                    onExpire.accept(timeout.item);
+                } catch (RuntimeException e) {
+                    log.error("Expiry callback failed at tick {}", currentTick, e);
+                }
+            }
+        }
+    }
+
+    public static final class Timeout<T> {
+
+        private static final int WAITING = 0;
+        private static final int CANCELLED = 1;
+        private static final int EXPIRED = 2;
+
+        private final T item;
+        private final long deadline;
+        private final AtomicInteger active;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private long remainingRounds;
+
+        private Timeout(T item, long deadline, AtomicInteger active) {
+            this.item = item;
+            this.deadline = deadline;
+            this.active = active;
+        }
+
+        public T item() {
+            return item;
+        }
+
+        /**
+         * @return true if this call stopped the timeout from firing
+         */
+        public boolean cancel() {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                active.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        private boolean markExpired() {
+            if (state.compareAndSet(WAITING, EXPIRED)) {
+                active.decrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    }
+}
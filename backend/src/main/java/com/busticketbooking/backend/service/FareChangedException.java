@@ -0,0 +1,20 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.FareQuote;
+
+/**
+ * Thrown when the amount a client posts does not match the current fare quote.
+ */
+public class FareChangedException extends RuntimeException {
+
+    private final transient FareQuote quote;
+
+    public FareChangedException(String message, FareQuote quote) {
+        super(message);
+        this.quote = quote;
+    }
+
+    public FareQuote getQuote() {
+        return quote;
+    }
+}
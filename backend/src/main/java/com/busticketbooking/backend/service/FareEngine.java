@@ -0,0 +1,316 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.FareQuote;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-side fares per bus + travel date.
+ *
+ * A seat's price is the catalogue fare scaled by three percentages: one for
+ * how full the trip is, one for how many days are left before departure and
+ * one for the seat type (window or aisle), capped at max-percent of the
+ * catalogue fare and rounded to whole rupees.
+ *
+ * Each trip keeps its last quote. A quote is reused until the trip moves into
+ * another occupancy tier, the day changes or the catalogue is reloaded, so
+ * reading fares costs a map lookup. {@link SeatInventoryService} reports
+ * every seat change here; most do not cross a tier boundary and only compare
+ * two numbers. Trips nobody has asked a fare for are not priced at all.
+ */
+@Service
+public class FareEngine {
+
+    @Autowired
+    private BusService busService;
+
+    @Value("${pricing.occupancy-tiers:50:110,75:125,90:140}")
+    private String occupancyTiers;
+
+    @Value("${pricing.days-to-departure-tiers:0:125,2:115,6:105}")
+    private String daysToDepartureTiers;
+
+    @Value("${pricing.window-seat-percent:105}")
+    private int windowSeatPercent;
+
+    @Value("${pricing.seats-per-row:4}")
+    private int seatsPerRow;
+
+    @Value("${pricing.max-percent:200}")
+    private int maxPercent;
+
+    @Value("${pricing.zone:Asia/Kolkata}")
+    private String zoneId;
+
+    @Value("${pricing.coupons:ZYBUS10:10}")
+    private String couponSpec;
+
+    private static final int PERCENT = 100;
+
+    // Ascending thresholds and the percentage that applies from (occupancy) or up to (days) each one
+    private int[] occupancyThresholds;
+    private int[] occupancyPercents;
+    private int[] dayLimits;
+    private int[] dayPercents;
+    private Map<String, Integer> coupons;
+    private ZoneId zone;
+
+    private record Priced(FareQuote quote, long[] seatPaise, int occupancyTier, long catalogVersion, long validUntilMillis) {
+    }
+
+    private static final class Trip {
+        volatile Priced priced;
+        long version;   // guarded by the Trip's monitor
+    }
+
+    private final Map<String, Trip> trips = new ConcurrentHashMap<>();
+    private final AtomicLong repriced = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        int[][] occupancy = parsePairs("pricing.occupancy-tiers", occupancyTiers);
+        occupancyThresholds = occupancy[0];
+        occupancyPercents = occupancy[1];
+        int[][] days = parsePairs("pricing.days-to-departure-tiers", daysToDepartureTiers);
+        dayLimits = days[0];
+        dayPercents = days[1];
+        coupons = new HashMap<>();
+        if (!couponSpec.isBlank()) {
+            for (String entry : couponSpec.split(",")) {
+                String[] parts = entry.split(":");
+                try {
+                    coupons.put(parts[0].trim().toUpperCase(Locale.ROOT), Integer.parseInt(parts[1].trim()));
+                } catch (RuntimeException e) {
+                    throw new IllegalArgumentException("Invalid pricing.coupons: " + couponSpec);
+                }
+            }
+        }
+        zone = ZoneId.of(zoneId);
+    }
+
+    /**
+     * Current fares for a trip, repriced only if the cached quote is out of date.
+     *
+     * @throws IllegalArgumentException if the bus is unknown
+     */
+    public FareQuote quote(String busId, String date, SeatMap seatMap) {
+        return priced(busId, date, seatMap).quote();
+    }
+
+    /**
+     * The amount to charge for seats on a trip at the current quote, less any coupon.
+     *
+     * @param amount what the client expects to pay in INR; 0 or less accepts the quote
+     * @return the amount in paise
+     * @throws FareChangedException     if amount is positive and differs from the quote
+     * @throws IllegalArgumentException for an unknown bus, seat or coupon
+     */
+    public long checkAmount(String busId, String date, SeatMap seatMap, List<Integer> seats, String couponCode, double amount) {
+        if (seats == null || seats.isEmpty()) {
+            throw new IllegalArgumentException("No seats selected");
+        }
+        Priced priced = priced(busId, date, seatMap);
+        long subtotal = 0;
+        for (Integer seat : seats) {
+            if (seat == null || seat < 1 || seat > priced.seatPaise().length) {
+                throw new IllegalArgumentException("Invalid seat number");
+            }
+            subtotal += priced.seatPaise()[seat - 1];
+        }
+        long total = subtotal - discount(subtotal, couponCode);
+        if (amount > 0 && Math.round(amount * PERCENT) != total) {
+            throw new FareChangedException("Fare has changed", priced.quote());
+        }
+        return total;
+    }
+
+    /**
+     * Called after seats on a trip change state. Reprices the trip only if it
+     * has a quote and the change moved it into another occupancy tier; the
+     * check itself takes no lock.
+     */
+    public void occupancyChanged(String busId, String date, SeatMap seatMap) {
+        Trip trip = trips.get(SeatInventoryService.tripKey(busId, date));
+        if (trip == null || !tierChanged(trip.priced, seatMap)) {
+            return;
+        }
+        synchronized (trip) {
+            if (tierChanged(trip.priced, seatMap)) {
+                reprice(trip, busId, date, seatMap, busService.getCatalogVersion());
+            }
+        }
+    }
+
+    private boolean tierChanged(Priced priced, SeatMap seatMap) {
+        return priced != null && occupancyTier(occupiedPercent(seatMap)) != priced.occupancyTier();
+    }
+
+    public int getTripCount() {
+        return trips.size();
+    }
+
+    public long getRepricedCount() {
+        return repriced.get();
+    }
+
+    private Priced priced(String busId, String date, SeatMap seatMap) {
+        String key = SeatInventoryService.tripKey(busId, date);
+        Trip trip = trips.computeIfAbsent(key, k -> new Trip());
+        Priced priced = trip.priced;
+        if (current(priced, busService.getCatalogVersion())) {
+            return priced;
+        }
+        synchronized (trip) {
+            // Read the version before the bus, so a reload in between shows up as stale next time
+            long catalogVersion = busService.getCatalogVersion();
+            priced = trip.priced;
+            if (!current(priced, catalogVersion)) {
+                priced = reprice(trip, busId, date, seatMap, catalogVersion);
+            }
+        }
+        if (priced == null) {
+            trips.remove(key, trip);
+            throw new IllegalArgumentException("Unknown bus: " + busId);
+        }
+        return priced;
+    }
+
+    private static boolean current(Priced priced, long catalogVersion) {
+        return priced != null && priced.catalogVersion() == catalogVersion
+                && System.currentTimeMillis() < priced.validUntilMillis();
+    }
+
+    /*
+     * Caller holds the trip's lock. A seat change that checked the quote before
+     * this one was published moved the count first, so checking the tier again
+     * after publishing catches it; otherwise that change sees the new quote itself.
+     */
+    private Priced reprice(Trip trip, String busId, String date, SeatMap seatMap, long catalogVersion) {
+        Priced priced;
+        do {
+            priced = price(trip, busId, date, seatMap, catalogVersion);
+        } while (tierChanged(priced, seatMap));
+        return priced;
+    }
+
+    private Priced price(Trip trip, String busId, String date, SeatMap seatMap, long catalogVersion) {
+        Bus bus = busService.getBusById(busId);
+        if (bus == null) {
+            trip.priced = null;
+            return null;
+        }
+        long basePaise = Math.round(bus.getPrice() * PERCENT);
+        int occupied = occupiedPercent(seatMap);
+        int occupancyTier = occupancyTier(occupied);
+        int occupancyPercent = occupancyTier == 0 ? PERCENT : occupancyPercents[occupancyTier - 1];
+
+        int days = -1;
+        int dayPercent = PERCENT;
+        long validUntil = Long.MAX_VALUE;
+        try {
+            LocalDate today = LocalDate.now(zone);
+            // A trip already under way is priced as a same-day trip
+            days = (int) Math.max(0, ChronoUnit.DAYS.between(today, LocalDate.parse(date.trim())));
+            dayPercent = dayPercent(days);
+            validUntil = today.plusDays(1).atStartOfDay(zone).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            // Dates the catalogue does not use as yyyy-MM-dd get no advance-purchase adjustment
+        }
+
+        long cap = basePaise * maxPercent / PERCENT;
+        long[] seatPaise = new long[seatMap.capacity()];
+        double[] seatPrices = new double[seatPaise.length];
+        for (int i = 0; i < seatPaise.length; i++) {
+            int column = i % seatsPerRow;
+            int seatPercent = column == 0 || column == seatsPerRow - 1 ? windowSeatPercent : PERCENT;
+            long paise = basePaise * occupancyPercent * dayPercent * seatPercent / (PERCENT * PERCENT * PERCENT);
+            // Whole rupees, so totals and coupon discounts match what the browser shows
+            seatPaise[i] = (Math.min(paise, cap) + PERCENT / 2) / PERCENT * PERCENT;
+            seatPrices[i] = seatPaise[i] / (double) PERCENT;
+        }
+        long min = seatPaise.length == 0 ? 0 : Arrays.stream(seatPaise).min().getAsLong();
+        long max = seatPaise.length == 0 ? 0 : Arrays.stream(seatPaise).max().getAsLong();
+
+        FareQuote quote = new FareQuote(busId, date.trim(), ++trip.version, bus.getPrice(), seatPrices,
+                min / (double) PERCENT, max / (double) PERCENT, occupied, days,
+                validUntil == Long.MAX_VALUE ? null : Instant.ofEpochMilli(validUntil).toString());
+        Priced priced = new Priced(quote, seatPaise, occupancyTier, catalogVersion, validUntil);
+        trip.priced = priced;
+        repriced.incrementAndGet();
+        return priced;
+    }
+
+    private long discount(long subtotalPaise, String couponCode) {
+        if (couponCode == null || couponCode.isBlank()) {
+            return 0;
+        }
+        Integer percentOff = coupons.get(couponCode.trim().toUpperCase(Locale.ROOT));
+        if (percentOff == null) {
+            throw new IllegalArgumentException("Invalid coupon code");
+        }
+        return Math.round(subtotalPaise / (double) PERCENT * percentOff / PERCENT) * PERCENT;
+    }
+
+    private static int occupiedPercent(SeatMap seatMap) {
+        return seatMap.taken() * PERCENT / seatMap.capacity();
+    }
+
+    // Number of thresholds reached; 0 means the base occupancy price
+    private int occupancyTier(int occupiedPercent) {
+        int tier = 0;
+        while (tier < occupancyThresholds.length && occupiedPercent >= occupancyThresholds[tier]) {
+            tier++;
+        }
+        return tier;
+    }
+
+    private int dayPercent(int days) {
+        for (int i = 0; i < dayLimits.length; i++) {
+            if (days <= dayLimits[i]) {
+                return dayPercents[i];
+            }
+        }
+        return PERCENT;
+    }
+
+    // "a:b,c:d" -> {{a, c}, {b, d}}, sorted by the first number
+    private static int[][] parsePairs(String property, String spec) {
+        if (spec == null || spec.isBlank()) {
+            return new int[][] { new int[0], new int[0] };
+        }
+        String[] entries = spec.split(",");
+        int[][] pairs = new int[entries.length][];
+        try {
+            for (int i = 0; i < entries.length; i++) {
+                String[] parts = entries[i].split(":");
+                pairs[i] = new int[] { Integer.parseInt(parts[0].trim()), Integer.parseInt(parts[1].trim()) };
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid " + property + ": " + spec);
+        }
+        Arrays.sort(pairs, (a, b) -> Integer.compare(a[0], b[0]));
+        int[] keys = new int[pairs.length];
+        int[] values = new int[pairs.length];
+        for (int i = 0; i < pairs.length; i++) {
+            keys[i] = pairs[i][0];
+            values[i] = pairs[i][1];
+        }
+        return new int[][] { keys, values };
+    }
+}
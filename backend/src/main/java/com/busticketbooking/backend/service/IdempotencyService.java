@@ -0,0 +1,188 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.util.Hex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Replays the first response for a repeated Idempotency-Key.
+ *
+ * The first request for a key runs the action; duplicates that arrive while it is
+ * still running wait on the same future instead of running it again, and later
+ * duplicates get the stored response. Every entry has the same TTL, so insertion
+ * order is also expiry order: a FIFO of entries is trimmed from the head on each
+ * insert, which enforces both the TTL and the size bound in O(1) amortised.
+ * Server errors are not stored, so a retry after a 5xx runs again; their FIFO
+ * records are dropped once they reach the head, and count towards the bound until then.
+ *
+ * Keys are scoped per user as well as per endpoint, so two clients that happen to
+ * send the same key never see each other's responses. The app has no server-side
+ * login, so the user is the userId (or else the email) the request carries.
+ *
+ * A key reused with a different body is rejected. Bodies are compared by the
+ * SHA-256 of their JSON with properties and map entries sorted, so equal requests
+ * match across nodes and restarts and different ones cannot collide in practice.
+ */
+@Service
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${idempotency.ttl-seconds:3600}")
+    private long ttlSeconds;
+
+    @Value("${idempotency.max-entries:100000}")
+    private int maxEntries;
+
+    @Value("${idempotency.wait-seconds:30}")
+    private long waitSeconds;
+
+    private record Entry(String key, String fingerprint, long expiresAt, CompletableFuture<ResponseEntity<?>> response) {
+    }
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final Queue<Entry> insertionOrder = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+
+    private ObjectMapper canonicalMapper;
+
+    @PostConstruct
+    void init() {
+        canonicalMapper = objectMapper.copy().configure(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS, true);
+        canonicalMapper.setConfig(canonicalMapper.getSerializationConfig()
+                .with(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY));
+    }
+
+    /**
+     * The user a request's key belongs to: its userId, or else its email.
+     */
+    public static String principal(Object userId, Object email) {
+        if (userId != null && !userId.toString().isBlank()) {
+            return "user:" + userId.toString().trim();
+        }
+        if (email != null && !email.toString().isBlank()) {
+            return "email:" + email.toString().trim().toLowerCase(Locale.ROOT);
+        }
+        return "";
+    }
+
+    /**
+     * @param scope endpoint the key belongs to, so the same key can be used on different endpoints
+     * @param principal user the key belongs to, from {@link #principal}
+     * @param key client-supplied Idempotency-Key, or null to just run the action
+     * @param request the request body, used to reject a key reused for a different request
+     */
+    public ResponseEntity<?> execute(String scope, String principal, String key, Object request,
+                                     Supplier<ResponseEntity<?>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        evictExpired();
+        String cacheKey = scope + "|" + principal + "|" + key;
+        String fingerprint = fingerprint(request);
+        Entry mine = new Entry(cacheKey, fingerprint, System.nanoTime() + TimeUnit.SECONDS.toNanos(ttlSeconds),
+                new CompletableFuture<>());
+
+        Entry existing;
+        while ((existing = entries.putIfAbsent(cacheKey, mine)) != null) {
+            if (existing.expiresAt - System.nanoTime() > 0) {
+                return replay(existing, fingerprint);
+            }
+            // Expired but not yet trimmed; drop it and try again
+            entries.remove(cacheKey, existing);
+        }
+
+        insertionOrder.add(mine);
+        queued.incrementAndGet();
+        try {
+            ResponseEntity<?> response = action.get();
+            mine.response.complete(response);
+            if (response.getStatusCode().is5xxServerError()) {
+                entries.remove(cacheKey, mine);
+            }
+            return response;
+        } catch (RuntimeException e) {
+            entries.remove(cacheKey, mine);
+            mine.response.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    private ResponseEntity<?> replay(Entry entry, String fingerprint) {
+        if (!entry.fingerprint.equals(fingerprint)) {
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY)
+                    .body(Collections.singletonMap("error", "Idempotency-Key was already used for a different request"));
+        }
+        try {
+            ResponseEntity<?> original = entry.response.get(waitSeconds, TimeUnit.SECONDS);
+            return ResponseEntity.status(original.getStatusCode())
+                    .headers(original.getHeaders())
+                    .header(REPLAYED_HEADER, "true")
+                    .body(original.getBody());
+        } catch (TimeoutException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Collections.singletonMap("error", "A request with this Idempotency-Key is still in progress"));
+        } catch (ExecutionException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(Collections.singletonMap("error", "Original request failed, please retry"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] body = canonicalMapper.writeValueAsBytes(request);
+            return Hex.encode(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize request", e);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // Pops expired heads, heads whose entry was dropped after an error, and anything past the bound
+    private void evictExpired() {
+        long now = System.nanoTime();
+        Entry head;
+        while ((head = insertionOrder.peek()) != null
+                && (head.expiresAt - now <= 0 || queued.get() > maxEntries || entries.get(head.key) != head)) {
+            if (insertionOrder.remove(head)) {
+                queued.decrementAndGet();
+                entries.remove(head.key, head);
+            }
+        }
+    }
+}
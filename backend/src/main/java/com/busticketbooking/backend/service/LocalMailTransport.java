@@ -0,0 +1,42 @@
+package com.busticketbooking.backend.service;
+
+import org.springframework.mail.SimpleMailMessage;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Transport for local runs and load tests: counts messages instead of delivering them,
+ * optionally sleeping to mimic an SMTP round trip.
+ */
+public class LocalMailTransport implements MailTransport {
+
+    private final long latencyMillis;
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong messages = new AtomicLong();
+
+    public LocalMailTransport(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    @Override
+    public void send(SimpleMailMessage... batch) {
+        if (latencyMillis > 0) {
+            try {
+                Thread.sleep(latencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sending", e);
+            }
+        }
+        batches.incrementAndGet();
+        messages.addAndGet(batch.length);
+    }
+
+    public long getBatchCount() {
+        return batches.get();
+    }
+
+    public long getMessageCount() {
+        return messages.get();
+    }
+}
@@ -0,0 +1,209 @@
+package com.busticketbooking.backend.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.MailSendException;
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Queue-backed mail sender so request threads never wait on SMTP.
+ *
+ * Messages go into one of two bounded queues; OTP mail is always drained before
+ * booking confirmations. A dispatcher thread groups queued messages into batches
+ * that are sent with one transport call each, on virtual threads, with at most
+ * {@code mail.dispatch.concurrency} batches in flight. Failed messages are retried
+ * with exponential backoff. When a queue is full, enqueue returns false and the
+ * caller decides whether that is an error.
+ */
+@Slf4j
+@Service
+public class MailDispatcher {
+
+    public enum Priority { HIGH, NORMAL }
+
+    @Autowired
+    private MailTransport mailTransport;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${mail.dispatch.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${mail.dispatch.batch-size:20}")
+    private int batchSize;
+
+    @Value("${mail.dispatch.concurrency:4}")
+    private int concurrency;
+
+    @Value("${mail.dispatch.max-attempts:4}")
+    private int maxAttempts;
+
+    @Value("${mail.dispatch.backoff-millis:500}")
+    private long backoffMillis;
+
+    private BlockingQueue<SimpleMailMessage> highPriority;
+    private BlockingQueue<SimpleMailMessage> normalPriority;
+    // One permit per queued message, across both queues, so the dispatcher can block on either
+    private final Semaphore queued = new Semaphore(0);
+    private Semaphore inFlight;
+    private ExecutorService senders;
+    private Thread dispatcher;
+    private volatile boolean running;
+    private Timer sendTimer;
+
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    @PostConstruct
+    public void start() {
+        highPriority = new ArrayBlockingQueue<>(queueCapacity);
+        normalPriority = new ArrayBlockingQueue<>(queueCapacity);
+        inFlight = new Semaphore(concurrency);
+        sendTimer = Timer.builder("mail.send")
+                .description("One transport call, covering a whole batch of messages")
+                .register(meterRegistry);
+        senders = Executors.newVirtualThreadPerTaskExecutor();
+        running = true;
+        dispatcher = Thread.ofVirtual().name("mail-dispatcher").start(this::dispatchLoop);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+        senders.shutdown();
+        int pending = highPriority.size() + normalPriority.size();
+        if (pending > 0) {
+            log.warn("Mail dispatcher stopped with {} unsent messages", pending);
+        }
+    }
+
+    /**
+     * @return false if the queue for this priority is full
+     */
+    public boolean enqueue(SimpleMailMessage message, Priority priority) {
+        BlockingQueue<SimpleMailMessage> queue = priority == Priority.HIGH ? highPriority : normalPriority;
+        if (!queue.offer(message)) {
+            rejected.incrementAndGet();
+            return false;
+        }
+        queued.release();
+        return true;
+    }
+
+    public boolean isConfigured() {
+        return mailTransport.isConfigured();
+    }
+
+    public int getQueueDepth(Priority priority) {
+        return priority == Priority.HIGH ? highPriority.size() : normalPriority.size();
+    }
+
+    public long getSentCount() {
+        return sent.get();
+    }
+
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                queued.acquire();
+                List<SimpleMailMessage> batch = new ArrayList<>(batchSize);
+                batch.add(next());
+                while (batch.size() < batchSize && queued.tryAcquire()) {
+                    batch.add(next());
+                }
+                inFlight.acquire();
+                senders.execute(() -> {
+                    try {
+                        sendWithRetry(batch);
+                    } finally {
+                        inFlight.release();
+                    }
+                });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    // A permit was taken, so one of the queues has a message
+    private SimpleMailMessage next() {
+        SimpleMailMessage message = highPriority.poll();
+        return message != null ? message : normalPriority.poll();
+    }
+
+    private void sendWithRetry(List<SimpleMailMessage> batch) {
+        List<SimpleMailMessage> remaining = batch;
+        for (int attempt = 1; ; attempt++) {
+            try {
+                long start = System.nanoTime();
+                try {
+                    mailTransport.send(remaining.toArray(new SimpleMailMessage[0]));
+                } finally {
+                    sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                }
+                sent.addAndGet(remaining.size());
+                return;
+            } catch (RuntimeException e) {
+                remaining = failedPart(remaining, e);
+                sent.addAndGet(batch.size() - remaining.size());
+                batch = remaining;
+                if (attempt >= maxAttempts) {
+                    failed.addAndGet(remaining.size());
+                    log.error("Giving up on {} emails after {} attempts: {}", remaining.size(), attempt, e.getMessage());
+                    return;
+                }
+                try {
+                    Thread.sleep(backoffMillis << (attempt - 1));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    failed.addAndGet(remaining.size());
+                    return;
+                }
+            }
+        }
+    }
+
+    // When the sender reports which messages failed, only those are retried
+    private static List<SimpleMailMessage> failedPart(List<SimpleMailMessage> batch, RuntimeException e) {
+        if (e instanceof MailSendException sendException && !sendException.getFailedMessages().isEmpty()) {
+            List<SimpleMailMessage> failedMessages = new ArrayList<>();
+            for (SimpleMailMessage message : batch) {
+                if (sendException.getFailedMessages().containsKey(message)) {
+                    failedMessages.add(message);
+                }
+            }
+            if (!failedMessages.isEmpty()) {
+                return failedMessages;
+            }
+        }
+        return batch;
+    }
+}
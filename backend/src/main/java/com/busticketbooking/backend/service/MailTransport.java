@@ -0,0 +1,16 @@
+package com.busticketbooking.backend.service;
+
+import org.springframework.mail.SimpleMailMessage;
+
+/**
+ * Where outgoing mail actually goes. {@link MailDispatcher} hands each batch to a single
+ * {@link #send} call so a transport can reuse one connection for the whole batch.
+ */
+public interface MailTransport {
+
+    void send(SimpleMailMessage... messages);
+
+    default boolean isConfigured() {
+        return true;
+    }
+}
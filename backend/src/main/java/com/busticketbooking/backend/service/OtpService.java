@@ -0,0 +1,116 @@
+package com.busticketbooking.backend.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Issues and checks password-reset OTPs.
+ *
+ * Codes are generated here and only ever leave the server in the email. The
+ * store keeps neither the code nor the address: both are HMAC'd with a key
+ * made at startup, so a restart invalidates every pending code. The key and
+ * the store are per node; in a cluster, ClusterFilter sends both OTP calls for
+ * an address to the same node.
+ */
+@Service
+public class OtpService {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    @Autowired
+    private EmailService emailService;
+
+    @Value("${otp.ttl-seconds:600}")
+    private int ttlSeconds;
+
+    @Value("${otp.max-attempts:5}")
+    private int maxAttempts;
+
+    @Value("${otp.max-entries:2000000}")
+    private int maxEntries;
+
+    @Value("${otp.stripes:16}")
+    private int stripes;
+
+    @Value("${otp.digits:6}")
+    private int digits;
+
+    private final SecureRandom random = new SecureRandom();
+    private Mac prototype;
+    private OtpStore store;
+
+    @PostConstruct
+    public void init() throws GeneralSecurityException {
+        byte[] secret = new byte[32];
+        random.nextBytes(secret);
+        prototype = Mac.getInstance(HMAC_ALGORITHM);
+        prototype.init(new SecretKeySpec(secret, HMAC_ALGORITHM));
+        store = new OtpStore(maxEntries, stripes, ttlSeconds, maxAttempts);
+    }
+
+    /**
+     * Generate a code for email, store its hash and queue the email.
+     * A new code replaces any pending one for the same address.
+     *
+     * @return false if too many codes are pending to accept another
+     * @throws RuntimeException if the email cannot be queued
+     */
+    public boolean issue(String email) {
+        String address = normalize(email);
+        String otp = generate();
+        if (!store.put(keyOf(address), hashOf(address, otp))) {
+            return false;
+        }
+        emailService.sendOtpEmail(address, otp, TimeUnit.SECONDS.toMinutes(ttlSeconds));
+        return true;
+    }
+
+    public OtpStore.Result verify(String email, String otp) {
+        String address = normalize(email);
+        return store.verify(keyOf(address), hashOf(address, otp.trim()));
+    }
+
+    public int pendingCount() {
+        return store.size();
+    }
+
+    private String generate() {
+        int bound = (int) Math.pow(10, digits);
+        return String.format("%0" + digits + "d", random.nextInt(bound));
+    }
+
+    private long keyOf(String address) {
+        long key = hmac("key:" + address);
+        // Zero marks an empty slot in the store
+        return key == 0 ? 1 : key;
+    }
+
+    private long hashOf(String address, String otp) {
+        return hmac("otp:" + address + ':' + otp);
+    }
+
+    // First 64 bits of the HMAC; cloning an initialised Mac is cheaper than creating one
+    private long hmac(String value) {
+        try {
+            Mac mac = (Mac) prototype.clone();
+            return ByteBuffer.wrap(mac.doFinal(value.getBytes(StandardCharsets.UTF_8))).getLong();
+        } catch (CloneNotSupportedException e) {
+            throw new IllegalStateException("HMAC-SHA256 cannot be cloned", e);
+        }
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
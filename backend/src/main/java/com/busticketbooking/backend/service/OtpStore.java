@@ -0,0 +1,232 @@
+package com.busticketbooking.backend.service;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Pending one-time passwords, kept as hashes in primitive arrays.
+ *
+ * An entry is a 64-bit key (derived from the email), a 64-bit hash of the
+ * code, an expiry in seconds and an attempt count: about 21 bytes in an
+ * open-addressing table plus 12 in an expiry queue, with no object per entry.
+ *
+ * Every entry lives for the same TTL, so entries expire in the order they were
+ * issued. Each stripe keeps a FIFO of (key, expiry) and, whenever it is touched,
+ * pops the heads that are due: expiry costs O(1) per entry and needs no timer.
+ * Re-issuing a code for the same key leaves the older queue record behind; it
+ * is recognized by its stale expiry and skipped.
+ */
+public final class OtpStore {
+
+    public enum Result { VERIFIED, INVALID, LOCKED, EXPIRED }
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final int ttlSeconds;
+    private final int maxAttempts;
+    private final int maxPerStripe;
+    private final Stripe[] stripes;
+    private final long startNanos = System.nanoTime();
+
+    /**
+     * @param stripes rounded up to a power of two
+     */
+    public OtpStore(int maxEntries, int stripes, int ttlSeconds, int maxAttempts) {
+        int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.ttlSeconds = ttlSeconds;
+        this.maxAttempts = Math.min(maxAttempts, Byte.MAX_VALUE);
+        this.maxPerStripe = Math.max(1, maxEntries / stripeCount);
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Store codeHash for key, replacing any pending code and resetting its attempts.
+     *
+     * @param key non-zero
+     * @return false if the store is full
+     */
+    public boolean put(long key, long codeHash) {
+        Stripe stripe = stripeOf(key);
+        int now = now();
+        stripe.lock.lock();
+        try {
+            stripe.sweep(now);
+            if (stripe.queued == maxPerStripe) {
+                return false;
+            }
+            stripe.upsert(key, codeHash, now + ttlSeconds);
+            stripe.enqueue(key, now + ttlSeconds);
+            return true;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Check a code. A correct code is consumed; a wrong one uses up an attempt.
+     */
+    public Result verify(long key, long codeHash) {
+        Stripe stripe = stripeOf(key);
+        int now = now();
+        stripe.lock.lock();
+        try {
+            stripe.sweep(now);
+            int slot = stripe.find(key);
+            if (slot < 0 || stripe.expires[slot] <= now) {
+                return Result.EXPIRED;
+            }
+            if (stripe.attempts[slot] >= maxAttempts) {
+                return Result.LOCKED;
+            }
+            if (stripe.codes[slot] == codeHash) {
+                stripe.delete(slot);
+                return Result.VERIFIED;
+            }
+            stripe.attempts[slot]++;
+            return Result.INVALID;
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Pending codes, including any that have expired but not yet been swept.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size;
+        }
+        return size;
+    }
+
+    private Stripe stripeOf(long key) {
+        return stripes[(int) (key >>> 32) & (stripes.length - 1)];
+    }
+
+    private int now() {
+        return (int) ((System.nanoTime() - startNanos) / 1_000_000_000L);
+    }
+
+    private static final class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+
+        // Linear-probing table; key 0 marks an empty slot
+        long[] keys = new long[INITIAL_CAPACITY];
+        long[] codes = new long[INITIAL_CAPACITY];
+        int[] expires = new int[INITIAL_CAPACITY];
+        byte[] attempts = new byte[INITIAL_CAPACITY];
+        int size;
+
+        // Ring buffer of issued codes, oldest first
+        long[] queueKeys = new long[INITIAL_CAPACITY];
+        int[] queueExpires = new int[INITIAL_CAPACITY];
+        int head;
+        int queued;
+
+        void sweep(int now) {
+            int mask = queueKeys.length - 1;
+            while (queued > 0 && queueExpires[head] <= now) {
+                int slot = find(queueKeys[head]);
+                // A later expiry means the code was re-issued; that record is further back in the queue
+                if (slot >= 0 && expires[slot] == queueExpires[head]) {
+                    delete(slot);
+                }
+                head = (head + 1) & mask;
+                queued--;
+            }
+        }
+
+        int find(long key) {
+            int mask = keys.length - 1;
+            for (int i = (int) key & mask; keys[i] != 0; i = (i + 1) & mask) {
+                if (keys[i] == key) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void upsert(long key, long code, int expiry) {
+            int slot = find(key);
+            if (slot < 0) {
+                // Keep the table at most three quarters full so probes stay short
+                if ((size + 1) * 4 > keys.length * 3) {
+                    resize(keys.length * 2);
+                }
+                int mask = keys.length - 1;
+                slot = (int) key & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                size++;
+            }
+            codes[slot] = code;
+            expires[slot] = expiry;
+            attempts[slot] = 0;
+        }
+
+        // Backward-shift deletion: pull later entries of the probe run into the hole, so no tombstones are needed
+        void delete(int slot) {
+            int mask = keys.length - 1;
+            int hole = slot;
+            for (int i = (hole + 1) & mask; keys[i] != 0; i = (i + 1) & mask) {
+                int home = (int) keys[i] & mask;
+                if (((i - home) & mask) >= ((i - hole) & mask)) {
+                    keys[hole] = keys[i];
+                    codes[hole] = codes[i];
+                    expires[hole] = expires[i];
+                    attempts[hole] = attempts[i];
+                    hole = i;
+                }
+            }
+            keys[hole] = 0;
+            size--;
+        }
+
+        void enqueue(long key, int expiry) {
+            if (queued == queueKeys.length) {
+                long[] grownKeys = new long[queueKeys.length * 2];
+                int[] grownExpires = new int[queueKeys.length * 2];
+                for (int i = 0; i < queued; i++) {
+                    int from = (head + i) & (queueKeys.length - 1);
+                    grownKeys[i] = queueKeys[from];
+                    grownExpires[i] = queueExpires[from];
+                }
+                queueKeys = grownKeys;
+                queueExpires = grownExpires;
+                head = 0;
+            }
+            int tail = (head + queued) & (queueKeys.length - 1);
+            queueKeys[tail] = key;
+            queueExpires[tail] = expiry;
+            queued++;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            long[] oldCodes = codes;
+            int[] oldExpires = expires;
+            byte[] oldAttempts = attempts;
+            keys = new long[capacity];
+            codes = new long[capacity];
+            expires = new int[capacity];
+            attempts = new byte[capacity];
+            int mask = capacity - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = (int) oldKeys[i] & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                codes[slot] = oldCodes[i];
+                expires[slot] = oldExpires[i];
+                attempts[slot] = oldAttempts[i];
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.service.ClusterCoordinator.Member;
+import com.busticketbooking.backend.service.ClusterCoordinator.View;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Owner of each trip partition for one cluster view.
+ *
+ * A trip (bus + date) hashes to one of a fixed number of partitions. Members
+ * are placed on a hash ring at several virtual points each, and a partition
+ * belongs to the first member point at or after its own position. Every node
+ * builds the same table from the same view, and a member joining or leaving
+ * moves only the partitions next to its points, about 1/n of them.
+ */
+final class PartitionTable {
+
+    private final View view;
+    private final Member[] owners;
+
+    private PartitionTable(View view, Member[] owners) {
+        this.view = view;
+        this.owners = owners;
+    }
+
+    static PartitionTable build(View view, int partitions, int virtualNodes) {
+        List<Member> members = view.members();
+        Member[] owners = new Member[partitions];
+        if (members.isEmpty()) {
+            return new PartitionTable(view, owners);
+        }
+        int points = members.size() * virtualNodes;
+        long[] ring = new long[points];
+        int[] memberOf = new int[points];
+        Integer[] order = new Integer[points];
+        long[] positions = new long[points];
+        for (int m = 0; m < members.size(); m++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                int i = m * virtualNodes + v;
+                positions[i] = hash(members.get(m).id() + "#" + v);
+                order[i] = i;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(positions[a], positions[b]));
+        for (int i = 0; i < points; i++) {
+            ring[i] = positions[order[i]];
+            memberOf[i] = order[i] / virtualNodes;
+        }
+        for (int p = 0; p < partitions; p++) {
+            int i = Arrays.binarySearch(ring, hash("partition#" + p));
+            if (i < 0) {
+                i = -i - 1;
+            }
+            owners[p] = members.get(memberOf[i == points ? 0 : i]);
+        }
+        return new PartitionTable(view, owners);
+    }
+
+    static int partitionOf(String tripKey, int partitions) {
+        return (int) Long.remainderUnsigned(hash(tripKey), partitions);
+    }
+
+    View view() {
+        return view;
+    }
+
+    /**
+     * @return null if the view has no members
+     */
+    Member owner(int partition) {
+        return owners[partition];
+    }
+
+    int size() {
+        return view.members().size();
+    }
+
+    // 64-bit FNV-1a, then the MurmurHash3 finalizer so keys that differ in one character spread over the whole ring
+    static long hash(String s) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < s.length(); i++) {
+            h ^= s.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb53fe1a85a69L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -1,18 +1,39 @@
 package com.busticketbooking.backend.service;
 
+import com.busticketbooking.backend.util.Hex;
 import com.razorpay.Order;
 import com.razorpay.RazorpayClient;
 import com.razorpay.RazorpayException;
-import com.razorpay.Utils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
 import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
+@Slf4j
 @Service
 public class PaymentService {
 
@@ -22,6 +43,54 @@ public class PaymentService {
     @Value("${razorpay.key.secret:placeholder_secret}")
     private String razorpayKeySecret;
 
+    // Batch verification runs on its own threads, so a large batch cannot take the common pool
+    @Value("${payment.verify-batch.threads:2}")
+    private int batchThreads;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    @Qualifier("razorpayBulkhead")
+    private Bulkhead bulkhead;
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int SIGNATURE_BYTES = 32;
+
+    private SecretKeySpec signingKey;
+    // One initialised Mac plus scratch buffers per thread, so verifying allocates nothing.
+    // Virtual threads are short-lived, so they borrow from a shared pool instead.
+    private ThreadLocal<Signer> signers;
+    private final Queue<Signer> idleSigners = new ConcurrentLinkedQueue<>();
+    // Shared client so every order reuses the same HTTP connection pool
+    private volatile RazorpayClient razorpayClient;
+    private Timer orderTimer;
+    private Timer fetchTimer;
+    private ExecutorService batchExecutor;
+
+    @PostConstruct
+    public void init() {
+        signingKey = new SecretKeySpec(razorpayKeySecret.getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+        signers = ThreadLocal.withInitial(() -> new Signer(signingKey));
+        orderTimer = Timer.builder("razorpay.order.create")
+                .description("Razorpay order creation round trip")
+                .register(meterRegistry);
+        fetchTimer = Timer.builder("razorpay.order.fetch")
+                .description("Razorpay order lookup round trip")
+                .register(meterRegistry);
+        AtomicInteger threadCount = new AtomicInteger();
+        batchExecutor = Executors.newFixedThreadPool(batchThreads, r -> {
+            Thread thread = new Thread(r, "payment-verify-batch-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        batchExecutor.shutdownNow();
+    }
+
     /**
      * Create a Razorpay order for payment
      * @param amount Amount in INR (will be converted to paise)
@@ -29,15 +98,22 @@ public class PaymentService {
      * @return Map containing order details
      */
     public Map<String, Object> createOrder(double amount, String receipt) throws RazorpayException {
-        RazorpayClient client = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
+        RazorpayClient client = razorpayClient();
         
         JSONObject orderRequest = new JSONObject();
-        orderRequest.put("amount", (int)(amount * 100)); // Convert to paise
+        orderRequest.put("amount", Math.round(amount * 100)); // Convert to paise
         orderRequest.put("currency", "INR");
         orderRequest.put("receipt", receipt);
         orderRequest.put("payment_capture", 1); // Auto capture payment
         
-        Order order = client.orders.create(orderRequest);
+        Order order = bulkhead.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                return client.orders.create(orderRequest);
+            } finally {
+                orderTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
         
         Map<String, Object> response = new HashMap<>();
         response.put("orderId", order.get("id"));
@@ -48,6 +124,28 @@ public class PaymentService {
         return response;
     }
 
+    /**
+     * Look up an order on Razorpay for reconciliation.
+     * @return status ("created", "attempted" or "paid"), amount and amountPaid (both in paise)
+     */
+    public Map<String, Object> fetchOrder(String orderId) throws RazorpayException {
+        RazorpayClient client = razorpayClient();
+        Order order = bulkhead.execute(() -> {
+            long start = System.nanoTime();
+            try {
+                return client.orders.fetch(orderId);
+            } finally {
+                fetchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+        });
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", order.get("status"));
+        response.put("amount", order.get("amount"));
+        response.put("amountPaid", order.get("amount_paid"));
+        return response;
+    }
+
     /**
      * Verify payment signature from Razorpay
      * @param orderId Razorpay order ID
@@ -56,27 +154,120 @@ public class PaymentService {
      * @return true if signature is valid
      */
     public boolean verifyPayment(String orderId, String paymentId, String signature) {
+        boolean pooled = Thread.currentThread().isVirtual();
+        Signer signer = pooled ? borrowSigner() : signers.get();
         try {
-            String payload = orderId + "|" + paymentId;
-            String generatedSignature = hmacSha256(payload, razorpayKeySecret);
-            return generatedSignature.equals(signature);
+            return signer.verify(orderId, paymentId, signature);
         } catch (Exception e) {
-            System.err.println("Payment verification failed: " + e.getMessage());
+            log.warn("Payment verification failed: {}", e.getMessage());
             return false;
+        } finally {
+            if (pooled) {
+                idleSigners.offer(signer);
+            }
         }
     }
 
-    private String hmacSha256(String data, String secret) throws Exception {
-        Mac sha256Hmac = Mac.getInstance("HmacSHA256");
-        SecretKeySpec secretKey = new SecretKeySpec(secret.getBytes(), "HmacSHA256");
-        sha256Hmac.init(secretKey);
-        byte[] hash = sha256Hmac.doFinal(data.getBytes());
-        StringBuilder hexString = new StringBuilder();
-        for (byte b : hash) {
-            String hex = Integer.toHexString(0xff & b);
-            if (hex.length() == 1) hexString.append('0');
-            hexString.append(hex);
+    private Signer borrowSigner() {
+        Signer signer = idleSigners.poll();
+        return signer != null ? signer : new Signer(signingKey);
+    }
+
+    /**
+     * Verify many signatures at once, e.g. for reconciliation. Results are in request order.
+     * Each entry needs "orderId", "paymentId" and "signature"; incomplete entries are invalid.
+     * The batch is split across {@code payment.verify-batch.threads}; concurrent batches queue for them.
+     */
+    public boolean[] verifyPayments(List<Map<String, String>> payments) {
+        boolean[] results = new boolean[payments.size()];
+        int chunk = Math.max(1, (payments.size() + batchThreads - 1) / batchThreads);
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int start = 0; start < payments.size(); start += chunk) {
+            int from = start;
+            int to = Math.min(payments.size(), start + chunk);
+            tasks.add(() -> {
+                for (int i = from; i < to; i++) {
+                    Map<String, String> payment = payments.get(i);
+                    results[i] = payment != null
+                            && payment.get("orderId") != null
+                            && payment.get("paymentId") != null
+                            && verifyPayment(payment.get("orderId"), payment.get("paymentId"), payment.get("signature"));
+                }
+                return null;
+            });
+        }
+        try {
+            // invokeAll returns once every chunk is done, which also publishes their results
+            for (Future<Void> done : batchExecutor.invokeAll(tasks)) {
+                done.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while verifying payments", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Payment verification failed", e.getCause());
+        }
+        return results;
+    }
+
+    private RazorpayClient razorpayClient() throws RazorpayException {
+        RazorpayClient client = razorpayClient;
+        if (client == null) {
+            synchronized (this) {
+                client = razorpayClient;
+                if (client == null) {
+                    client = new RazorpayClient(razorpayKeyId, razorpayKeySecret);
+                    razorpayClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private static final class Signer {
+        private final Mac mac;
+        private final byte[] digest = new byte[SIGNATURE_BYTES];
+        private byte[] payload = new byte[64];
+
+        Signer(SecretKeySpec key) {
+            try {
+                mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(key);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("HMAC-SHA256 unavailable", e);
+            }
+        }
+
+        // Signs "orderId|paymentId"; Razorpay ids are ASCII, so chars are copied straight into the buffer
+        boolean verify(String orderId, String paymentId, String signature) throws GeneralSecurityException {
+            int length = orderId.length() + 1 + paymentId.length();
+            if (payload.length < length) {
+                payload = new byte[Math.max(length, payload.length * 2)];
+            }
+            int n = copyAscii(orderId, 0);
+            if (n >= 0) {
+                payload[n++] = '|';
+                n = copyAscii(paymentId, n);
+            }
+            if (n < 0) {
+                byte[] utf8 = (orderId + "|" + paymentId).getBytes(StandardCharsets.UTF_8);
+                mac.update(utf8);
+            } else {
+                mac.update(payload, 0, n);
+            }
+            mac.doFinal(digest, 0);
+            return Hex.constantTimeEquals(digest, SIGNATURE_BYTES, signature);
+        }
+
+        private int copyAscii(String value, int offset) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c > 0x7f) {
+                    return -1;
+                }
+                payload[offset + i] = (byte) c;
+            }
+            return offset + value.length();
         }
-        return hexString.toString();
     }
 }
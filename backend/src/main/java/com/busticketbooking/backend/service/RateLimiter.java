@@ -0,0 +1,121 @@
+package com.busticketbooking.backend.service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Token buckets per key (client IP, email address), held in memory.
+ *
+ * Keys hash to one of a fixed number of stripes, each with its own lock and
+ * map, so unrelated clients rarely contend. A bucket is refilled lazily from
+ * the time elapsed since it was last touched; nothing runs in the background.
+ * Each stripe keeps at most {@code maxKeys / stripes} buckets and evicts the
+ * least recently used one, so a flood of distinct keys cannot grow the heap.
+ */
+public final class RateLimiter {
+
+    private static final class Bucket {
+        double tokens;
+        long updatedNanos;
+    }
+
+    private static final class Stripe extends LinkedHashMap<String, Bucket> {
+        final ReentrantLock lock = new ReentrantLock();
+        private final int maxKeys;
+
+        Stripe(int maxKeys) {
+            super(16, 0.75f, true);
+            this.maxKeys = maxKeys;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Bucket> eldest) {
+            return size() > maxKeys;
+        }
+    }
+
+    private final String name;
+    private final double capacity;
+    private final double tokensPerNano;
+    private final Stripe[] stripes;
+    private final AtomicLong rejected = new AtomicLong();
+
+    /**
+     * @param capacity        burst size: requests a new or idle key may make at once
+     * @param refillPerMinute tokens added back per minute, up to capacity
+     * @param stripes         rounded up to a power of two
+     */
+    public RateLimiter(String name, int capacity, double refillPerMinute, int maxKeys, int stripes) {
+        if (capacity <= 0 || refillPerMinute <= 0) {
+            throw new IllegalArgumentException("Rate limiter " + name + " needs a positive capacity and refill rate");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.tokensPerNano = refillPerMinute / TimeUnit.MINUTES.toNanos(1);
+        int stripeCount = stripes <= 1 ? 1 : Integer.highestOneBit(stripes - 1) << 1;
+        this.stripes = new Stripe[stripeCount];
+        for (int i = 0; i < stripeCount; i++) {
+            this.stripes[i] = new Stripe(Math.max(1, maxKeys / stripeCount));
+        }
+    }
+
+    /**
+     * Take one token for key.
+     *
+     * @return 0 if the request may proceed, otherwise the nanoseconds until a token is available
+     */
+    public long tryAcquire(String key) {
+        int h = key.hashCode();
+        Stripe stripe = stripes[(h ^ (h >>> 16)) & (stripes.length - 1)];
+        long now = System.nanoTime();
+        stripe.lock.lock();
+        try {
+            Bucket bucket = stripe.get(key);
+            if (bucket == null) {
+                bucket = new Bucket();
+                bucket.tokens = capacity;
+                stripe.put(key, bucket);
+            } else {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (now - bucket.updatedNanos) * tokensPerNano);
+            }
+            bucket.updatedNanos = now;
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            rejected.incrementAndGet();
+            return (long) Math.ceil((1 - bucket.tokens) / tokensPerNano);
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Keys currently tracked, summed over stripes without locking them.
+     */
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            size += stripe.size();
+        }
+        return size;
+    }
+
+    /**
+     * Whole seconds to wait before retrying, for a Retry-After header.
+     */
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos + TimeUnit.SECONDS.toNanos(1) - 1));
+    }
+}
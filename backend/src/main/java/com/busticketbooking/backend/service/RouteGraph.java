@@ -0,0 +1,516 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.Itinerary;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Time-dependent route graph for journeys with changes.
+ *
+ * Cities are nodes and every dated trip is an edge ("connection") with an
+ * absolute departure and arrival, in minutes since 1970-01-01 local time. The
+ * graph is built once per catalogue version into flat arrays: all connections
+ * sorted by departure, and a compressed adjacency list per city holding its
+ * outgoing connections, also in departure order.
+ *
+ * Earliest-arrival queries use the Connection Scan Algorithm: a single pass
+ * over connections in departure order from the start time, which stops as soon
+ * as departures pass the best arrival found. Cheapest queries run Dijkstra over
+ * connections keyed on total fare. A city's outgoing list is relaxed only up to
+ * where a cheaper label with no more legs already relaxed it, so each
+ * connection is pushed at most once per leg count.
+ */
+final class RouteGraph {
+
+    static final int MINUTES_PER_DAY = 24 * 60;
+    // Leg counts are stored in bytes
+    static final int MAX_LEGS = 8;
+
+    private static final int UNREACHED = Integer.MAX_VALUE;
+    private static final int LABEL_BITS = 24;
+    private static final int MAX_LABELS = 1 << LABEL_BITS;
+
+    /**
+     * One search. Times are absolute minutes; the window bounds the first leg's
+     * departure and every leg must arrive by the horizon. Filters apply to every leg.
+     * The horizon is absolute rather than per journey: a bound that depends on
+     * each journey's own start would break the dominance both searches rely on.
+     */
+    record Query(int from, int to, int windowStart, int windowEnd, int horizon, int minLayover, int maxLegs,
+                 int minPrice, int maxPrice, int minRating, int flagMask, int flagValue,
+                 int limit) {
+    }
+
+    private final long version;
+    private final TripColumns columns;
+    private final int cities;
+
+    // Connections in departure order
+    private final int[] rows;
+    private final int[] from;
+    private final int[] to;
+    private final int[] departures;
+    private final int[] arrivals;
+    private final int[] prices;
+    private final short[] ratings;
+    private final byte[] flags;
+
+    // Outgoing connections of city c are outConnections[outStart[c] .. outStart[c + 1]), departures alongside
+    private final int[] outStart;
+    private final int[] outConnections;
+    private final int[] outDepartures;
+
+    private RouteGraph(long version, TripColumns columns, int cities, int[] rows, int[] from, int[] to,
+                       int[] departures, int[] arrivals, int[] prices, short[] ratings, byte[] flags) {
+        this.version = version;
+        this.columns = columns;
+        this.cities = cities;
+        this.rows = rows;
+        this.from = from;
+        this.to = to;
+        this.departures = departures;
+        this.arrivals = arrivals;
+        this.prices = prices;
+        this.ratings = ratings;
+        this.flags = flags;
+
+        int n = rows.length;
+        outStart = new int[cities + 1];
+        for (int c = 0; c < n; c++) {
+            outStart[from[c] + 1]++;
+        }
+        for (int city = 0; city < cities; city++) {
+            outStart[city + 1] += outStart[city];
+        }
+        // Filling in connection order keeps each city's list sorted by departure
+        outConnections = new int[n];
+        outDepartures = new int[n];
+        int[] next = Arrays.copyOf(outStart, cities);
+        for (int c = 0; c < n; c++) {
+            int slot = next[from[c]]++;
+            outConnections[slot] = c;
+            outDepartures[slot] = departures[c];
+        }
+    }
+
+    /**
+     * Build from the given live rows. Trips without a date, a readable departure
+     * time or a travel time cannot be placed on the timeline and are left out.
+     */
+    static RouteGraph build(TripColumns columns, Collection<Integer> liveRows, long version) {
+        int n = liveRows.size();
+        int[] tripRows = new int[n];
+        int[] tripDepartures = new int[n];
+        int[] tripTravel = new int[n];
+        long[] order = new long[n];
+        Map<Integer, Integer> dayStarts = new HashMap<>();
+        int count = 0;
+        int cities = 0;
+        for (int row : liveRows) {
+            if (count == n) break;
+            int fromCity = columns.fromCity(row);
+            int toCity = columns.toCity(row);
+            int date = columns.date(row);
+            if (fromCity == TripColumns.NO_CODE || toCity == TripColumns.NO_CODE || date == TripColumns.NO_CODE) {
+                continue;
+            }
+            int dayStart = dayStarts.computeIfAbsent(date, d -> epochMinutes(columns.dates.value(d)));
+            int departure = columns.departure(row);
+            int travel = travelMinutes(columns.duration(row), columns.arrival(row), departure);
+            if (dayStart < 0 || departure < 0 || travel < 0) {
+                continue;
+            }
+            tripRows[count] = row;
+            tripDepartures[count] = dayStart + departure;
+            tripTravel[count] = travel;
+            // Departure in the high half, so sorting the longs sorts trips by departure
+            order[count] = ((long) tripDepartures[count] << 32) | count;
+            cities = Math.max(cities, Math.max(fromCity, toCity) + 1);
+            count++;
+        }
+        Arrays.sort(order, 0, count);
+
+        int[] rows = new int[count];
+        int[] from = new int[count];
+        int[] to = new int[count];
+        int[] departures = new int[count];
+        int[] arrivals = new int[count];
+        int[] prices = new int[count];
+        short[] ratings = new short[count];
+        byte[] flags = new byte[count];
+        for (int c = 0; c < count; c++) {
+            int i = (int) order[c];
+            int row = tripRows[i];
+            rows[c] = row;
+            from[c] = columns.fromCity(row);
+            to[c] = columns.toCity(row);
+            departures[c] = tripDepartures[i];
+            arrivals[c] = tripDepartures[i] + tripTravel[i];
+            prices[c] = columns.pricePaise(row);
+            ratings[c] = columns.ratingCenti(row);
+            flags[c] = columns.flags(row);
+        }
+        return new RouteGraph(version, columns, cities, rows, from, to, departures, arrivals, prices, ratings, flags);
+    }
+
+    long version() {
+        return version;
+    }
+
+    /**
+     * Code of a folded city name in the store this graph was built from, or -1.
+     * A compaction re-encodes cities, so codes must come from the graph's own store.
+     */
+    int cityCode(String cityKey) {
+        return columns.cities.code(cityKey);
+    }
+
+    /**
+     * Journeys in order of departure, each arriving as early as possible for its
+     * start time. A journey that leaves later but arrives no later replaces the
+     * one before it, so no result is beaten on both departure and arrival.
+     */
+    List<Itinerary> earliest(Query q) {
+        if (!routable(q)) {
+            return List.of();
+        }
+        List<int[]> journeys = new ArrayList<>();
+        int start = q.windowStart();
+        while (journeys.size() < q.limit() && start <= q.windowEnd()) {
+            int[] journey = earliestFrom(q, start);
+            if (journey == null) {
+                break;
+            }
+            start = departures[journey[0]] + 1;
+            int last = journeys.size() - 1;
+            if (last >= 0 && arrivalOf(journeys.get(last)) >= arrivalOf(journey)) {
+                journeys.set(last, journey);
+            } else {
+                journeys.add(journey);
+            }
+        }
+        return itineraries(journeys);
+    }
+
+    /**
+     * Journeys in order of total fare. Each result ends with a different final
+     * trip, or reaches the same one with fewer legs.
+     */
+    List<Itinerary> cheapest(Query q) {
+        if (!routable(q)) {
+            return List.of();
+        }
+        int legs = q.maxLegs();
+        // Start of the range of each city's outgoing list already relaxed, per leg count
+        int[] scanned = new int[(legs + 1) * cities];
+        for (int k = 0; k <= legs; k++) {
+            System.arraycopy(outStart, 1, scanned, k * cities, cities);
+        }
+        // Fewest legs any settled label reached each connection with; 0 when unsettled
+        byte[] settled = new byte[rows.length];
+        Labels labels = new Labels();
+        LongHeap heap = new LongHeap();
+
+        int lo = lowerBound(outDepartures, outStart[q.from()], outStart[q.from() + 1], q.windowStart());
+        int hi = upperBound(outDepartures, lo, outStart[q.from() + 1], q.windowEnd());
+        for (int i = lo; i < hi; i++) {
+            int c = outConnections[i];
+            if (eligible(q, c)) {
+                heap.push(key(prices[c], labels.add(c, 1, -1, prices[c])));
+            }
+        }
+
+        List<int[]> journeys = new ArrayList<>();
+        while (!heap.isEmpty() && journeys.size() < q.limit()) {
+            int label = (int) (heap.pop() & (MAX_LABELS - 1));
+            int c = labels.connection[label];
+            int k = labels.legs[label];
+            if (settled[c] != 0 && settled[c] <= k) {
+                continue;
+            }
+            settled[c] = (byte) k;
+            int city = to[c];
+            if (city == q.to()) {
+                journeys.add(labels.path(label));
+                continue;
+            }
+            // Passing back through the origin never helps
+            if (k == legs || city == q.from()) {
+                continue;
+            }
+            int begin = lowerBound(outDepartures, outStart[city], outStart[city + 1], arrivals[c] + q.minLayover());
+            int end = outStart[city + 1];
+            for (int j = 0; j <= k; j++) {
+                end = Math.min(end, scanned[j * cities + city]);
+            }
+            long cost = labels.cost[label];
+            for (int i = begin; i < end; i++) {
+                if (outDepartures[i] > q.horizon()) break;
+                int next = outConnections[i];
+                if (!eligible(q, next) || (settled[next] != 0 && settled[next] <= k + 1)) continue;
+                if (labels.size == MAX_LABELS) {
+                    return itineraries(journeys);
+                }
+                long total = cost + prices[next];
+                heap.push(key(total, labels.add(next, k + 1, label, total)));
+            }
+            int slot = k * cities + city;
+            scanned[slot] = Math.min(scanned[slot], begin);
+        }
+        return itineraries(journeys);
+    }
+
+    // One Connection Scan run: the fewest-legs journey with the earliest arrival, departing at or after start
+    private int[] earliestFrom(Query q, int start) {
+        int legs = q.maxLegs();
+        // Per leg count k (at most k legs): earliest arrival, time ready to depart again, connection used
+        int[] arrival = new int[(legs + 1) * cities];
+        int[] ready = new int[(legs + 1) * cities];
+        int[] parent = new int[(legs + 1) * cities];
+        Arrays.fill(arrival, UNREACHED);
+        Arrays.fill(ready, UNREACHED);
+        Arrays.fill(parent, -1);
+        for (int k = 0; k <= legs; k++) {
+            ready[k * cities + q.from()] = start;
+        }
+
+        int best = UNREACHED;
+        int target = legs * cities + q.to();
+        for (int c = lowerBound(departures, 0, departures.length, start); c < departures.length; c++) {
+            int departure = departures[c];
+            if (departure >= best || departure > q.horizon()) break;
+            int u = from[c];
+            int v = to[c];
+            // Journeys never come back through the origin, so its ready time stays the start time
+            if (v == q.from() || (u == q.from() && departure > q.windowEnd()) || !eligible(q, c)) continue;
+            int a = arrivals[c];
+            for (int k = 0; k < legs; k++) {
+                if (ready[k * cities + u] > departure) continue;
+                int slot = (k + 1) * cities + v;
+                if (a < arrival[slot]) {
+                    arrival[slot] = a;
+                    parent[slot] = c;
+                    ready[slot] = a + q.minLayover();
+                }
+            }
+            best = arrival[target];
+        }
+        if (best == UNREACHED) {
+            return null;
+        }
+
+        int k = 1;
+        while (arrival[k * cities + q.to()] != best) {
+            k++;
+        }
+        int[] journey = new int[k];
+        int city = q.to();
+        for (int level = k; level >= 1; level--) {
+            int c = parent[level * cities + city];
+            journey[level - 1] = c;
+            city = from[c];
+        }
+        return journey;
+    }
+
+    private boolean routable(Query q) {
+        return q.from() >= 0 && q.from() < cities && q.to() >= 0 && q.to() < cities && q.from() != q.to()
+                && q.maxLegs() >= 1 && q.limit() >= 1;
+    }
+
+    private boolean eligible(Query q, int c) {
+        int price = prices[c];
+        return price >= q.minPrice() && price <= q.maxPrice() && ratings[c] >= q.minRating()
+                && (flags[c] & q.flagMask()) == q.flagValue() && arrivals[c] <= q.horizon()
+                // Dijkstra needs non-negative edge costs
+                && price >= 0;
+    }
+
+    private int arrivalOf(int[] journey) {
+        return arrivals[journey[journey.length - 1]];
+    }
+
+    private List<Itinerary> itineraries(List<int[]> journeys) {
+        List<Itinerary> itineraries = new ArrayList<>(journeys.size());
+        for (int[] journey : journeys) {
+            List<Bus> legs = new ArrayList<>(journey.length);
+            long totalPaise = 0;
+            for (int c : journey) {
+                legs.add(columns.bus(rows[c]));
+                totalPaise += prices[c];
+            }
+            int departAt = departures[journey[0]];
+            int arriveAt = arrivalOf(journey);
+            itineraries.add(new Itinerary(legs, totalPaise / 100.0, dateTime(departAt), dateTime(arriveAt),
+                    arriveAt - departAt, journey.length - 1));
+        }
+        return itineraries;
+    }
+
+    // Fare in the high bits, so the heap pops the cheapest label first
+    private static long key(long cost, int label) {
+        return (cost << LABEL_BITS) | label;
+    }
+
+    /**
+     * Minutes since 1970-01-01 at the start of an ISO date, or -1 if it cannot be read.
+     */
+    static int epochMinutes(String date) {
+        if (date == null) return -1;
+        try {
+            long minutes = LocalDate.parse(date.trim()).toEpochDay() * MINUTES_PER_DAY;
+            return minutes < 0 || minutes > Integer.MAX_VALUE / 2 ? -1 : (int) minutes;
+        } catch (DateTimeParseException e) {
+            return -1;
+        }
+    }
+
+    private static String dateTime(int epochMinutes) {
+        return LocalDate.ofEpochDay(epochMinutes / MINUTES_PER_DAY).atStartOfDay()
+                .plusMinutes(epochMinutes % MINUTES_PER_DAY).toString();
+    }
+
+    /**
+     * Travel time from a duration like "8h 30m", falling back to the arrival
+     * clock time (arriving at or before the departure time means the next day).
+     * -1 if neither can be read.
+     */
+    static int travelMinutes(String duration, String arrival, int departure) {
+        int minutes = parseDuration(duration);
+        if (minutes >= 0) {
+            return minutes;
+        }
+        int arrivalMinutes = TripIndex.parseMinutes(arrival);
+        if (arrivalMinutes < 0) {
+            return -1;
+        }
+        int travel = Math.floorMod(arrivalMinutes - departure, MINUTES_PER_DAY);
+        return travel == 0 ? MINUTES_PER_DAY : travel;
+    }
+
+    private static int parseDuration(String duration) {
+        if (duration == null) return -1;
+        int hours = 0;
+        int minutes = 0;
+        int value = -1;
+        boolean parsed = false;
+        for (int i = 0; i < duration.length(); i++) {
+            char ch = duration.charAt(i);
+            if (ch >= '0' && ch <= '9') {
+                value = Math.min(100_000, (value < 0 ? 0 : value * 10) + (ch - '0'));
+            } else if ((ch == 'h' || ch == 'H') && value >= 0) {
+                hours = value;
+                value = -1;
+                parsed = true;
+            } else if ((ch == 'm' || ch == 'M') && value >= 0) {
+                minutes = value;
+                value = -1;
+                parsed = true;
+            }
+        }
+        return parsed ? hours * 60 + minutes : -1;
+    }
+
+    private static int lowerBound(int[] a, int from, int to, int key) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int upperBound(int[] a, int from, int to, int key) {
+        int lo = from, hi = to;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * Dijkstra labels as parallel arrays: the connection taken, legs so far,
+     * the previous label and the total fare.
+     */
+    private static final class Labels {
+        int[] connection = new int[256];
+        byte[] legs = new byte[256];
+        int[] parent = new int[256];
+        long[] cost = new long[256];
+        int size;
+
+        int add(int c, int legCount, int parentLabel, long total) {
+            if (size == connection.length) {
+                int capacity = Math.min(size * 2, MAX_LABELS);
+                connection = Arrays.copyOf(connection, capacity);
+                legs = Arrays.copyOf(legs, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                cost = Arrays.copyOf(cost, capacity);
+            }
+            connection[size] = c;
+            legs[size] = (byte) legCount;
+            parent[size] = parentLabel;
+            cost[size] = total;
+            return size++;
+        }
+
+        int[] path(int label) {
+            int[] path = new int[legs[label]];
+            for (int l = label, i = path.length - 1; l >= 0; l = parent[l], i--) {
+                path[i] = connection[l];
+            }
+            return path;
+        }
+    }
+
+    /**
+     * Binary min-heap of longs.
+     */
+    private static final class LongHeap {
+        long[] heap = new long[256];
+        int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        void push(long value) {
+            if (size == heap.length) {
+                heap = Arrays.copyOf(heap, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int up = (i - 1) >>> 1;
+                if (heap[up] <= value) break;
+                heap[i] = heap[up];
+                i = up;
+            }
+            heap[i] = value;
+        }
+
+        long pop() {
+            long top = heap[0];
+            long last = heap[--size];
+            int i = 0;
+            int half = size >>> 1;
+            while (i < half) {
+                int child = 2 * i + 1;
+                if (child + 1 < size && heap[child + 1] < heap[child]) child++;
+                if (last <= heap[child]) break;
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = last;
+            return top;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.BusSearchCriteria;
+import com.busticketbooking.backend.model.BusSearchResult;
+import com.busticketbooking.backend.model.Itinerary;
+import com.busticketbooking.backend.util.Hex;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Bus search and bus detail responses, serialized once and served as bytes.
+ *
+ * Entries belong to a generation tied to the catalogue version. When trips are
+ * added or removed the version changes and the next lookup starts a fresh
+ * generation, dropping every cached response at once. Each entry carries a
+ * content-based ETag and, for larger bodies, a gzipped copy made up front.
+ * Within a generation, responses not read since the eviction hand last passed
+ * them are evicted once {@code search.cache.max-entries} is reached (a clock,
+ * or second-chance, approximation of LRU). Hits only set a flag, so reads share
+ * no lock.
+ */
+@Service
+public class SearchResponseCache {
+
+    @Autowired
+    private BusService busService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${search.cache.max-entries:50000}")
+    private int maxEntries;
+
+    @Value("${search.cache.gzip:true}")
+    private boolean gzip;
+
+    @Value("${search.cache.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    /**
+     * A serialized response. {@code gzipped} is null when the body is too small
+     * to be worth compressing or gzip is disabled.
+     */
+    public record EncodedResponse(byte[] body, byte[] gzipped, String eTag, Map<String, String> headers) {
+    }
+
+    private record SearchKey(String from, String to, String date, String departAfter, String departBefore,
+                             Double minPrice, Double maxPrice, Double minRating, Boolean ac, Boolean sleeper,
+                             String sortBy, int page, int size, String connections, Integer minLayover,
+                             Integer maxLegs) {
+    }
+
+    private record BusKey(String id) {
+    }
+
+    private record Generation(long version, ResponseMap responses) {
+    }
+
+    private final AtomicReference<Generation> generation =
+            new AtomicReference<>(new Generation(-1, new ResponseMap(0)));
+
+    public EncodedResponse search(BusSearchCriteria criteria) {
+        SearchKey key = new SearchKey(TripIndex.cityKey(criteria.getFrom()), TripIndex.cityKey(criteria.getTo()),
+                trimToNull(criteria.getDate()), criteria.getDepartAfter(), criteria.getDepartBefore(),
+                criteria.getMinPrice(), criteria.getMaxPrice(), criteria.getMinRating(),
+                criteria.getAc(), criteria.getSleeper(), criteria.getSortBy(), criteria.getPage(), criteria.getSize(),
+                criteria.getConnections(), criteria.getMinLayover(), criteria.getMaxLegs());
+        return lookup(key, () -> {
+            if (criteria.getConnections() != null) {
+                List<Itinerary> itineraries = busService.searchConnections(criteria);
+                return encode(itineraries, Map.of("X-Total-Count", String.valueOf(itineraries.size())));
+            }
+            BusSearchResult result = busService.search(criteria);
+            return encode(result.getBuses(), Map.of(
+                    "X-Total-Count", String.valueOf(result.getTotal()),
+                    "X-Page", String.valueOf(result.getPage()),
+                    "X-Page-Size", String.valueOf(result.getSize())));
+        });
+    }
+
+    /**
+     * @return null if there is no bus with this id
+     */
+    public EncodedResponse bus(String id) {
+        return lookup(new BusKey(id), () -> {
+            Bus bus = busService.getBusById(id);
+            return bus == null ? null : encode(bus, Map.of());
+        });
+    }
+
+    public int size() {
+        return generation.get().responses().size();
+    }
+
+    private EncodedResponse lookup(Object key, Supplier<EncodedResponse> encoder) {
+        // Read the version before searching: the response can then only be newer than the version it is filed under
+        long version = busService.getCatalogVersion();
+        Generation current = currentGeneration(version);
+        EncodedResponse cached = current.responses().get(key);
+        if (cached != null) {
+            return cached;
+        }
+        EncodedResponse encoded = encoder.get();
+        if (encoded != null) {
+            current.responses().putIfAbsent(key, encoded);
+        }
+        return encoded;
+    }
+
+    private Generation currentGeneration(long version) {
+        while (true) {
+            Generation current = generation.get();
+            if (current.version() >= version) {
+                return current;
+            }
+            Generation next = new Generation(version, new ResponseMap(maxEntries));
+            if (generation.compareAndSet(current, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * One generation's responses, bounded by clock eviction. Only inserts past
+     * capacity take the eviction lock, and a thread that finds it taken leaves
+     * the eviction to its holder.
+     */
+    private static final class ResponseMap {
+        private final int capacity;
+        private final ConcurrentHashMap<Object, Entry> entries = new ConcurrentHashMap<>();
+        private final ReentrantLock evictionLock = new ReentrantLock();
+        private Iterator<Map.Entry<Object, Entry>> hand;
+
+        ResponseMap(int capacity) {
+            this.capacity = capacity;
+        }
+
+        EncodedResponse get(Object key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            // Skip the write when already set, so hot entries do not keep dirtying the line
+            if (!entry.referenced) {
+                entry.referenced = true;
+            }
+            return entry.response;
+        }
+
+        void putIfAbsent(Object key, EncodedResponse response) {
+            if (entries.putIfAbsent(key, new Entry(response)) == null && entries.size() > capacity) {
+                evict();
+            }
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        private void evict() {
+            if (!evictionLock.tryLock()) {
+                return;
+            }
+            try {
+                while (entries.size() > capacity) {
+                    if (hand == null || !hand.hasNext()) {
+                        hand = entries.entrySet().iterator();
+                        if (!hand.hasNext()) {
+                            return;
+                        }
+                    }
+                    Map.Entry<Object, Entry> candidate = hand.next();
+                    Entry entry = candidate.getValue();
+                    if (entry.referenced) {
+                        entry.referenced = false;
+                    } else {
+                        entries.remove(candidate.getKey(), entry);
+                    }
+                }
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private static final class Entry {
+        final EncodedResponse response;
+        volatile boolean referenced;
+
+        Entry(EncodedResponse response) {
+            this.response = response;
+        }
+    }
+
+    private EncodedResponse encode(Object value, Map<String, String> headers) {
+        byte[] body;
+        try {
+            body = objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize response", e);
+        }
+        byte[] gzipped = gzip && body.length >= gzipMinBytes ? gzip(body) : null;
+        return new EncodedResponse(body, gzipped, eTagOf(body), headers);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzipOut = new GZIPOutputStream(out)) {
+            gzipOut.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+
+    // Derived from the bytes, so the tag survives restarts and is shared by identical responses
+    private static String eTagOf(byte[] body) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(body);
+            return "\"" + Hex.encode(Arrays.copyOf(digest, 12)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,315 @@
+package com.busticketbooking.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-sent seat-map updates per bus + travel date.
+ *
+ * Seat changes only mark seats dirty on the trip's topic. Every coalescing
+ * window a single flusher thread reads the current state of the dirty seats,
+ * serializes one delta and hands the same bytes to every subscriber, so a
+ * hold followed by a release inside one window is never sent at all.
+ * Connections are async servlet responses: no thread waits on them. A write
+ * runs on a short-lived virtual thread, one drain at a time per subscriber,
+ * and a subscriber that falls max-backlog frames behind is disconnected;
+ * its EventSource reconnects and starts again from a snapshot.
+ */
+@Slf4j
+@Service
+public class SeatFeed {
+
+    public static final String SNAPSHOT = "snapshot";
+    public static final String DELTA = "delta";
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Value("${seats.feed.coalesce-millis:100}")
+    private long coalesceMillis;
+
+    @Value("${seats.feed.max-backlog:32}")
+    private int maxBacklog;
+
+    @Value("${seats.feed.max-subscribers:50000}")
+    private int maxSubscribers;
+
+    @Value("${seats.feed.heartbeat-seconds:15}")
+    private long heartbeatSeconds;
+
+    @Value("${seats.feed.timeout-minutes:30}")
+    private long timeoutMinutes;
+
+    private record Frame(long id, String name, byte[] json) {
+    }
+
+    // Comments keep proxies from closing idle streams and surface dead connections
+    private static final Frame HEARTBEAT = new Frame(-1, null, null);
+
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final Set<Topic> dirtyTopics = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final ExecutorService writers = Executors.newVirtualThreadPerTaskExecutor();
+    private ScheduledExecutorService flusher;
+
+    @PostConstruct
+    public void start() {
+        flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "seat-feed-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::flush, coalesceMillis, coalesceMillis, TimeUnit.MILLISECONDS);
+        flusher.scheduleWithFixedDelay(this::heartbeat, heartbeatSeconds, heartbeatSeconds, TimeUnit.SECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        flusher.shutdownNow();
+        for (Topic topic : topics.values()) {
+            for (Subscriber subscriber : topic.subscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+        writers.shutdown();
+    }
+
+    /**
+     * Open a stream for a trip. The first event is a snapshot of the whole seat
+     * map; later events are deltas listing only the seats that changed.
+     *
+     * @return null if the feed is at max-subscribers
+     */
+    public SseEmitter subscribe(String busId, String date, SeatMap seatMap) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            return null;
+        }
+        String key = SeatInventoryService.tripKey(busId, date);
+        SseEmitter emitter = new SseEmitter(TimeUnit.MINUTES.toMillis(timeoutMinutes));
+        Subscriber subscriber = new Subscriber(emitter);
+        Topic topic = topics.compute(key, (k, current) -> {
+            Topic t = current != null ? current : new Topic(k, seatMap);
+            t.subscribers.add(subscriber);
+            return t;
+        });
+        Runnable unsubscribe = () -> unsubscribe(topic, subscriber);
+        emitter.onCompletion(unsubscribe);
+        emitter.onTimeout(unsubscribe);
+        emitter.onError(e -> unsubscribe.run());
+
+        // Queued after registering, so no change can fall between the snapshot and the first delta
+        subscriber.enqueue(new Frame(topic.sequence.get(), SNAPSHOT, encode(snapshot(seatMap))));
+        return emitter;
+    }
+
+    /**
+     * Record that seats on a trip changed state. Cheap when nobody is watching the trip.
+     */
+    public void changed(String busId, String date, int[] seats) {
+        Topic topic = topics.get(SeatInventoryService.tripKey(busId, date));
+        if (topic == null) {
+            return;
+        }
+        synchronized (topic.dirty) {
+            for (int seat : seats) {
+                topic.dirty.set(seat);
+            }
+        }
+        dirtyTopics.add(topic);
+    }
+
+    /**
+     * Disconnect everyone watching a trip; their EventSources reconnect.
+     */
+    void close(String tripKey) {
+        Topic topic = topics.remove(tripKey);
+        if (topic != null) {
+            for (Subscriber subscriber : topic.subscribers) {
+                subscriber.emitter.complete();
+            }
+        }
+    }
+
+    public int getSubscriberCount() {
+        return subscriberCount.get();
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    // Runs on the flusher thread only
+    private void flush() {
+        try {
+            for (Topic topic : dirtyTopics) {
+                dirtyTopics.remove(topic);
+                BitSet seats;
+                synchronized (topic.dirty) {
+                    seats = (BitSet) topic.dirty.clone();
+                    topic.dirty.clear();
+                }
+                if (seats.isEmpty() || topic.subscribers.isEmpty()) {
+                    continue;
+                }
+                Frame frame = new Frame(topic.sequence.incrementAndGet(), DELTA, encode(delta(topic.seatMap, seats)));
+                for (Subscriber subscriber : topic.subscribers) {
+                    subscriber.enqueue(frame);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.error("Seat feed flush failed", e);
+        }
+    }
+
+    private void heartbeat() {
+        for (Topic topic : topics.values()) {
+            for (Subscriber subscriber : topic.subscribers) {
+                subscriber.enqueue(HEARTBEAT);
+            }
+        }
+    }
+
+    private void unsubscribe(Topic topic, Subscriber subscriber) {
+        if (topic.subscribers.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+        // Drop the topic with its last subscriber, unless someone joined in the meantime
+        topics.computeIfPresent(topic.key, (k, t) -> t == topic && t.subscribers.isEmpty() ? null : t);
+    }
+
+    private static Map<String, Object> snapshot(SeatMap seatMap) {
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("capacity", seatMap.capacity());
+        body.put("available", seatMap.available());
+        body.put("held", seatMap.seatsIn(SeatMap.HELD));
+        body.put("booked", seatMap.seatsIn(SeatMap.BOOKED));
+        return body;
+    }
+
+    // Current state of each changed seat, so a delta is correct however many changes it folds together
+    private static Map<String, Object> delta(SeatMap seatMap, BitSet seats) {
+        List<Integer> free = new ArrayList<>();
+        List<Integer> held = new ArrayList<>();
+        List<Integer> booked = new ArrayList<>();
+        for (int seat = seats.nextSetBit(1); seat >= 0; seat = seats.nextSetBit(seat + 1)) {
+            switch (seatMap.state(seat)) {
+                case SeatMap.HELD -> held.add(seat);
+                case SeatMap.BOOKED -> booked.add(seat);
+                default -> free.add(seat);
+            }
+        }
+        Map<String, Object> body = new LinkedHashMap<>();
+        body.put("available", seatMap.available());
+        body.put("free", free);
+        body.put("held", held);
+        body.put("booked", booked);
+        return body;
+    }
+
+    private byte[] encode(Map<String, Object> body) {
+        try {
+            return objectMapper.writeValueAsBytes(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize seat update", e);
+        }
+    }
+
+    private static final class Topic {
+        final String key;
+        final SeatMap seatMap;
+        final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+        final BitSet dirty = new BitSet();
+        final AtomicLong sequence = new AtomicLong();
+
+        Topic(String key, SeatMap seatMap) {
+            this.key = key;
+            this.seatMap = seatMap;
+        }
+    }
+
+    private final class Subscriber {
+        final SseEmitter emitter;
+        final Queue<Frame> queue = new ConcurrentLinkedQueue<>();
+        final AtomicInteger backlog = new AtomicInteger();
+        final AtomicBoolean draining = new AtomicBoolean();
+        volatile boolean closed;
+
+        Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        void enqueue(Frame frame) {
+            if (closed) {
+                return;
+            }
+            if (backlog.incrementAndGet() > maxBacklog) {
+                // Too slow to keep up; closing lets the client reconnect and resync from a snapshot
+                closed = true;
+                dropped.incrementAndGet();
+                emitter.complete();
+                return;
+            }
+            queue.add(frame);
+            if (draining.compareAndSet(false, true)) {
+                writers.execute(this::drain);
+            }
+        }
+
+        // At most one drain per subscriber at a time, so frames go out in order
+        private void drain() {
+            do {
+                Frame frame;
+                while ((frame = queue.poll()) != null) {
+                    backlog.decrementAndGet();
+                    if (!closed) {
+                        send(frame);
+                    }
+                }
+                draining.set(false);
+            } while (!queue.isEmpty() && draining.compareAndSet(false, true));
+        }
+
+        private void send(Frame frame) {
+            try {
+                if (frame == HEARTBEAT) {
+                    emitter.send(SseEmitter.event().comment(""));
+                } else {
+                    emitter.send(SseEmitter.event().id(Long.toString(frame.id())).name(frame.name())
+                            .data(frame.json(), MediaType.APPLICATION_JSON));
+                }
+            } catch (IOException | IllegalStateException e) {
+                // Client went away; the emitter's completion callback unsubscribes it
+                closed = true;
+                emitter.completeWithError(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.SeatHold;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Seats reserved for the length of a Razorpay checkout.
+ *
+ * A hold is keyed by the order receipt and also indexed by the Razorpay order id once
+ * the order exists. Holds that are not converted into a booking before the TTL runs out
+ * are released by an {@link ExpiryWheel}, whose cost per tick does not grow with the
+ * number of outstanding holds.
+ *
+ * Once a hold with an order leaves the wheel, what became of it (being booked,
+ * booked, or lapsed before the payment was verified) is kept for another TTL, so
+ * a repeated or late verification of the same order gets a consistent answer.
+ */
+@Slf4j
+@Service
+public class SeatHoldService {
+
+    @Autowired
+    private SeatInventoryService seatInventoryService;
+
+    @Value("${booking.hold.ttl-seconds:600}")
+    private long holdTtlSeconds;
+
+    @Value("${booking.hold.tick-millis:1000}")
+    private long tickMillis;
+
+    public enum Outcome { BOOKING, BOOKED, LAPSED }
+
+    /**
+     * What became of an order's hold. bookingId is set once the outcome is BOOKED.
+     */
+    public record Settled(SeatHold hold, Outcome outcome, String bookingId) {
+    }
+
+    private final Map<String, ExpiryWheel.Timeout<SeatHold>> holdsByReceipt = new ConcurrentHashMap<>();
+    private final Map<String, String> receiptsByOrderId = new ConcurrentHashMap<>();
+    private final Map<String, Settled> settledByOrderId = new ConcurrentHashMap<>();
+    private ExpiryWheel<SeatHold> expiryWheel;
+    private ExpiryWheel<String> settledExpiry;
+
+    @PostConstruct
+    public void start() {
+        expiryWheel = new ExpiryWheel<>("seat-hold-expiry", tickMillis, TimeUnit.MILLISECONDS, 512, this::expire);
+        settledExpiry = new ExpiryWheel<>("seat-hold-settled", tickMillis, TimeUnit.MILLISECONDS, 512, settledByOrderId::remove);
+    }
+
+    @PreDestroy
+    public void stop() {
+        expiryWheel.close();
+        settledExpiry.close();
+    }
+
+    /**
+     * Reserve seats under the given receipt.
+     * @throws SeatUnavailableException if any seat is already held or booked
+     */
+    public SeatHold hold(SeatHold hold) {
+        if (!seatInventoryService.hold(hold.getBusId(), hold.getDate(), hold.getSeats(), hold.getReceipt())) {
+            throw new SeatUnavailableException("One or more selected seats are no longer available");
+        }
+        hold.setExpiresAt(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(holdTtlSeconds));
+        holdsByReceipt.put(hold.getReceipt(), expiryWheel.schedule(hold, holdTtlSeconds, TimeUnit.SECONDS));
+        return hold;
+    }
+
+    public void attachOrder(String receipt, String orderId) {
+        ExpiryWheel.Timeout<SeatHold> timeout = holdsByReceipt.get(receipt);
+        if (timeout != null) {
+            timeout.item().setOrderId(orderId);
+            receiptsByOrderId.put(orderId, receipt);
+        }
+    }
+
+    /**
+     * Take ownership of the hold for a paid order. The seats stay HELD; the caller
+     * confirms or releases them and reports the result with {@link #booked} or
+     * {@link #bookingFailed}.
+     * @return the hold, or null if none exists, it already expired or it was claimed before
+     *         (see {@link #settled})
+     */
+    public SeatHold claim(String orderId) {
+        String receipt = receiptsByOrderId.remove(orderId);
+        if (receipt == null) {
+            return null;
+        }
+        ExpiryWheel.Timeout<SeatHold> timeout = holdsByReceipt.remove(receipt);
+        if (timeout == null || !timeout.cancel()) {
+            return null;
+        }
+        settle(orderId, new Settled(timeout.item(), Outcome.BOOKING, null));
+        return timeout.item();
+    }
+
+    public void booked(String orderId, String bookingId) {
+        Settled claimed = settledByOrderId.get(orderId);
+        settle(orderId, new Settled(claimed != null ? claimed.hold() : null, Outcome.BOOKED, bookingId));
+    }
+
+    /**
+     * The claimed hold's seats were released without a booking.
+     */
+    public void bookingFailed(String orderId) {
+        Settled claimed = settledByOrderId.get(orderId);
+        settle(orderId, new Settled(claimed != null ? claimed.hold() : null, Outcome.LAPSED, null));
+    }
+
+    /**
+     * What became of the hold for an order after it was claimed or expired, or null if
+     * this node has no record of it (unknown order, or settled more than a TTL ago).
+     */
+    public Settled settled(String orderId) {
+        return settledByOrderId.get(orderId);
+    }
+
+    /**
+     * Drop a hold early, e.g. when the payment order could not be created.
+     */
+    public void release(String receipt) {
+        ExpiryWheel.Timeout<SeatHold> timeout = holdsByReceipt.remove(receipt);
+        if (timeout != null && timeout.cancel()) {
+            SeatHold hold = timeout.item();
+            if (hold.getOrderId() != null) {
+                receiptsByOrderId.remove(hold.getOrderId());
+            }
+            seatInventoryService.release(hold.getBusId(), hold.getDate(), hold.getSeats(), hold.getReceipt());
+        }
+    }
+
+    /**
+     * Remove the holds matching filter without releasing their seats, to move
+     * them to another node along with the seats.
+     */
+    List<SeatHold> detach(Predicate<SeatHold> filter) {
+        List<SeatHold> detached = new ArrayList<>();
+        for (ExpiryWheel.Timeout<SeatHold> timeout : holdsByReceipt.values()) {
+            SeatHold hold = timeout.item();
+            // A hold whose timeout already fired is being released here; it is not moved
+            if (filter.test(hold) && timeout.cancel()) {
+                holdsByReceipt.remove(hold.getReceipt());
+                if (hold.getOrderId() != null) {
+                    receiptsByOrderId.remove(hold.getOrderId());
+                }
+                detached.add(hold);
+            }
+        }
+        return detached;
+    }
+
+    /**
+     * Take over a hold detached on another node, keeping its original expiry.
+     */
+    void adopt(SeatHold hold) {
+        long remainingMillis = hold.getExpiresAt() - System.currentTimeMillis();
+        if (remainingMillis <= 0) {
+            return;
+        }
+        if (!seatInventoryService.hold(hold.getBusId(), hold.getDate(), hold.getSeats(), hold.getReceipt())) {
+            log.atWarn().addKeyValue("receipt", hold.getReceipt()).log("Handed-off hold conflicts with seats already taken here");
+            return;
+        }
+        holdsByReceipt.put(hold.getReceipt(), expiryWheel.schedule(hold, remainingMillis, TimeUnit.MILLISECONDS));
+        if (hold.getOrderId() != null) {
+            receiptsByOrderId.put(hold.getOrderId(), hold.getReceipt());
+        }
+    }
+
+    public int activeHolds() {
+        return expiryWheel.size();
+    }
+
+    private void expire(SeatHold hold) {
+        holdsByReceipt.remove(hold.getReceipt());
+        if (hold.getOrderId() != null) {
+            receiptsByOrderId.remove(hold.getOrderId());
+            settle(hold.getOrderId(), new Settled(hold, Outcome.LAPSED, null));
+        }
+        seatInventoryService.release(hold.getBusId(), hold.getDate(), hold.getSeats(), hold.getReceipt());
+    }
+
+    private void settle(String orderId, Settled settled) {
+        if (settledByOrderId.put(orderId, settled) == null) {
+            settledExpiry.schedule(orderId, holdTtlSeconds, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,261 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.repository.BookingJournal;
+import com.busticketbooking.backend.repository.BookingJournal.Event;
+import com.busticketbooking.backend.repository.BookingJournal.EventType;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory seat maps, one per bus + travel date.
+ * All state changes go through {@link SeatMap}, so there is no lock shared between trips.
+ * Successful changes are recorded in the {@link BookingJournal}, which is replayed at
+ * startup to restore booked seats, announced on the {@link SeatFeed} to anyone watching
+ * the trip, and passed to the {@link FareEngine} so the trip's fares follow its occupancy.
+ *
+ * The thread whose move wins stamps it with the trip's next sequence and appends it
+ * to the journal without a lock, so changes to one trip never wait on each other.
+ * A change whose append fails is undone and the operation fails: a seat that is
+ * booked in memory but not in the journal would be lost on restart.
+ */
+@Slf4j
+@Service
+public class SeatInventoryService {
+
+    @Value("${booking.seats.per-trip:40}")
+    private int seatsPerTrip;
+
+    @Autowired
+    private BookingJournal journal;
+
+    @Autowired
+    private SeatFeed seatFeed;
+
+    @Autowired
+    private FareEngine fareEngine;
+
+    private final Map<String, SeatMap> seatMaps = new ConcurrentHashMap<>();
+
+    /**
+     * Restore booked seats from the journal. Each trip's events are taken in trip
+     * sequence order, and a seat is booked when its bookings outnumber its
+     * cancellations. Stamping follows the move rather than being part of it, so two
+     * moves of one seat in flight together can be stamped in the opposite order;
+     * counting gives the same seats either way, where replaying each move would not.
+     */
+    @PostConstruct
+    public void restore() throws IOException {
+        Map<String, List<Event>> events = new HashMap<>();
+        journal.replay(event -> events.computeIfAbsent(tripKey(event.busId(), event.date()), k -> new ArrayList<>()).add(event));
+        int replayed = 0;
+        for (List<Event> trip : events.values()) {
+            trip.sort(Comparator.comparingLong(Event::tripSequence));
+            SeatMap seatMap = getSeatMap(trip.get(0).busId(), trip.get(0).date());
+            int[] net = new int[seatMap.capacity() + 1];
+            // Holds do not outlive the process that took them, so only bookings are restored
+            for (Event event : trip) {
+                int delta = switch (event.type()) {
+                    case BOOKED, SNAPSHOT -> 1;
+                    case CANCELLED -> -1;
+                    default -> 0;
+                };
+                for (int seat : event.seats()) {
+                    if (seat <= seatMap.capacity()) {
+                        net[seat] += delta;
+                    }
+                }
+            }
+            int[] booked = IntStream.rangeClosed(1, seatMap.capacity()).filter(seat -> net[seat] > 0).toArray();
+            if (booked.length > 0) {
+                seatMap.book(booked);
+            }
+            replayed += trip.size();
+        }
+        if (replayed > 0) {
+            log.info("Seat inventory: replayed {} journal events across {} trips", replayed, seatMaps.size());
+        }
+    }
+
+    /**
+     * The trip's seat map, created on first use. Callers pass a date checked with
+     * {@link BusService#tripDate}, since every map stays for the life of the node.
+     */
+    public SeatMap getSeatMap(String busId, String date) {
+        // Trip sequences start from the journal's, so they stay ahead of the trip's earlier events
+        return seatMaps.computeIfAbsent(tripKey(busId, date), k -> new SeatMap(seatsPerTrip, journal.nextSequence()));
+    }
+
+    /**
+     * The trip's seat map for reading. A trip nobody has touched gets an empty map
+     * that is not kept, so reads never add trips.
+     */
+    public SeatMap peek(String busId, String date) {
+        SeatMap seatMap = seatMaps.get(tripKey(busId, date));
+        return seatMap != null ? seatMap : new SeatMap(seatsPerTrip);
+    }
+
+    public boolean hold(String busId, String date, List<Integer> seats, String ref) {
+        return apply(busId, date, seats, ref, EventType.HELD, SeatMap.FREE, SeatMap.HELD);
+    }
+
+    public boolean confirm(String busId, String date, List<Integer> seats, String ref) {
+        return apply(busId, date, seats, ref, EventType.BOOKED, SeatMap.HELD, SeatMap.BOOKED);
+    }
+
+    public boolean book(String busId, String date, List<Integer> seats, String ref) {
+        return apply(busId, date, seats, ref, EventType.BOOKED, SeatMap.FREE, SeatMap.BOOKED);
+    }
+
+    public boolean release(String busId, String date, List<Integer> seats, String ref) {
+        return apply(busId, date, seats, ref, EventType.RELEASED, SeatMap.HELD, SeatMap.FREE);
+    }
+
+    public boolean cancel(String busId, String date, List<Integer> seats, String ref) {
+        return apply(busId, date, seats, ref, EventType.CANCELLED, SeatMap.BOOKED, SeatMap.FREE);
+    }
+
+    public int available(String busId, String date) {
+        SeatMap seatMap = seatMaps.get(tripKey(busId, date));
+        return seatMap != null ? seatMap.available() : seatsPerTrip;
+    }
+
+    /**
+     * Trips with a seat map on this node, as trip keys.
+     */
+    Set<String> tripKeys() {
+        return seatMaps.keySet();
+    }
+
+    SeatMap seatMapIfPresent(String tripKey) {
+        return seatMaps.get(tripKey);
+    }
+
+    /**
+     * Make a trip's booked seats exactly the given set, as received from the
+     * trip's previous owner. Differences from the local map go through the
+     * journal like any other change, so a restart restores the adopted state.
+     */
+    void adopt(String busId, String date, List<Integer> booked, String ref) {
+        SeatMap seatMap = getSeatMap(busId, date);
+        Set<Integer> incoming = new HashSet<>(booked);
+        List<Integer> stale = new ArrayList<>();
+        for (int seat : seatMap.seatsIn(SeatMap.BOOKED)) {
+            if (!incoming.remove(seat)) {
+                stale.add(seat);
+            }
+        }
+        List<Integer> held = seatMap.seatsIn(SeatMap.HELD);
+        if (!held.isEmpty()) {
+            // Left over from an earlier spell of ownership; any live hold arrives with the handoff
+            release(busId, date, held, ref);
+        }
+        if (!stale.isEmpty()) {
+            cancel(busId, date, stale, ref);
+        }
+        incoming.removeIf(seat -> seat < 1 || seat > seatMap.capacity());
+        if (!incoming.isEmpty()) {
+            book(busId, date, new ArrayList<>(incoming), ref);
+        }
+    }
+
+    /**
+     * Book those of the given seats that are FREE here, as rebuilt from stored
+     * bookings. Seats already held or booked, duplicates and seats beyond the
+     * trip's capacity are skipped.
+     */
+    void bookFree(String busId, String date, List<Integer> seats, String ref) {
+        SeatMap seatMap = getSeatMap(busId, date);
+        List<Integer> free = new ArrayList<>();
+        for (int seat : new TreeSet<>(seats)) {
+            if (seat >= 1 && seat <= seatMap.capacity() && seatMap.state(seat) == SeatMap.FREE) {
+                free.add(seat);
+            }
+        }
+        if (!free.isEmpty() && !book(busId, date, free, ref)) {
+            // One of them was taken in the meantime; book the rest one by one
+            for (int seat : free) {
+                book(busId, date, List.of(seat), ref);
+            }
+        }
+    }
+
+    /**
+     * Forget a trip this node no longer owns. Anyone watching it is disconnected
+     * and reconnects through the new owner.
+     */
+    void drop(String tripKey) {
+        seatMaps.remove(tripKey);
+        seatFeed.close(tripKey);
+    }
+
+    /**
+     * Move every seat from one state to another, or none of them.
+     * @throws IllegalArgumentException if the event could not be journaled, before any seat changes
+     * @throws IllegalStateException if the journal append failed; the seats are left as they were
+     */
+    private boolean apply(String busId, String date, List<Integer> seats, String ref, EventType event, int from, int to) {
+        int[] seatNumbers = toArray(seats);
+        SeatMap seatMap = getSeatMap(busId, date);
+        String day = date.trim();
+        if (!journal.isEnabled()) {
+            if (!seatMap.move(seatNumbers, from, to)) {
+                return false;
+            }
+        } else {
+            journal.validate(busId, day, ref, seatNumbers);
+            if (!seatMap.move(seatNumbers, from, to)) {
+                return false;
+            }
+            try {
+                journal.append(event, busId, day, seatNumbers, ref, seatMap.stampEvent());
+            } catch (RuntimeException e) {
+                // Fails only if another change already moved these seats on; the journal has that one
+                if (!seatMap.move(seatNumbers, to, from)) {
+                    log.atWarn().addKeyValue("trip", tripKey(busId, date)).addKeyValue("ref", ref).log("Could not undo unjournaled {}", event);
+                }
+                log.atError().addKeyValue("trip", tripKey(busId, date)).addKeyValue("ref", ref).setCause(e).log("Could not journal {}", event);
+                throw new IllegalStateException("Could not record the seat change", e);
+            }
+        }
+        seatFeed.changed(busId, date, seatNumbers);
+        fareEngine.occupancyChanged(busId, date, seatMap);
+        return true;
+    }
+
+    static String tripKey(String busId, String date) {
+        if (busId == null || date == null) {
+            throw new IllegalArgumentException("Bus and date are required");
+        }
+        return busId + "|" + date.trim();
+    }
+
+    private static int[] toArray(List<Integer> seats) {
+        if (seats == null || seats.isEmpty()) {
+            throw new IllegalArgumentException("No seats selected");
+        }
+        int[] result = new int[seats.size()];
+        for (int i = 0; i < result.length; i++) {
+            Integer seat = seats.get(i);
+            if (seat == null) {
+                throw new IllegalArgumentException("Invalid seat number");
+            }
+            result[i] = seat;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,204 @@
+package com.busticketbooking.backend.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Seat states for a single trip, packed two bits per seat into an AtomicLongArray.
+ *
+ * Every multi-seat operation is all-or-nothing: seats are grouped by the word they
+ * live in, each word is moved with one CAS, and if any seat is not in the expected
+ * state the words already changed are rolled back. Seat numbers are 1-based to match
+ * the seat layout shown in the UI. A count of seats that are not FREE is kept
+ * from each successful move, so occupancy is read without scanning the words.
+ */
+public final class SeatMap {
+
+    public static final int FREE = 0;
+    public static final int HELD = 1;
+    public static final int BOOKED = 2;
+
+    private static final int BITS_PER_SEAT = 2;
+    private static final int SEATS_PER_WORD = Long.SIZE / BITS_PER_SEAT;
+    private static final long STATE_MASK = 0b11L;
+
+    private final int capacity;
+    private final AtomicLongArray words;
+    private final AtomicLong events;
+    private final AtomicInteger taken = new AtomicInteger();
+
+    public SeatMap(int capacity) {
+        this(capacity, 0);
+    }
+
+    /**
+     * @param lastEvent trip sequence to continue from, so events stamped by this map follow older ones
+     */
+    SeatMap(int capacity, long lastEvent) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Seat capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.words = new AtomicLongArray((capacity + SEATS_PER_WORD - 1) / SEATS_PER_WORD);
+        this.events = new AtomicLong(lastEvent);
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    /** FREE -> HELD for every seat, or no change at all. */
+    public boolean hold(int[] seats) {
+        return transition(seats, FREE, HELD);
+    }
+
+    /** HELD -> BOOKED for every seat, or no change at all. */
+    public boolean confirm(int[] seats) {
+        return transition(seats, HELD, BOOKED);
+    }
+
+    /** FREE -> BOOKED for every seat, or no change at all. */
+    public boolean book(int[] seats) {
+        return transition(seats, FREE, BOOKED);
+    }
+
+    /** HELD -> FREE for every seat, or no change at all. */
+    public boolean release(int[] seats) {
+        return transition(seats, HELD, FREE);
+    }
+
+    /** BOOKED -> FREE for every seat, or no change at all. */
+    public boolean cancel(int[] seats) {
+        return transition(seats, BOOKED, FREE);
+    }
+
+    /** from -> to for every seat, or no change at all; used to apply and undo the moves above. */
+    boolean move(int[] seats, int from, int to) {
+        return transition(seats, from, to);
+    }
+
+    /** The next trip sequence, taken by a thread whose move just succeeded. */
+    long stampEvent() {
+        return events.incrementAndGet();
+    }
+
+    public int state(int seat) {
+        int index = checkSeat(seat);
+        return (int) ((words.get(index / SEATS_PER_WORD) >>> shift(index)) & STATE_MASK);
+    }
+
+    /** Seats that are not FREE; may lag a move still in flight. */
+    public int taken() {
+        return taken.get();
+    }
+
+    public int available() {
+        return capacity - taken.get();
+    }
+
+    public List<Integer> seatsIn(int state) {
+        List<Integer> seats = new ArrayList<>();
+        for (int i = 0; i < words.length(); i++) {
+            long w = words.get(i);
+            for (int slot = 0; slot < SEATS_PER_WORD; slot++) {
+                int index = i * SEATS_PER_WORD + slot;
+                if (index >= capacity) break;
+                if (((w >>> (slot * BITS_PER_SEAT)) & STATE_MASK) == state) {
+                    seats.add(index + 1);
+                }
+            }
+        }
+        return seats;
+    }
+
+    private boolean transition(int[] seats, int from, int to) {
+        if (seats == null || seats.length == 0) {
+            throw new IllegalArgumentException("No seats selected");
+        }
+        int[] indexes = new int[seats.length];
+        for (int i = 0; i < seats.length; i++) {
+            indexes[i] = checkSeat(seats[i]);
+        }
+        Arrays.sort(indexes);
+        for (int i = 1; i < indexes.length; i++) {
+            if (indexes[i] == indexes[i - 1]) {
+                throw new IllegalArgumentException("Seat " + (indexes[i] + 1) + " selected more than once");
+            }
+        }
+
+        // Walk the sorted seats one word at a time, so each word takes a single CAS
+        int start = 0;
+        while (start < indexes.length) {
+            int word = indexes[start] / SEATS_PER_WORD;
+            int end = start;
+            long expectMask = 0L;
+            long fromBits = 0L;
+            long toBits = 0L;
+            while (end < indexes.length && indexes[end] / SEATS_PER_WORD == word) {
+                int shift = shift(indexes[end]);
+                expectMask |= STATE_MASK << shift;
+                fromBits |= ((long) from) << shift;
+                toBits |= ((long) to) << shift;
+                end++;
+            }
+            if (!casWord(word, expectMask, fromBits, toBits)) {
+                rollback(indexes, start, from, to);
+                return false;
+            }
+            start = end;
+        }
+        if (from == FREE) {
+            taken.addAndGet(seats.length);
+        } else if (to == FREE) {
+            taken.addAndGet(-seats.length);
+        }
+        return true;
+    }
+
+    private boolean casWord(int word, long mask, long fromBits, long toBits) {
+        while (true) {
+            long current = words.get(word);
+            if ((current & mask) != fromBits) {
+                return false;
+            }
+            long next = (current & ~mask) | toBits;
+            if (words.compareAndSet(word, current, next)) {
+                return true;
+            }
+        }
+    }
+
+    // Undo the words already moved to 'to' for seats before 'end'
+    private void rollback(int[] indexes, int end, int from, int to) {
+        int start = 0;
+        while (start < end) {
+            int word = indexes[start] / SEATS_PER_WORD;
+            long mask = 0L;
+            long fromBits = 0L;
+            long toBits = 0L;
+            while (start < end && indexes[start] / SEATS_PER_WORD == word) {
+                int shift = shift(indexes[start]);
+                mask |= STATE_MASK << shift;
+                fromBits |= ((long) from) << shift;
+                toBits |= ((long) to) << shift;
+                start++;
+            }
+            casWord(word, mask, toBits, fromBits);
+        }
+    }
+
+    private int checkSeat(int seat) {
+        if (seat < 1 || seat > capacity) {
+            throw new IllegalArgumentException("Seat " + seat + " does not exist on this bus");
+        }
+        return seat - 1;
+    }
+
+    private static int shift(int index) {
+        return (index % SEATS_PER_WORD) * BITS_PER_SEAT;
+    }
+}
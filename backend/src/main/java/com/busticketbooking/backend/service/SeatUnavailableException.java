@@ -0,0 +1,11 @@
+package com.busticketbooking.backend.service;
+
+/**
+ * Thrown when one or more of the requested seats is already held or booked.
+ */
+public class SeatUnavailableException extends RuntimeException {
+
+    public SeatUnavailableException(String message) {
+        super(message);
+    }
+}
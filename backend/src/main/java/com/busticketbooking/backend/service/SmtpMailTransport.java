@@ -0,0 +1,26 @@
+package com.busticketbooking.backend.service;
+
+import org.springframework.mail.SimpleMailMessage;
+import org.springframework.mail.javamail.JavaMailSender;
+
+/**
+ * Sends through Spring's JavaMailSender, which opens one SMTP connection per send(...) call.
+ */
+public class SmtpMailTransport implements MailTransport {
+
+    private final JavaMailSender mailSender;
+
+    public SmtpMailTransport(JavaMailSender mailSender) {
+        this.mailSender = mailSender;
+    }
+
+    @Override
+    public void send(SimpleMailMessage... messages) {
+        mailSender.send(messages);
+    }
+
+    @Override
+    public boolean isConfigured() {
+        return mailSender != null;
+    }
+}
@@ -0,0 +1,33 @@
+package com.busticketbooking.backend.service;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * A cluster of one: this node owns every trip and nothing is forwarded.
+ */
+public class StandaloneCoordinator implements ClusterCoordinator {
+
+    private volatile View view = new View(0, List.of());
+
+    @Override
+    public void join(Member self, Consumer<View> listener) {
+        view = new View(1, List.of(self));
+        listener.accept(view);
+    }
+
+    @Override
+    public void leave(Member self) {
+        view = new View(view.epoch() + 1, List.of());
+    }
+
+    @Override
+    public View view() {
+        return view;
+    }
+
+    @Override
+    public boolean isStandalone() {
+        return true;
+    }
+}
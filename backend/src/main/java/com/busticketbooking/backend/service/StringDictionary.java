@@ -0,0 +1,70 @@
+package com.busticketbooking.backend.service;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary encoding for strings that repeat across many trips.
+ *
+ * Each distinct value is stored once and referred to by a small int code.
+ * Codes are handed out in order and never reused, so a code read from a column
+ * always decodes to the same value. Writers must be serialized by the caller;
+ * lookups and decoding are lock-free.
+ */
+final class StringDictionary {
+
+    static final int NONE = -1;
+
+    private final String name;
+    private final int capacity;
+    private final Map<String, Integer> codes = new ConcurrentHashMap<>();
+    // Slots are filled before the array is republished, so a published code always decodes
+    private volatile String[] values = new String[16];
+    private int size;
+
+    StringDictionary(String name, int capacity) {
+        this.name = name;
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return the code for value, or NONE if it is null or has never been added
+     */
+    int code(String value) {
+        Integer code = value == null ? null : codes.get(value);
+        return code == null ? NONE : code;
+    }
+
+    /**
+     * @return the code for value, adding it if needed; NONE for null
+     */
+    int add(String value) {
+        if (value == null) {
+            return NONE;
+        }
+        Integer existing = codes.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (size == capacity) {
+            throw new IllegalStateException("The " + name + " dictionary is full (" + capacity + " values)");
+        }
+        String[] current = values;
+        if (size == current.length) {
+            current = Arrays.copyOf(current, (int) Math.min((long) current.length * 2, capacity));
+        }
+        current[size] = value;
+        values = current;
+        codes.put(value, size);
+        return size++;
+    }
+
+    String value(int code) {
+        return code == NONE ? null : values[code];
+    }
+
+    int size() {
+        return codes.size();
+    }
+}
@@ -0,0 +1,235 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Struct-of-arrays storage for trips.
+ *
+ * A trip is a row number into parallel primitive columns instead of a Bus
+ * object with a dozen references. The fields search filters on are stored
+ * ready to compare: cities and dates as dictionary codes in {@code short}s,
+ * departure as minutes since midnight, price in paise and rating in
+ * hundredths. Display strings (name, type, times, duration) repeat heavily
+ * across a catalogue and are dictionary-encoded too. Bus objects are only
+ * built when a trip is returned to a caller.
+ *
+ * Rows are append-only: replacing or removing a trip marks its old row dead,
+ * and {@link TripIndex} compacts into a fresh store once dead rows dominate.
+ * Writers must be serialized by the caller; readers never lock.
+ */
+final class TripColumns {
+
+    static final int NO_CODE = 0xFFFF;
+    static final byte AC = 1;
+    static final byte SLEEPER = 2;
+    private static final byte LIVE = 4;
+
+    // Folded city names and trimmed dates, as used for index keys; 0xFFFF is reserved for NO_CODE
+    final StringDictionary cities = new StringDictionary("city", NO_CODE);
+    final StringDictionary dates = new StringDictionary("date", NO_CODE);
+    // Display strings exactly as supplied
+    private final StringDictionary text = new StringDictionary("text", Integer.MAX_VALUE);
+
+    private volatile Columns columns = new Columns(1024);
+    private int rows;
+    private int live;
+
+    private static final class Columns {
+        final String[] id;
+        final short[] fromCity;
+        final short[] toCity;
+        final short[] date;
+        final int[] departure;
+        final int[] pricePaise;
+        final short[] ratingCenti;
+        final int[] seats;
+        final byte[] flags;
+        final int[] name;
+        final int[] type;
+        final int[] departureText;
+        final int[] arrivalText;
+        final int[] durationText;
+        final int[] fromText;
+        final int[] toText;
+        final int[] dateText;
+
+        Columns(int capacity) {
+            this(new String[capacity], new short[capacity], new short[capacity], new short[capacity],
+                    new int[capacity], new int[capacity], new short[capacity], new int[capacity], new byte[capacity],
+                    new int[capacity], new int[capacity], new int[capacity], new int[capacity], new int[capacity],
+                    new int[capacity], new int[capacity], new int[capacity]);
+        }
+
+        private Columns(String[] id, short[] fromCity, short[] toCity, short[] date, int[] departure, int[] pricePaise,
+                        short[] ratingCenti, int[] seats, byte[] flags, int[] name, int[] type, int[] departureText,
+                        int[] arrivalText, int[] durationText, int[] fromText, int[] toText, int[] dateText) {
+            this.id = id;
+            this.fromCity = fromCity;
+            this.toCity = toCity;
+            this.date = date;
+            this.departure = departure;
+            this.pricePaise = pricePaise;
+            this.ratingCenti = ratingCenti;
+            this.seats = seats;
+            this.flags = flags;
+            this.name = name;
+            this.type = type;
+            this.departureText = departureText;
+            this.arrivalText = arrivalText;
+            this.durationText = durationText;
+            this.fromText = fromText;
+            this.toText = toText;
+            this.dateText = dateText;
+        }
+
+        int capacity() {
+            return id.length;
+        }
+
+        Columns grow(int capacity) {
+            return new Columns(Arrays.copyOf(id, capacity), Arrays.copyOf(fromCity, capacity),
+                    Arrays.copyOf(toCity, capacity), Arrays.copyOf(date, capacity), Arrays.copyOf(departure, capacity),
+                    Arrays.copyOf(pricePaise, capacity), Arrays.copyOf(ratingCenti, capacity),
+                    Arrays.copyOf(seats, capacity), Arrays.copyOf(flags, capacity), Arrays.copyOf(name, capacity),
+                    Arrays.copyOf(type, capacity), Arrays.copyOf(departureText, capacity),
+                    Arrays.copyOf(arrivalText, capacity), Arrays.copyOf(durationText, capacity),
+                    Arrays.copyOf(fromText, capacity), Arrays.copyOf(toText, capacity),
+                    Arrays.copyOf(dateText, capacity));
+        }
+    }
+
+    /**
+     * Store a trip in a new row. The row is visible to readers that learn its
+     * number through a later safe publication (a concurrent map or volatile write).
+     */
+    int append(Bus bus) {
+        int pricePaise = toHundredths(bus.getPrice(), "price");
+        Columns c = columns;
+        if (rows == c.capacity()) {
+            c = c.grow(c.capacity() * 2);
+            columns = c;
+        }
+        int row = rows;
+        c.id[row] = bus.getId();
+        c.fromCity[row] = (short) codeOrNone(cities.add(TripIndex.cityKey(bus.getFromCity())));
+        c.toCity[row] = (short) codeOrNone(cities.add(TripIndex.cityKey(bus.getToCity())));
+        c.date[row] = (short) codeOrNone(dates.add(trimToNull(bus.getDate())));
+        c.departure[row] = TripIndex.parseMinutes(bus.getDeparture());
+        c.pricePaise[row] = pricePaise;
+        c.ratingCenti[row] = (short) Math.max(Short.MIN_VALUE, Math.min(Short.MAX_VALUE, Math.round(bus.getRating() * 100)));
+        c.seats[row] = bus.getSeatsAvailable();
+        c.flags[row] = (byte) (flagsOf(bus.getType()) | LIVE);
+        c.name[row] = text.add(bus.getName());
+        c.type[row] = text.add(bus.getType());
+        c.departureText[row] = text.add(bus.getDeparture());
+        c.arrivalText[row] = text.add(bus.getArrival());
+        c.durationText[row] = text.add(bus.getDuration());
+        c.fromText[row] = text.add(bus.getFromCity());
+        c.toText[row] = text.add(bus.getToCity());
+        c.dateText[row] = text.add(bus.getDate());
+        rows++;
+        live++;
+        return row;
+    }
+
+    void kill(int row) {
+        Columns c = columns;
+        if ((c.flags[row] & LIVE) != 0) {
+            c.flags[row] &= ~LIVE;
+            live--;
+        }
+    }
+
+    boolean isLive(int row) {
+        return (columns.flags[row] & LIVE) != 0;
+    }
+
+    /**
+     * Materialize a row as a Bus. Each call returns a new object.
+     */
+    Bus bus(int row) {
+        Columns c = columns;
+        return new Bus(c.id[row], text.value(c.name[row]), text.value(c.type[row]),
+                text.value(c.departureText[row]), text.value(c.arrivalText[row]), text.value(c.durationText[row]),
+                c.pricePaise[row] / 100.0, c.seats[row], c.ratingCenti[row] / 100.0,
+                text.value(c.fromText[row]), text.value(c.toText[row]), text.value(c.dateText[row]));
+    }
+
+    String id(int row) {
+        return columns.id[row];
+    }
+
+    int fromCity(int row) {
+        return Short.toUnsignedInt(columns.fromCity[row]);
+    }
+
+    int toCity(int row) {
+        return Short.toUnsignedInt(columns.toCity[row]);
+    }
+
+    int date(int row) {
+        return Short.toUnsignedInt(columns.date[row]);
+    }
+
+    int departure(int row) {
+        return columns.departure[row];
+    }
+
+    int pricePaise(int row) {
+        return columns.pricePaise[row];
+    }
+
+    short ratingCenti(int row) {
+        return columns.ratingCenti[row];
+    }
+
+    byte flags(int row) {
+        return (byte) (columns.flags[row] & (AC | SLEEPER));
+    }
+
+    String arrival(int row) {
+        return text.value(columns.arrivalText[row]);
+    }
+
+    String duration(int row) {
+        return text.value(columns.durationText[row]);
+    }
+
+    /**
+     * Rows written so far, dead ones included.
+     */
+    int rows() {
+        return rows;
+    }
+
+    int live() {
+        return live;
+    }
+
+    private static int codeOrNone(int code) {
+        return code == StringDictionary.NONE ? NO_CODE : code;
+    }
+
+    private static int toHundredths(double value, String field) {
+        long hundredths = Math.round(value * 100);
+        if (hundredths < Integer.MIN_VALUE || hundredths > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Trip " + field + " out of range: " + value);
+        }
+        return (int) hundredths;
+    }
+
+    private static byte flagsOf(String type) {
+        String lower = type == null ? "" : type.toLowerCase(Locale.ROOT);
+        // Same AC/Sleeper rules as the filter chips on the bus list page
+        boolean ac = lower.contains("ac") && !lower.contains("non-ac");
+        boolean sleeper = lower.contains("sleeper");
+        return (byte) ((ac ? AC : 0) | (sleeper ? SLEEPER : 0));
+    }
+
+    private static String trimToNull(String value) {
+        return value == null || value.isBlank() ? null : value.trim();
+    }
+}
@@ -0,0 +1,451 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.BusSearchCriteria;
+import com.busticketbooking.backend.model.BusSearchResult;
+import com.busticketbooking.backend.model.Itinerary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In-memory trip catalogue indexed on (fromCity, toCity, date).
+ *
+ * Trips live in a {@link TripColumns} store and are addressed by row number.
+ * Each route bucket is an immutable snapshot with the bucket's filter fields
+ * copied into primitive arrays in departure order, plus price and rating
+ * orderings over them. A search only touches the bucket for its route,
+ * binary-searches into the ordering it was asked for and filters with plain
+ * int comparisons; Bus objects are built only for the page being returned.
+ * Writers rebuild just the buckets they touch and swap them in; readers never lock.
+ */
+class TripIndex {
+
+    // Date code of the bucket holding a route's trips on every date
+    static final int ANY_DATE = TripColumns.NO_CODE;
+
+    // Below this many dead rows compaction is not worth a full rebuild
+    private static final int COMPACT_MIN_DEAD_ROWS = 4096;
+
+    /**
+     * Everything a reader needs, swapped as a whole when the store is compacted.
+     */
+    private record State(TripColumns columns, Map<String, Integer> byId, Map<Long, Bucket> buckets) {
+        State() {
+            this(new TripColumns(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+        }
+    }
+
+    private volatile State state = new State();
+    // Bumped after every write, once the new buckets are visible
+    private volatile long version;
+    // Built on the first connection search after a catalogue change
+    private volatile RouteGraph routeGraph;
+    private final Object routeGraphLock = new Object();
+
+    public Bus get(String id) {
+        State s = state;
+        Integer row = id == null ? null : s.byId().get(id);
+        return row == null ? null : s.columns().bus(row);
+    }
+
+    public int size() {
+        return state.byId().size();
+    }
+
+    /**
+     * Changes whenever trips are added, replaced or removed. A reader that sees a
+     * version is guaranteed to see every write made before it.
+     */
+    public long version() {
+        return version;
+    }
+
+    public synchronized void putAll(Collection<Bus> trips) {
+        State s = state;
+        Map<Long, Set<Integer>> added = new HashMap<>();
+        Map<Long, Set<Integer>> removed = new HashMap<>();
+        for (Bus bus : trips) {
+            int row = s.columns().append(bus);
+            Integer previous = s.byId().put(bus.getId(), row);
+            if (previous != null) {
+                s.columns().kill(previous);
+                for (long key : keysOf(s.columns(), previous)) {
+                    removed.computeIfAbsent(key, k -> new HashSet<>()).add(previous);
+                }
+            }
+            for (long key : keysOf(s.columns(), row)) {
+                added.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(row);
+            }
+        }
+        rebuild(s, added, removed);
+        compactIfSparse();
+        version++;
+    }
+
+    public synchronized Bus remove(String id) {
+        State s = state;
+        Integer previous = s.byId().remove(id);
+        if (previous == null) {
+            return null;
+        }
+        Bus removed = s.columns().bus(previous);
+        s.columns().kill(previous);
+        Map<Long, Set<Integer>> drops = new HashMap<>();
+        for (long key : keysOf(s.columns(), previous)) {
+            drops.put(key, Set.of(previous));
+        }
+        rebuild(s, Collections.emptyMap(), drops);
+        compactIfSparse();
+        version++;
+        return removed;
+    }
+
+    public BusSearchResult search(BusSearchCriteria criteria) {
+        int page = Math.max(0, criteria.getPage());
+        int size = Math.max(1, criteria.getSize());
+        String fromKey = cityKey(criteria.getFrom());
+        String toKey = cityKey(criteria.getTo());
+        State s = state;
+        if (fromKey == null || toKey == null) {
+            return listAll(s, page, size);
+        }
+        int from = s.columns().cities.code(fromKey);
+        int to = s.columns().cities.code(toKey);
+        int date = criteria.getDate() == null || criteria.getDate().isBlank()
+                ? ANY_DATE : s.columns().dates.code(criteria.getDate().trim());
+        Bucket bucket = from < 0 || to < 0 || date < 0 ? null : s.buckets().get(bucketKey(from, to, date));
+        if (bucket == null) {
+            return new BusSearchResult(Collections.emptyList(), 0, page, size);
+        }
+
+        // Bounds in the stored units; an absent filter becomes the widest possible range
+        int departAfter = criteria.getDepartAfter() == null ? Integer.MIN_VALUE : parseMinutes(criteria.getDepartAfter());
+        int departBefore = criteria.getDepartBefore() == null ? Integer.MAX_VALUE : parseMinutes(criteria.getDepartBefore());
+        int minPrice = criteria.getMinPrice() == null ? Integer.MIN_VALUE : hundredthsAtLeast(criteria.getMinPrice());
+        int maxPrice = criteria.getMaxPrice() == null ? Integer.MAX_VALUE : hundredthsAtMost(criteria.getMaxPrice());
+        int minRating = criteria.getMinRating() == null ? Integer.MIN_VALUE : hundredthsAtLeast(criteria.getMinRating());
+        int flagMask = 0;
+        int flagValue = 0;
+        if (criteria.getAc() != null) {
+            flagMask |= TripColumns.AC;
+            flagValue |= criteria.getAc() ? TripColumns.AC : 0;
+        }
+        if (criteria.getSleeper() != null) {
+            flagMask |= TripColumns.SLEEPER;
+            flagValue |= criteria.getSleeper() ? TripColumns.SLEEPER : 0;
+        }
+
+        // Narrow to a contiguous range of whichever ordering we are sorting by; null means departure order
+        int[] order;
+        int lo;
+        int hi;
+        String sortBy = criteria.getSortBy() == null ? "departure" : criteria.getSortBy().toLowerCase(Locale.ROOT);
+        switch (sortBy) {
+            case "price" -> {
+                order = bucket.byPrice;
+                lo = lowerBound(bucket.sortedPrices, minPrice);
+                hi = upperBound(bucket.sortedPrices, maxPrice);
+            }
+            case "rating" -> {
+                order = bucket.byRating;
+                lo = 0;
+                hi = minRating == Integer.MIN_VALUE ? order.length : upperBound(bucket.negatedRatings, -minRating);
+            }
+            default -> {
+                order = null;
+                lo = lowerBound(bucket.departures, departAfter);
+                hi = upperBound(bucket.departures, departBefore);
+            }
+        }
+
+        long offset = (long) page * size;
+        int[] picked = new int[Math.min(size, Math.max(0, hi - lo))];
+        int count = 0;
+        long total = 0;
+        int[] departures = bucket.departures;
+        int[] prices = bucket.prices;
+        short[] ratings = bucket.ratings;
+        byte[] flags = bucket.flags;
+        for (int i = lo; i < hi; i++) {
+            int p = order == null ? i : order[i];
+            int departure = departures[p];
+            if (departure < departAfter || departure > departBefore) continue;
+            int price = prices[p];
+            if (price < minPrice || price > maxPrice) continue;
+            if (ratings[p] < minRating) continue;
+            if ((flags[p] & flagMask) != flagValue) continue;
+            if (total >= offset && count < picked.length) {
+                picked[count++] = bucket.rows[p];
+            }
+            total++;
+        }
+
+        List<Bus> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(s.columns().bus(picked[i]));
+        }
+        return new BusSearchResult(results, total, page, size);
+    }
+
+    /**
+     * Journeys of one or more trips from one city to another, with the first trip
+     * departing on the criteria's date inside its departure window. Price, rating,
+     * AC and sleeper filters apply to every leg, and the last leg must arrive
+     * within maxJourneyMinutes of the end of the window. Sorted by departure for
+     * "earliest" (each arriving as early as possible) or by total fare for "cheapest".
+     */
+    public List<Itinerary> connections(BusSearchCriteria criteria, int minLayover, int maxLegs,
+                                       int maxJourneyMinutes, int limit) {
+        String fromKey = cityKey(criteria.getFrom());
+        String toKey = cityKey(criteria.getTo());
+        int day = RouteGraph.epochMinutes(criteria.getDate());
+        if (fromKey == null || toKey == null || day < 0) {
+            return Collections.emptyList();
+        }
+        RouteGraph graph = routeGraph();
+        int departAfter = criteria.getDepartAfter() == null ? 0 : parseMinutes(criteria.getDepartAfter());
+        int departBefore = criteria.getDepartBefore() == null
+                ? RouteGraph.MINUTES_PER_DAY - 1 : parseMinutes(criteria.getDepartBefore());
+        int flagMask = 0;
+        int flagValue = 0;
+        if (criteria.getAc() != null) {
+            flagMask |= TripColumns.AC;
+            flagValue |= criteria.getAc() ? TripColumns.AC : 0;
+        }
+        if (criteria.getSleeper() != null) {
+            flagMask |= TripColumns.SLEEPER;
+            flagValue |= criteria.getSleeper() ? TripColumns.SLEEPER : 0;
+        }
+        int windowEnd = day + departBefore;
+        RouteGraph.Query query = new RouteGraph.Query(
+                graph.cityCode(fromKey), graph.cityCode(toKey),
+                day + Math.max(0, departAfter), windowEnd, windowEnd + maxJourneyMinutes,
+                minLayover, Math.min(maxLegs, RouteGraph.MAX_LEGS),
+                criteria.getMinPrice() == null ? Integer.MIN_VALUE : hundredthsAtLeast(criteria.getMinPrice()),
+                criteria.getMaxPrice() == null ? Integer.MAX_VALUE : hundredthsAtMost(criteria.getMaxPrice()),
+                criteria.getMinRating() == null ? Integer.MIN_VALUE : hundredthsAtLeast(criteria.getMinRating()),
+                flagMask, flagValue, limit);
+        return "cheapest".equalsIgnoreCase(criteria.getConnections()) ? graph.cheapest(query) : graph.earliest(query);
+    }
+
+    private RouteGraph routeGraph() {
+        long current = version;
+        RouteGraph graph = routeGraph;
+        if (graph != null && graph.version() >= current) {
+            return graph;
+        }
+        synchronized (routeGraphLock) {
+            graph = routeGraph;
+            if (graph == null || graph.version() < current) {
+                // Read the version before the state: the graph can only be newer than the version it is filed under
+                State s = state;
+                graph = RouteGraph.build(s.columns(), s.byId().values(), current);
+                routeGraph = graph;
+            }
+            return graph;
+        }
+    }
+
+    private static BusSearchResult listAll(State s, int page, int size) {
+        TripColumns columns = s.columns();
+        long skip = (long) page * size;
+        List<Bus> results = new ArrayList<>();
+        int rows = columns.rows();
+        for (int row = 0; row < rows && results.size() < size; row++) {
+            if (!columns.isLive(row)) continue;
+            if (skip > 0) {
+                skip--;
+                continue;
+            }
+            results.add(columns.bus(row));
+        }
+        return new BusSearchResult(results, s.byId().size(), page, size);
+    }
+
+    private static void rebuild(State s, Map<Long, Set<Integer>> added, Map<Long, Set<Integer>> removed) {
+        Set<Long> touched = new HashSet<>(added.keySet());
+        touched.addAll(removed.keySet());
+        for (long key : touched) {
+            Set<Integer> adds = added.getOrDefault(key, Collections.emptySet());
+            Set<Integer> drops = removed.getOrDefault(key, Collections.emptySet());
+            s.buckets().compute(key, (k, current) -> {
+                List<Integer> rows = new ArrayList<>();
+                if (current != null) {
+                    for (int row : current.rows) {
+                        if (!drops.contains(row)) {
+                            rows.add(row);
+                        }
+                    }
+                }
+                for (int row : adds) {
+                    // A trip replaced twice within one batch leaves its middle row dead
+                    if (!drops.contains(row)) {
+                        rows.add(row);
+                    }
+                }
+                return rows.isEmpty() ? null : new Bucket(s.columns(), rows);
+            });
+        }
+    }
+
+    /**
+     * Rows are never reused, so replacements and removals leave dead rows behind.
+     * Once they outnumber the live ones, copy the live trips into a fresh store.
+     */
+    private void compactIfSparse() {
+        TripColumns old = state.columns();
+        int dead = old.rows() - old.live();
+        if (dead < COMPACT_MIN_DEAD_ROWS || dead < old.live()) {
+            return;
+        }
+        State fresh = new State();
+        Map<Long, Set<Integer>> added = new HashMap<>();
+        for (int row = 0; row < old.rows(); row++) {
+            if (!old.isLive(row)) continue;
+            int copy = fresh.columns().append(old.bus(row));
+            fresh.byId().put(old.id(row), copy);
+            for (long key : keysOf(fresh.columns(), copy)) {
+                added.computeIfAbsent(key, k -> new LinkedHashSet<>()).add(copy);
+            }
+        }
+        rebuild(fresh, added, Collections.emptyMap());
+        state = fresh;
+    }
+
+    private static long[] keysOf(TripColumns columns, int row) {
+        int from = columns.fromCity(row);
+        int to = columns.toCity(row);
+        if (from == TripColumns.NO_CODE || to == TripColumns.NO_CODE) {
+            return new long[0];
+        }
+        int date = columns.date(row);
+        if (date == TripColumns.NO_CODE) {
+            return new long[]{bucketKey(from, to, ANY_DATE)};
+        }
+        return new long[]{bucketKey(from, to, date), bucketKey(from, to, ANY_DATE)};
+    }
+
+    private static long bucketKey(int from, int to, int date) {
+        return ((long) from << 32) | ((long) to << 16) | date;
+    }
+
+    static String cityKey(String city) {
+        if (city == null || city.isBlank()) {
+            return null;
+        }
+        return city.trim().toLowerCase(Locale.ROOT).intern();
+    }
+
+    /**
+     * Parse an "HH:mm" time into minutes since midnight, or -1 if it cannot be read.
+     */
+    static int parseMinutes(String hhmm) {
+        if (hhmm == null) return -1;
+        String s = hhmm.trim();
+        int colon = s.indexOf(':');
+        if (colon <= 0 || colon == s.length() - 1) return -1;
+        try {
+            int hours = Integer.parseInt(s.substring(0, colon));
+            int minutes = Integer.parseInt(s.substring(colon + 1));
+            return hours * 60 + minutes;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    // Smallest whole number of hundredths >= value; the slack absorbs binary fractions like 499.99 * 100
+    private static int hundredthsAtLeast(double value) {
+        return (int) Math.ceil(value * 100 - 1e-6);
+    }
+
+    private static int hundredthsAtMost(double value) {
+        return (int) Math.floor(value * 100 + 1e-6);
+    }
+
+    private static int lowerBound(int[] a, int key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] < key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int upperBound(int[] a, int key) {
+        int lo = 0, hi = a.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (a[mid] <= key) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    /**
+     * One route's trips as parallel primitive arrays in departure order. The price
+     * and rating orderings are positions into those arrays, with their sort keys
+     * alongside for binary search.
+     */
+    private static final class Bucket {
+        final int[] rows;
+        final int[] departures;
+        final int[] prices;
+        final short[] ratings;
+        final byte[] flags;
+        final int[] byPrice;
+        final int[] sortedPrices;
+        final int[] byRating;       // highest rating first
+        final int[] negatedRatings; // ascending, so the same bounds helpers apply
+
+        Bucket(TripColumns columns, List<Integer> tripRows) {
+            Integer[] sorted = tripRows.toArray(new Integer[0]);
+            Arrays.sort(sorted, Comparator.comparingInt(columns::departure).thenComparing(columns::id));
+            int n = sorted.length;
+            rows = new int[n];
+            departures = new int[n];
+            prices = new int[n];
+            ratings = new short[n];
+            flags = new byte[n];
+            for (int i = 0; i < n; i++) {
+                int row = sorted[i];
+                rows[i] = row;
+                departures[i] = columns.departure(row);
+                prices[i] = columns.pricePaise(row);
+                ratings[i] = columns.ratingCenti(row);
+                flags[i] = columns.flags(row);
+            }
+
+            // Positions are already in departure order, so a stable sort keeps departure as the tie-break
+            Integer[] positions = new Integer[n];
+            for (int i = 0; i < n; i++) positions[i] = i;
+            Integer[] priceOrder = positions.clone();
+            Arrays.sort(priceOrder, Comparator.comparingInt(p -> prices[p]));
+            byPrice = new int[n];
+            sortedPrices = new int[n];
+            for (int i = 0; i < n; i++) {
+                byPrice[i] = priceOrder[i];
+                sortedPrices[i] = prices[priceOrder[i]];
+            }
+
+            Integer[] ratingOrder = positions.clone();
+            Arrays.sort(ratingOrder, Comparator.comparingInt(p -> -ratings[p]));
+            byRating = new int[n];
+            negatedRatings = new int[n];
+            for (int i = 0; i < n; i++) {
+                byRating[i] = ratingOrder[i];
+                negatedRatings[i] = -ratings[ratingOrder[i]];
+            }
+        }
+    }
+}
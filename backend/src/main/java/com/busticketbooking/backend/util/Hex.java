@@ -0,0 +1,44 @@
+package com.busticketbooking.backend.util;
+
+/**
+ * Lowercase hex helpers that work on caller-supplied buffers instead of building Strings.
+ */
+public final class Hex {
+
+    private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+    private Hex() {
+    }
+
+    /**
+     * Write bytes as lowercase hex into out, which must hold at least 2 * bytes.length chars.
+     */
+    public static void encode(byte[] bytes, int length, char[] out) {
+        for (int i = 0; i < length; i++) {
+            out[2 * i] = DIGITS[(bytes[i] >>> 4) & 0xf];
+            out[2 * i + 1] = DIGITS[bytes[i] & 0xf];
+        }
+    }
+
+    public static String encode(byte[] bytes) {
+        char[] out = new char[bytes.length * 2];
+        encode(bytes, bytes.length, out);
+        return new String(out);
+    }
+
+    /**
+     * Compare the lowercase hex form of bytes[0, length) with a hex string, in time that
+     * depends only on the length and not on where the first difference is.
+     */
+    public static boolean constantTimeEquals(byte[] bytes, int length, CharSequence hex) {
+        if (hex == null || hex.length() != length * 2) {
+            return false;
+        }
+        int diff = 0;
+        for (int i = 0; i < length; i++) {
+            diff |= hex.charAt(2 * i) ^ DIGITS[(bytes[i] >>> 4) & 0xf];
+            diff |= hex.charAt(2 * i + 1) ^ DIGITS[bytes[i] & 0xf];
+        }
+        return diff == 0;
+    }
+}
@@ -0,0 +1,183 @@
+package com.busticketbooking.backend.repository;
+
+import com.busticketbooking.backend.repository.BookingJournal.Event;
+import com.busticketbooking.backend.repository.BookingJournal.EventType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BookingJournalTest {
+
+    // Small segments so a handful of events spans several files
+    private static final int SEGMENT_RECORDS = 4;
+
+    @TempDir
+    Path dir;
+
+    private final List<BookingJournal> journals = new ArrayList<>();
+
+    @AfterEach
+    void stopJournals() {
+        journals.forEach(BookingJournal::stop);
+    }
+
+    @Test
+    void replaysInterleavedBookAndCancelInOrderAcrossSegments() throws Exception {
+        BookingJournal writer = open();
+        writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{1, 2}, "b1", 1);
+        writer.append(EventType.BOOKED, "bus2", "2026-10-20", new int[]{1}, "b2", 1);
+        writer.append(EventType.CANCELLED, "bus1", "2026-10-20", new int[]{2}, "b1", 2);
+        writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{2, 3}, "b3", 3);
+        // Rolls into the second segment
+        writer.append(EventType.CANCELLED, "bus1", "2026-10-20", new int[]{1}, "b1", 4);
+        writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{1}, "b4", 5);
+        writer.append(EventType.CANCELLED, "bus2", "2026-10-20", new int[]{1}, "b2", 2);
+        writer.append(EventType.BOOKED, "bus2", "2026-10-20", new int[]{128}, "b5", 3);
+        // Rolls into the third segment
+        writer.append(EventType.CANCELLED, "bus1", "2026-10-20", new int[]{3}, "b3", 6);
+        writer.stop();
+        journals.remove(writer);
+
+        List<Event> events = replay(open());
+
+        assertEquals(9, events.size());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).sequence() > events.get(i - 1).sequence(), "replayed out of order at " + i);
+        }
+        assertEquals(List.of("b1", "b2", "b1", "b3", "b1", "b4", "b2", "b5", "b3"),
+                events.stream().map(Event::ref).toList());
+        assertEquals(List.of(1L, 1L, 2L, 3L, 4L, 5L, 2L, 3L, 6L),
+                events.stream().map(Event::tripSequence).toList());
+        Map<String, TreeSet<Integer>> booked = fold(events);
+        assertEquals(new TreeSet<>(List.of(1, 2)), booked.get("bus1|2026-10-20"));
+        assertEquals(new TreeSet<>(List.of(128)), booked.get("bus2|2026-10-20"));
+    }
+
+    @Test
+    void compactionKeepsBookedSeatsAndLaterEventsStillApply() throws Exception {
+        BookingJournal writer = open();
+        for (int seat = 1; seat <= 6; seat++) {
+            writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{seat}, "b" + seat, seat);
+        }
+        writer.append(EventType.CANCELLED, "bus1", "2026-10-20", new int[]{2, 5}, "b2", 7);
+        writer.append(EventType.HELD, "bus1", "2026-10-20", new int[]{7}, "h7", 8);
+        writer.append(EventType.BOOKED, "bus3", "2026-10-21", new int[]{4}, "b7", 1);
+        writer.append(EventType.CANCELLED, "bus3", "2026-10-21", new int[]{4}, "b7", 2);
+        writer.stop();
+        journals.remove(writer);
+
+        BookingJournal compactor = open();
+        Map<String, TreeSet<Integer>> before = fold(replay(compactor));
+        compactor.compact();
+        // Written after the compaction, into the segment the compactor opened at startup
+        compactor.append(EventType.CANCELLED, "bus1", "2026-10-20", new int[]{1}, "b1", 9);
+        compactor.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{5}, "b8", 10);
+        compactor.stop();
+        journals.remove(compactor);
+
+        List<Event> events = replay(open());
+
+        assertEquals(EventType.SNAPSHOT, events.get(0).type());
+        assertArrayEquals(new int[]{1, 3, 4, 6}, events.get(0).seats());
+        assertEquals(8, events.get(0).tripSequence());
+        for (int i = 1; i < events.size(); i++) {
+            assertTrue(events.get(i).sequence() > events.get(i - 1).sequence(), "replayed out of order at " + i);
+        }
+        Map<String, TreeSet<Integer>> after = fold(events);
+        assertEquals(new TreeSet<>(List.of(1, 3, 4, 6)), before.get("bus1|2026-10-20"));
+        assertEquals(new TreeSet<>(List.of(3, 4, 5, 6)), after.get("bus1|2026-10-20"));
+        assertTrue(after.getOrDefault("bus3|2026-10-21", new TreeSet<>()).isEmpty());
+    }
+
+    @Test
+    void compactionCountsEventsThatLandedOutOfTripOrder() throws Exception {
+        BookingJournal writer = open();
+        // Seat 1 was booked (2) and cancelled (3), and the cancellation landed first
+        writer.append(EventType.HELD, "bus1", "2026-10-20", new int[]{1}, "b1", 1);
+        writer.append(EventType.CANCELLED, "bus1", "2026-10-20", new int[]{1}, "b1", 3);
+        writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{1}, "b1", 2);
+        writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{2}, "b2", 4);
+        // Rolls into the second segment
+        writer.append(EventType.BOOKED, "bus1", "2026-10-20", new int[]{3}, "b3", 5);
+        writer.stop();
+        journals.remove(writer);
+
+        List<Event> events = replay(open());
+        assertEquals(new TreeSet<>(List.of(2, 3)), fold(events).get("bus1|2026-10-20"));
+
+        BookingJournal compactor = journals.get(0);
+        compactor.compact();
+        compactor.stop();
+        journals.remove(compactor);
+
+        List<Event> compacted = replay(open());
+        assertEquals(1, compacted.size());
+        assertArrayEquals(new int[]{2, 3}, compacted.get(0).seats());
+        assertEquals(5, compacted.get(0).tripSequence());
+    }
+
+    @Test
+    void validateRejectsEventsThatDoNotFitARecord() throws Exception {
+        BookingJournal journal = open();
+        assertThrows(IllegalArgumentException.class,
+                () -> journal.validate("bus-id-longer-than-24-bytes", "2026-10-20", "b1", new int[]{1}));
+        assertThrows(IllegalArgumentException.class,
+                () -> journal.validate("bus1", "2026-10-20", "b1", new int[]{129}));
+        journal.validate("bus1", "2026-10-20", "b1", new int[]{1, 128});
+    }
+
+    private BookingJournal open() throws Exception {
+        BookingJournal journal = new BookingJournal();
+        ReflectionTestUtils.setField(journal, "enabled", true);
+        ReflectionTestUtils.setField(journal, "directory", dir.toString());
+        ReflectionTestUtils.setField(journal, "segmentRecords", SEGMENT_RECORDS);
+        ReflectionTestUtils.setField(journal, "flushMillis", 60_000L);
+        ReflectionTestUtils.setField(journal, "compactMinutes", 60L);
+        journal.start();
+        journals.add(journal);
+        return journal;
+    }
+
+    private static List<Event> replay(BookingJournal journal) throws Exception {
+        List<Event> events = new ArrayList<>();
+        journal.replay(events::add);
+        return events;
+    }
+
+    // Booked seats per trip the way startup restores them: bookings less cancellations
+    private static Map<String, TreeSet<Integer>> fold(List<Event> events) {
+        Map<String, Map<Integer, Integer>> net = new TreeMap<>();
+        for (Event e : events) {
+            Map<Integer, Integer> seats = net.computeIfAbsent(e.busId() + "|" + e.date(), k -> new TreeMap<>());
+            for (int seat : e.seats()) {
+                switch (e.type()) {
+                    case BOOKED, SNAPSHOT -> seats.merge(seat, 1, Integer::sum);
+                    case CANCELLED -> seats.merge(seat, -1, Integer::sum);
+                    default -> { }
+                }
+            }
+        }
+        Map<String, TreeSet<Integer>> booked = new TreeMap<>();
+        net.forEach((trip, seats) -> {
+            TreeSet<Integer> taken = new TreeSet<>();
+            seats.forEach((seat, count) -> {
+                if (count > 0) taken.add(seat);
+            });
+            booked.put(trip, taken);
+        });
+        return booked;
+    }
+}
@@ -0,0 +1,94 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.service.OtpStore.Result;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OtpStoreTest {
+
+    // One stripe and a 64-slot table: a key's low six bits are its home slot
+    private static final int TABLE = 64;
+
+    @Test
+    void deleteAcrossTheEndOfTheTableKeepsTheProbeRunReachable() {
+        OtpStore store = new OtpStore(1000, 1, 300, 3);
+        // Three keys homed in the last slot wrap around into slots 0 and 1,
+        // and a key homed in slot 0 is pushed past them to slot 2
+        long[] keys = {63, 63 + TABLE, 63 + 2 * TABLE, TABLE};
+        for (long key : keys) {
+            assertTrue(store.put(key, key * 31));
+        }
+
+        assertEquals(Result.VERIFIED, store.verify(63, 63 * 31));
+        assertEquals(Result.EXPIRED, store.verify(63, 63 * 31));
+        for (int i = 1; i < keys.length; i++) {
+            assertEquals(Result.INVALID, store.verify(keys[i], 0));
+        }
+
+        assertEquals(Result.VERIFIED, store.verify(63 + TABLE, (63 + TABLE) * 31));
+        assertEquals(Result.VERIFIED, store.verify(TABLE, TABLE * 31));
+        assertEquals(Result.VERIFIED, store.verify(63 + 2 * TABLE, (63 + 2 * TABLE) * 31));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void wrongCodesLockTheEntryUntilReissued() {
+        OtpStore store = new OtpStore(1000, 1, 300, 2);
+        store.put(7, 70);
+        assertEquals(Result.INVALID, store.verify(7, 1));
+        assertEquals(Result.INVALID, store.verify(7, 2));
+        assertEquals(Result.LOCKED, store.verify(7, 70));
+
+        store.put(7, 71);
+        assertEquals(Result.VERIFIED, store.verify(7, 71));
+    }
+
+    @Test
+    void expiredCodesAreSweptAsTheQueueWrapsAround() {
+        // A zero TTL expires every code on the next touch, so the queue head
+        // keeps chasing the tail around the ring
+        OtpStore store = new OtpStore(10, 1, 0, 3);
+        for (long key = 1; key <= 5 * TABLE; key++) {
+            assertTrue(store.put(key, key));
+            assertEquals(Result.EXPIRED, store.verify(key, key));
+            assertTrue(store.size() <= 1);
+        }
+        assertEquals(Result.EXPIRED, store.verify(1, 1));
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void queueGrowsPastTheRingWhileOlderCodesExpire() throws Exception {
+        OtpStore store = new OtpStore(10_000, 1, 2, 3);
+        for (long key = 1; key <= 10; key++) {
+            store.put(key, key);
+        }
+        Thread.sleep(2_100);
+
+        // The first put sweeps the ten expired codes, so the head sits mid-ring
+        // when the queue has to grow
+        for (long key = 100; key < 100 + 2 * TABLE; key++) {
+            assertTrue(store.put(key, key));
+        }
+        assertEquals(2 * TABLE, store.size());
+        for (long key = 1; key <= 10; key++) {
+            assertEquals(Result.EXPIRED, store.verify(key, key));
+        }
+        for (long key = 100; key < 100 + 2 * TABLE; key++) {
+            assertEquals(Result.VERIFIED, store.verify(key, key), "key " + key);
+        }
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    void reissuedCodeOutlivesItsStaleQueueRecord() {
+        OtpStore store = new OtpStore(1000, 1, 300, 3);
+        store.put(9, 90);
+        store.put(9, 91);
+        assertEquals(1, store.size());
+        assertEquals(Result.INVALID, store.verify(9, 90));
+        assertEquals(Result.VERIFIED, store.verify(9, 91));
+    }
+}
@@ -0,0 +1,135 @@
+package com.busticketbooking.backend.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SeatMapTest {
+
+    private static final int THREADS = 8;
+    private static final int ROUNDS = 2_000;
+
+    @Test
+    void holdIsAllOrNothing() {
+        SeatMap seatMap = new SeatMap(40);
+        assertTrue(seatMap.hold(new int[]{5}));
+
+        assertFalse(seatMap.hold(new int[]{4, 5, 6}));
+        assertEquals(SeatMap.FREE, seatMap.state(4));
+        assertEquals(SeatMap.HELD, seatMap.state(5));
+        assertEquals(SeatMap.FREE, seatMap.state(6));
+        assertEquals(39, seatMap.available());
+    }
+
+    @Test
+    void concurrentHoldsNeverShareASeat() throws Exception {
+        // Seats 31-34 straddle the first and second words of the map
+        int[][] requests = {{31, 32}, {32, 33}, {33, 34}, {31, 34}, {30, 31, 32, 33, 34, 35}};
+        for (int round = 0; round < ROUNDS / 10; round++) {
+            SeatMap seatMap = new SeatMap(40);
+            List<int[]> won = runConcurrently(THREADS, i -> {
+                int[] seats = requests[i % requests.length];
+                return seatMap.hold(seats) ? seats : null;
+            });
+
+            boolean[] taken = new boolean[41];
+            int held = 0;
+            for (int[] seats : won) {
+                for (int seat : seats) {
+                    assertFalse(taken[seat], "seat " + seat + " held twice");
+                    taken[seat] = true;
+                    held++;
+                }
+            }
+            assertEquals(held, seatMap.seatsIn(SeatMap.HELD).size());
+            assertEquals(40 - held, seatMap.available());
+        }
+    }
+
+    @Test
+    void concurrentConfirmAndReleaseSettleEachHoldOnce() throws Exception {
+        for (int round = 0; round < ROUNDS / 10; round++) {
+            SeatMap seatMap = new SeatMap(40);
+            int[] seats = {31, 32, 33};
+            assertTrue(seatMap.hold(seats));
+
+            // Half the threads confirm, half release; exactly one of them may win
+            List<Boolean> results = runConcurrently(THREADS, i ->
+                    i % 2 == 0 ? (seatMap.confirm(seats) ? Boolean.TRUE : null)
+                               : (seatMap.release(seats) ? Boolean.FALSE : null));
+
+            assertEquals(1, results.size());
+            int expected = results.get(0) ? SeatMap.BOOKED : SeatMap.FREE;
+            for (int seat : seats) {
+                assertEquals(expected, seatMap.state(seat));
+            }
+        }
+    }
+
+    @Test
+    void holdConfirmReleaseCyclesLeaveCountsConsistent() throws Exception {
+        SeatMap seatMap = new SeatMap(64);
+        List<Integer> booked = runConcurrently(THREADS, i -> {
+            int count = 0;
+            for (int r = 0; r < ROUNDS; r++) {
+                int first = 1 + (i * 7 + r) % 62;
+                int[] seats = {first, first + 1, first + 2};
+                if (seatMap.hold(seats)) {
+                    if (r % 3 == 0) {
+                        assertTrue(seatMap.confirm(seats));
+                        count += seats.length;
+                    } else {
+                        assertTrue(seatMap.release(seats));
+                    }
+                }
+            }
+            return count;
+        });
+
+        int total = booked.stream().mapToInt(Integer::intValue).sum();
+        assertEquals(total, seatMap.seatsIn(SeatMap.BOOKED).size());
+        assertEquals(0, seatMap.seatsIn(SeatMap.HELD).size());
+        assertEquals(64 - total, seatMap.available());
+    }
+
+    private interface Task<T> {
+        T run(int thread) throws Exception;
+    }
+
+    /** Starts every task at once and returns the non-null results. */
+    private static <T> List<T> runConcurrently(int threads, Task<T> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<T>> futures = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                int thread = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.run(thread);
+                }));
+            }
+            start.countDown();
+            List<T> results = new ArrayList<>();
+            for (Future<T> future : futures) {
+                T result = future.get(30, TimeUnit.SECONDS);
+                if (result != null) {
+                    results.add(result);
+                }
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.BookingDetails;
+import com.busticketbooking.backend.model.BookingRequest;
+import com.busticketbooking.backend.repository.FirestoreBookingRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The per-booking work outside of I/O: building the stored record from the
+ * request, turning it into the Firestore field map, and JSON encoding for the
+ * file store and API responses. Run with -prof gc to see bytes per booking.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookingEncodingBenchmark {
+
+    private static final String ORDER_ID = "order_00000000012345";
+    private static final String PAYMENT_ID = "pay_0000000000012345";
+
+    private BookingRequest request;
+    private BookingDetails booking;
+    private ObjectMapper objectMapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        request = new BookingRequest();
+        request.setUserId("u_8f14e45fceea167a5a36dedd4bea2543");
+        request.setEmail("traveller@example.com");
+        request.setBusId("T12345");
+        request.setSelectedSeats(List.of(11, 12, 13, 14));
+        request.setTotalAmount(2396.0);
+        request.setDate("2024-01-15");
+        booking = BookingService.newBooking(request, "NB1A2B3C4D", ORDER_ID, PAYMENT_ID);
+        objectMapper = new ObjectMapper();
+    }
+
+    @Benchmark
+    public BookingDetails buildBooking() {
+        return BookingService.newBooking(request, "NB1A2B3C4D", ORDER_ID, PAYMENT_ID);
+    }
+
+    @Benchmark
+    public Map<String, Object> buildFirestoreDocument() {
+        return FirestoreBookingRepository.toDocument(BookingService.newBooking(request, "NB1A2B3C4D", ORDER_ID, PAYMENT_ID));
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(booking);
+    }
+}
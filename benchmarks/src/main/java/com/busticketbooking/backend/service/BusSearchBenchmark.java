@@ -0,0 +1,130 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.model.BusSearchCriteria;
+import com.busticketbooking.backend.model.BusSearchResult;
+import com.busticketbooking.backend.model.Itinerary;
+import com.busticketbooking.benchmarks.SyntheticCatalogue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Route search and id lookup against catalogues of 10^3 to 10^6 trips.
+ * Queries cycle through a fixed, pre-generated list so the benchmark measures
+ * the index and not the random number generator.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class BusSearchBenchmark {
+
+    private static final int QUERIES = 1024;
+
+    @Param({"1000", "10000", "100000", "1000000"})
+    public int trips;
+
+    private BusService busService;
+    private String[] from;
+    private String[] to;
+    private String[] date;
+    private String[] ids;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void loadCatalogue() {
+        busService = new BusService();
+        busService.addBuses(SyntheticCatalogue.trips(trips, 42));
+
+        SplittableRandom random = new SplittableRandom(7);
+        from = new String[QUERIES];
+        to = new String[QUERIES];
+        date = new String[QUERIES];
+        ids = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            int fromCity = random.nextInt(SyntheticCatalogue.CITIES);
+            from[i] = SyntheticCatalogue.city(fromCity);
+            to[i] = SyntheticCatalogue.city((fromCity + 1 + random.nextInt(SyntheticCatalogue.CITIES - 1)) % SyntheticCatalogue.CITIES);
+            date[i] = SyntheticCatalogue.date(random.nextInt(SyntheticCatalogue.DAYS));
+            ids[i] = "T" + random.nextInt(trips);
+        }
+        // Build the route graph up front so the connection benchmarks measure queries only
+        searchConnections("earliest");
+    }
+
+    @Benchmark
+    public List<Bus> searchRouteOnDate() {
+        int i = next++ & (QUERIES - 1);
+        return busService.searchBuses(from[i], to[i], date[i]);
+    }
+
+    @Benchmark
+    public List<Bus> searchRouteAnyDate() {
+        int i = next++ & (QUERIES - 1);
+        return busService.searchBuses(from[i], to[i], null);
+    }
+
+    /**
+     * Departure window and price range on a whole route, sorted by price:
+     * the filter loop runs over every trip the route has on any date.
+     */
+    @Benchmark
+    public BusSearchResult searchWindowAndPrice() {
+        int i = next++ & (QUERIES - 1);
+        BusSearchCriteria criteria = new BusSearchCriteria();
+        criteria.setFrom(from[i]);
+        criteria.setTo(to[i]);
+        criteria.setDepartAfter("18:00");
+        criteria.setDepartBefore("23:59");
+        criteria.setMinPrice(500.0);
+        criteria.setMaxPrice(1500.0);
+        criteria.setSortBy("price");
+        return busService.search(criteria);
+    }
+
+    /**
+     * Journeys with up to three legs, first trip on the query date: ten
+     * connection scans, one per result.
+     */
+    @Benchmark
+    public List<Itinerary> connectionsEarliest() {
+        return searchConnections("earliest");
+    }
+
+    @Benchmark
+    public List<Itinerary> connectionsCheapest() {
+        return searchConnections("cheapest");
+    }
+
+    private List<Itinerary> searchConnections(String mode) {
+        int i = next++ & (QUERIES - 1);
+        BusSearchCriteria criteria = new BusSearchCriteria();
+        criteria.setFrom(from[i]);
+        criteria.setTo(to[i]);
+        criteria.setDate(date[i]);
+        criteria.setConnections(mode);
+        return busService.searchConnections(criteria);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public Bus getBusById() {
+        return busService.getBusById(ids[next++ & (QUERIES - 1)]);
+    }
+}
@@ -0,0 +1,109 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.util.Hex;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Razorpay signature verification: single calls from one and from several
+ * threads, and the batch path used for reconciliation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PaymentVerificationBenchmark {
+
+    private static final String SECRET = "benchmark_secret_0123456789";
+    private static final int PAYMENTS = 1024;
+    private static final int BATCH_SIZE = 1000;
+
+    private PaymentService paymentService;
+    private String[] orderIds;
+    private String[] paymentIds;
+    private String[] signatures;
+    private List<Map<String, String>> batch;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        paymentService = new PaymentService();
+        Field secret = PaymentService.class.getDeclaredField("razorpayKeySecret");
+        secret.setAccessible(true);
+        secret.set(paymentService, SECRET);
+        Field registry = PaymentService.class.getDeclaredField("meterRegistry");
+        registry.setAccessible(true);
+        registry.set(paymentService, new SimpleMeterRegistry());
+        Field threads = PaymentService.class.getDeclaredField("batchThreads");
+        threads.setAccessible(true);
+        threads.set(paymentService, 2);
+        paymentService.init();
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        orderIds = new String[PAYMENTS];
+        paymentIds = new String[PAYMENTS];
+        signatures = new String[PAYMENTS];
+        for (int i = 0; i < PAYMENTS; i++) {
+            orderIds[i] = String.format("order_%014d", i);
+            paymentIds[i] = String.format("pay_%016d", i);
+            signatures[i] = Hex.encode(mac.doFinal((orderIds[i] + "|" + paymentIds[i]).getBytes(StandardCharsets.UTF_8)));
+        }
+        batch = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            int p = i % PAYMENTS;
+            batch.add(Map.of("orderId", orderIds[p], "paymentId", paymentIds[p], "signature", signatures[p]));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        paymentService.stop();
+    }
+
+    @Benchmark
+    public boolean verifyPayment(Cursor cursor) {
+        int i = cursor.next++ & (PAYMENTS - 1);
+        return paymentService.verifyPayment(orderIds[i], paymentIds[i], signatures[i]);
+    }
+
+    @Benchmark
+    @Threads(8)
+    public boolean verifyPaymentContended(Cursor cursor) {
+        int i = cursor.next++ & (PAYMENTS - 1);
+        return paymentService.verifyPayment(orderIds[i], paymentIds[i], signatures[i]);
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public boolean[] verifyBatchOf1000() {
+        return paymentService.verifyPayments(batch);
+    }
+}
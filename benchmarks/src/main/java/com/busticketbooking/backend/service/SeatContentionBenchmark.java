@@ -0,0 +1,182 @@
+package com.busticketbooking.backend.service;
+
+import com.busticketbooking.backend.model.Bus;
+import com.busticketbooking.backend.repository.BookingJournal;
+import com.busticketbooking.benchmarks.SyntheticCatalogue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Many threads holding and releasing seats at once. With one trip every thread
+ * fights over the same seat words; with more trips the contention spreads out.
+ * Each operation holds a random set of seats and, if the hold succeeded,
+ * releases it again, so the seat maps never fill up.
+ *
+ * {@code holdAndRelease} measures a bare {@link SeatMap}. {@code holdAndReleaseThroughService}
+ * goes through {@link SeatInventoryService} as requests do: journal on, fare hook
+ * checking a priced trip, seat feed notified. Any lock on that path shows up as
+ * the gap between the two. Run it on several cores; on one the threads only take turns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(8)
+public class SeatContentionBenchmark {
+
+    private static final int SEATS_PER_TRIP = 40;
+
+    @Param({"1", "64"})
+    public int tripCount;
+
+    @Param({"1", "4"})
+    public int seatsPerBooking;
+
+    private SeatMap[] trips;
+    private Bus[] buses;
+    private Path journalDir;
+    private BookingJournal journal;
+    private SeatInventoryService inventory;
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom(Thread.currentThread().threadId());
+        private int[] seats;
+        private Integer[] boxed;
+
+        @Setup(Level.Trial)
+        public void setUp(SeatContentionBenchmark benchmark) {
+            seats = new int[benchmark.seatsPerBooking];
+            boxed = new Integer[benchmark.seatsPerBooking];
+        }
+
+        int[] pick() {
+            // Distinct seats; duplicates would be rejected before any CAS
+            int start = 1 + random.nextInt(SEATS_PER_TRIP - seats.length + 1);
+            for (int i = 0; i < seats.length; i++) {
+                seats[i] = start + i;
+            }
+            return seats;
+        }
+
+        List<Integer> pickList() {
+            int start = 1 + random.nextInt(SEATS_PER_TRIP - boxed.length + 1);
+            for (int i = 0; i < boxed.length; i++) {
+                boxed[i] = start + i;
+            }
+            return Arrays.asList(boxed);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void startService() throws Exception {
+        buses = SyntheticCatalogue.trips(tripCount, 42).toArray(new Bus[0]);
+        BusService busService = new BusService();
+        busService.addBuses(Arrays.asList(buses));
+
+        FareEngine fareEngine = new FareEngine();
+        set(fareEngine, "busService", busService);
+        set(fareEngine, "occupancyTiers", "50:110,75:125,90:140");
+        set(fareEngine, "daysToDepartureTiers", "0:125,2:115,6:105");
+        set(fareEngine, "windowSeatPercent", 105);
+        set(fareEngine, "seatsPerRow", 4);
+        set(fareEngine, "maxPercent", 200);
+        set(fareEngine, "zoneId", "Asia/Kolkata");
+        set(fareEngine, "couponSpec", "");
+        fareEngine.init();
+
+        journalDir = Files.createTempDirectory("seat-contention-journal");
+        journal = new BookingJournal();
+        set(journal, "enabled", true);
+        set(journal, "directory", journalDir.toString());
+        set(journal, "segmentRecords", 65536);
+        set(journal, "flushMillis", 200L);
+        set(journal, "compactMinutes", 10L);
+        journal.start();
+
+        inventory = new SeatInventoryService();
+        set(inventory, "seatsPerTrip", SEATS_PER_TRIP);
+        set(inventory, "journal", journal);
+        set(inventory, "seatFeed", new SeatFeed());
+        set(inventory, "fareEngine", fareEngine);
+        for (Bus bus : buses) {
+            // A quote makes every change go through the occupancy tier check
+            fareEngine.quote(bus.getId(), bus.getDate(), inventory.getSeatMap(bus.getId(), bus.getDate()));
+        }
+    }
+
+    @Setup(Level.Iteration)
+    public void resetTrips() {
+        trips = new SeatMap[tripCount];
+        for (int i = 0; i < tripCount; i++) {
+            trips[i] = new SeatMap(SEATS_PER_TRIP);
+        }
+    }
+
+    // Folds the iteration's segments away, so the journal does not fill the disk
+    @TearDown(Level.Iteration)
+    public void compactJournal() throws IOException {
+        journal.compact();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopService() throws IOException {
+        journal.stop();
+        try (Stream<Path> files = Files.walk(journalDir)) {
+            for (Path file : files.sorted(Comparator.reverseOrder()).toList()) {
+                Files.deleteIfExists(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public boolean holdAndRelease(Picker picker) {
+        SeatMap trip = trips[picker.random.nextInt(tripCount)];
+        int[] seats = picker.pick();
+        if (trip.hold(seats)) {
+            return trip.release(seats);
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean holdAndReleaseThroughService(Picker picker) {
+        Bus bus = buses[picker.random.nextInt(tripCount)];
+        List<Integer> seats = picker.pickList();
+        if (inventory.hold(bus.getId(), bus.getDate(), seats, "bench")) {
+            return inventory.release(bus.getId(), bus.getDate(), seats, "bench");
+        }
+        return false;
+    }
+
+    private static void set(Object target, String field, Object value) throws ReflectiveOperationException {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}
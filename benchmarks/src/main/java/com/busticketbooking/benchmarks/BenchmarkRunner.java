@@ -0,0 +1,180 @@
+package com.busticketbooking.benchmarks;
+
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Runs the benchmarks with the GC profiler and optionally checks them against a baseline.
+ *
+ * <pre>
+ * java -jar benchmarks.jar [include-regex] [--record baselines/NAME.tsv]
+ *                          [--baseline baselines/NAME.tsv] [--tolerance 0.10]
+ * </pre>
+ *
+ * Full JMH results are always written to jmh-result.json. A baseline is a TSV of
+ * benchmark, mode, score, unit and bytes allocated per operation, headed by the
+ * core count and JDK it was recorded on. With --baseline the run fails (exit code 1)
+ * when any benchmark is slower, or allocates more, than the baseline by more than
+ * the tolerance, or when the baseline comes from a machine with another core count.
+ * Benchmarks that run more threads than there are cores are neither recorded nor
+ * compared: their threads only take turns, so contention never shows.
+ * For any other JMH options use {@code java -cp benchmarks.jar org.openjdk.jmh.Main}.
+ */
+public final class BenchmarkRunner {
+
+    private static final String ALLOC_NORM = "gc.alloc.rate.norm";
+    // Allocation below this many bytes per op is noise (escape analysis varies between runs)
+    private static final double ALLOC_SLACK_BYTES = 16;
+    private static final String CORES = "# cores=";
+
+    private record Row(String mode, double score, String unit, double allocBytes, int threads) {
+    }
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws IOException, RunnerException {
+        String include = "com\\.busticketbooking\\..*Benchmark.*";
+        Path record = null;
+        Path baseline = null;
+        double tolerance = 0.10;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--record" -> record = Path.of(args[++i]);
+                case "--baseline" -> baseline = Path.of(args[++i]);
+                case "--tolerance" -> tolerance = Double.parseDouble(args[++i]);
+                default -> include = args[i];
+            }
+        }
+
+        ChainedOptionsBuilder options = new OptionsBuilder()
+                .include(include)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result("jmh-result.json");
+        Map<String, Row> results = summarize(new Runner(options.build()).run());
+        int cores = Runtime.getRuntime().availableProcessors();
+        results.entrySet().removeIf(entry -> {
+            if (entry.getValue().threads() <= cores) {
+                return false;
+            }
+            System.out.println("Skipping " + entry.getKey() + ": " + entry.getValue().threads()
+                    + " threads on " + cores + " cores");
+            return true;
+        });
+
+        if (record != null) {
+            write(record, results);
+            System.out.println("Recorded " + results.size() + " results to " + record);
+        }
+        if (baseline != null) {
+            int baselineCores = readCores(baseline);
+            if (baselineCores != cores) {
+                System.out.println("Baseline " + baseline + " was recorded on " + baselineCores
+                        + " cores and this machine has " + cores + "; record a baseline for this machine");
+                System.exit(1);
+            }
+            if (!compare(read(baseline), results, tolerance)) {
+                System.exit(1);
+            }
+        }
+    }
+
+    private static Map<String, Row> summarize(Collection<RunResult> runs) {
+        Map<String, Row> rows = new TreeMap<>();
+        for (RunResult run : runs) {
+            StringBuilder key = new StringBuilder(run.getParams().getBenchmark());
+            for (String param : run.getParams().getParamsKeys()) {
+                key.append(':').append(param).append('=').append(run.getParams().getParam(param));
+            }
+            Result<?> primary = run.getPrimaryResult();
+            Result<?> alloc = run.getSecondaryResults().get(ALLOC_NORM);
+            rows.put(key.toString(), new Row(run.getParams().getMode().shortLabel(), primary.getScore(),
+                    primary.getScoreUnit(), alloc != null ? alloc.getScore() : Double.NaN, run.getParams().getThreads()));
+        }
+        return rows;
+    }
+
+    private static boolean compare(Map<String, Row> baseline, Map<String, Row> current, double tolerance) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Row> entry : current.entrySet()) {
+            Row before = baseline.get(entry.getKey());
+            Row now = entry.getValue();
+            if (before == null || !before.unit().equals(now.unit())) {
+                System.out.println("No baseline for " + entry.getKey());
+                continue;
+            }
+            // Throughput: higher is better; every other mode reports time, where lower is better
+            boolean higherIsBetter = Mode.Throughput.shortLabel().equals(now.mode());
+            double change = (now.score() - before.score()) / before.score();
+            if (higherIsBetter ? change < -tolerance : change > tolerance) {
+                regressions.add(String.format(Locale.ROOT, "%s: %.3f -> %.3f %s (%+.1f%%)",
+                        entry.getKey(), before.score(), now.score(), now.unit(), change * 100));
+            }
+            if (!Double.isNaN(before.allocBytes()) && !Double.isNaN(now.allocBytes())
+                    && now.allocBytes() > before.allocBytes() * (1 + tolerance) + ALLOC_SLACK_BYTES) {
+                regressions.add(String.format(Locale.ROOT, "%s: allocation %.0f -> %.0f B/op",
+                        entry.getKey(), before.allocBytes(), now.allocBytes()));
+            }
+        }
+        if (regressions.isEmpty()) {
+            System.out.println("No regressions beyond " + Math.round(tolerance * 100) + "% of the baseline");
+            return true;
+        }
+        System.out.println("Regressions against the baseline:");
+        regressions.forEach(line -> System.out.println("  " + line));
+        return false;
+    }
+
+    private static void write(Path file, Map<String, Row> rows) throws IOException {
+        List<String> lines = new ArrayList<>();
+        lines.add(CORES + Runtime.getRuntime().availableProcessors() + " jdk=" + Runtime.version());
+        lines.add("# benchmark\tmode\tscore\tunit\tbytes/op");
+        rows.forEach((key, row) -> lines.add(String.format(Locale.ROOT, "%s\t%s\t%.6f\t%s\t%.1f",
+                key, row.mode(), row.score(), row.unit(), row.allocBytes())));
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        Files.write(file, lines);
+    }
+
+    private static Map<String, Row> read(Path file) throws IOException {
+        Map<String, Row> rows = new LinkedHashMap<>();
+        for (String line : Files.readAllLines(file)) {
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t");
+            rows.put(fields[0], new Row(fields[1], Double.parseDouble(fields[2]), fields[3], Double.parseDouble(fields[4]), 1));
+        }
+        return rows;
+    }
+
+    // 0 for a baseline without a core count, which then matches no machine
+    private static int readCores(Path file) throws IOException {
+        for (String line : Files.readAllLines(file)) {
+            if (line.startsWith(CORES)) {
+                return Integer.parseInt(line.substring(CORES.length()).split("\\s+")[0]);
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,170 @@
+package com.busticketbooking.benchmarks;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop HTTP load against a running backend: a crowd of slow bookers plus
+ * a few searchers. It shows whether searches stay fast while bookings are stuck
+ * on a slow store.
+ *
+ * <pre>
+ * # Slow store, platform threads, then the same with virtual threads:
+ * java -jar backend.jar --booking.store=memory --booking.store.memory.write-latency-ms=500 --mail.transport=local --spring.threads.virtual.enabled=false
+ * java -cp benchmarks.jar com.busticketbooking.benchmarks.LoadTest --bookers 400 --searchers 20 --seconds 30
+ * java -jar backend.jar --booking.store=memory --booking.store.memory.write-latency-ms=500 --mail.transport=local --spring.threads.virtual.enabled=true
+ * java -cp benchmarks.jar com.busticketbooking.benchmarks.LoadTest --bookers 400 --searchers 20 --seconds 30
+ * </pre>
+ *
+ * With 400 bookers on a 200-thread Tomcat pool, searches queue behind bookings.
+ * With virtual threads, search latency stays flat and bookings finish at roughly
+ * bookers / write latency per second.
+ *
+ * --url takes a comma-separated list to spread requests over the nodes of a
+ * cluster (see {@link LocalCluster}), as a round-robin load balancer would.
+ */
+public final class LoadTest {
+
+    // Each booking takes a fresh seat on a synthetic travel date so bookers never conflict
+    private static final int SEATS_PER_TRIP = 40;
+
+    private record Stats(String name, long[] latenciesMicros, int count, Map<Integer, Integer> statuses) {
+    }
+
+    private static final class Recorder {
+        private final String name;
+        private final long[] latencies = new long[2_000_000];
+        private final AtomicInteger count = new AtomicInteger();
+        private final Map<Integer, AtomicInteger> statuses = new ConcurrentHashMap<>();
+
+        Recorder(String name) {
+            this.name = name;
+        }
+
+        void record(long startNanos, int status) {
+            int i = count.getAndIncrement();
+            if (i < latencies.length) {
+                latencies[i] = (System.nanoTime() - startNanos) / 1000;
+            }
+            statuses.computeIfAbsent(status, s -> new AtomicInteger()).incrementAndGet();
+        }
+
+        Stats snapshot() {
+            int n = Math.min(count.get(), latencies.length);
+            Map<Integer, Integer> byStatus = new ConcurrentHashMap<>();
+            statuses.forEach((status, c) -> byStatus.put(status, c.get()));
+            return new Stats(name, Arrays.copyOf(latencies, n), count.get(), byStatus);
+        }
+    }
+
+    private LoadTest() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = "http://localhost:8080";
+        int bookers = 400;
+        int searchers = 20;
+        int seconds = 30;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--url" -> url = args[++i];
+                case "--bookers" -> bookers = Integer.parseInt(args[++i]);
+                case "--searchers" -> searchers = Integer.parseInt(args[++i]);
+                case "--seconds" -> seconds = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+        Recorder bookings = new Recorder("POST /api/bookings");
+        Recorder searches = new Recorder("GET /api/buses");
+        AtomicLong seatCounter = new AtomicLong();
+        long deadline = System.nanoTime() + Duration.ofSeconds(seconds).toNanos();
+        String[] bases = url.split(",");
+
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < bookers; i++) {
+                users.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        long n = seatCounter.getAndIncrement();
+                        String body = String.format(Locale.ROOT,
+                                "{\"userId\":\"load-%d\",\"email\":\"load@example.com\",\"busId\":\"1\",\"selectedSeats\":[%d],"
+                                        + "\"date\":\"L%d\"}",
+                                n % 1000, n % SEATS_PER_TRIP + 1, n / SEATS_PER_TRIP);
+                        HttpRequest request = HttpRequest.newBuilder(URI.create(bases[(int) (n % bases.length)].trim() + "/api/bookings"))
+                                .header("Content-Type", "application/json")
+                                .timeout(Duration.ofSeconds(30))
+                                .POST(HttpRequest.BodyPublishers.ofString(body))
+                                .build();
+                        send(client, request, bookings);
+                    }
+                    return null;
+                });
+            }
+            for (int i = 0; i < searchers; i++) {
+                String base = bases[i % bases.length].trim();
+                users.submit(() -> {
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(base + "/api/buses?from=Mumbai&to=Pune"))
+                            .timeout(Duration.ofSeconds(30))
+                            .GET()
+                            .build();
+                    while (System.nanoTime() < deadline) {
+                        send(client, request, searches);
+                    }
+                    return null;
+                });
+            }
+        }
+
+        System.out.printf(Locale.ROOT, "%d bookers, %d searchers, %ds against %s%n", bookers, searchers, seconds, url);
+        for (Stats stats : List.of(bookings.snapshot(), searches.snapshot())) {
+            print(stats, seconds);
+        }
+    }
+
+    private static void send(HttpClient client, HttpRequest request, Recorder recorder) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            status = client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode();
+        } catch (Exception e) {
+            // Timeouts and refused connections count as status 0
+            status = 0;
+        }
+        recorder.record(start, status);
+    }
+
+    private static void print(Stats stats, int seconds) {
+        long[] sorted = stats.latenciesMicros().clone();
+        Arrays.sort(sorted);
+        List<String> statuses = new ArrayList<>();
+        stats.statuses().forEach((status, count) -> statuses.add(status + "=" + count));
+        System.out.printf(Locale.ROOT, "%-20s %8.1f req/s  p50 %8.1f ms  p99 %8.1f ms  max %8.1f ms  %s%n",
+                stats.name(), stats.count() / (double) seconds,
+                percentile(sorted, 0.50), percentile(sorted, 0.99), percentile(sorted, 1.0), statuses);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return Double.NaN;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(p * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1000.0;
+    }
+}
@@ -0,0 +1,90 @@
+package com.busticketbooking.benchmarks;
+
+import com.busticketbooking.backend.BackendApplication;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.UUID;
+
+/**
+ * Several backend nodes in one JVM, sharing the embedded cluster coordinator,
+ * so partitioning, forwarding and handoffs can be tried on one machine.
+ *
+ * <pre>
+ * java -cp benchmarks.jar com.busticketbooking.benchmarks.LocalCluster --nodes 3 --base-port 8081
+ * java -cp benchmarks.jar com.busticketbooking.benchmarks.LoadTest --url http://localhost:8081,http://localhost:8082,http://localhost:8083
+ * </pre>
+ *
+ * Nodes use the memory booking store and local mail transport, and journal to
+ * data/cluster/node-N. Type a node number and Enter to stop that node (its
+ * partitions are handed to the others), "+" to start another, or "q" to quit.
+ */
+public final class LocalCluster {
+
+    private LocalCluster() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        int nodes = 3;
+        int basePort = 8081;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--nodes" -> nodes = Integer.parseInt(args[++i]);
+                case "--base-port" -> basePort = Integer.parseInt(args[++i]);
+                default -> throw new IllegalArgumentException("Unknown option " + args[i]);
+            }
+        }
+
+        String secret = UUID.randomUUID().toString();
+        List<ConfigurableApplicationContext> running = new ArrayList<>();
+        for (int n = 1; n <= nodes; n++) {
+            running.add(start(n, basePort, secret));
+        }
+        System.out.printf(Locale.ROOT, "%d nodes on ports %d-%d. Node number to stop it, + to add one, q to quit.%n",
+                nodes, basePort, basePort + nodes - 1);
+
+        BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+        String line;
+        while ((line = console.readLine()) != null && !line.trim().equals("q")) {
+            line = line.trim();
+            if (line.equals("+")) {
+                running.add(start(running.size() + 1, basePort, secret));
+            } else if (line.matches("\\d+")) {
+                int n = Integer.parseInt(line);
+                if (n >= 1 && n <= running.size() && running.get(n - 1) != null) {
+                    running.get(n - 1).close();
+                    running.set(n - 1, null);
+                }
+            }
+        }
+        for (ConfigurableApplicationContext context : running) {
+            if (context != null) {
+                context.close();
+            }
+        }
+    }
+
+    private static ConfigurableApplicationContext start(int n, int basePort, String secret) {
+        int port = basePort + n - 1;
+        return new SpringApplicationBuilder(BackendApplication.class)
+                .properties(
+                        "server.port=" + port,
+                        "cluster.coordinator=embedded",
+                        "cluster.name=local",
+                        "cluster.secret=" + secret,
+                        "cluster.node-id=node-" + n,
+                        "cluster.node-url=http://localhost:" + port,
+                        "booking.store=memory",
+                        "booking.journal.dir=data/cluster/node-" + n,
+                        "mail.transport=local",
+                        "firebase.warmup.enabled=false",
+                        // Every node's traffic comes from localhost
+                        "rate-limit.enabled=false")
+                .run();
+    }
+}
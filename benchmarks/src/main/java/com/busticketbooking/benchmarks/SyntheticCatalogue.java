@@ -0,0 +1,58 @@
+package com.busticketbooking.benchmarks;
+
+import com.busticketbooking.backend.model.Bus;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Deterministic trip catalogues for benchmarks. The same size and seed always
+ * produce the same trips, so runs on different machines and commits are comparable.
+ */
+public final class SyntheticCatalogue {
+
+    public static final int CITIES = 200;
+    public static final int DAYS = 30;
+    public static final LocalDate FIRST_DAY = LocalDate.of(2024, 1, 1);
+
+    private static final String[] TYPES = {
+            "AC Sleeper (2+1)", "Non-AC Seater (2+2)", "AC Volvo", "AC Sleeper", "Non-AC Sleeper"
+    };
+
+    private SyntheticCatalogue() {
+    }
+
+    public static String city(int index) {
+        return "City" + index;
+    }
+
+    public static String date(int day) {
+        return FIRST_DAY.plusDays(day).toString();
+    }
+
+    /**
+     * Trips spread over {@link #CITIES} cities and {@link #DAYS} days. Ids are "T0".."T{n-1}".
+     */
+    public static List<Bus> trips(int count, long seed) {
+        SplittableRandom random = new SplittableRandom(seed);
+        List<Bus> trips = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int from = random.nextInt(CITIES);
+            int to = (from + 1 + random.nextInt(CITIES - 1)) % CITIES;
+            int departure = random.nextInt(24 * 60);
+            int duration = 60 + random.nextInt(12 * 60);
+            int arrival = (departure + duration) % (24 * 60);
+            trips.add(new Bus("T" + i, "Operator " + random.nextInt(500), TYPES[random.nextInt(TYPES.length)],
+                    hhmm(departure), hhmm(arrival), (duration / 60) + "h " + (duration % 60) + "m",
+                    200 + random.nextInt(2800), random.nextInt(41), 3.0 + random.nextInt(21) / 10.0,
+                    city(from), city(to), date(random.nextInt(DAYS))));
+        }
+        return trips;
+    }
+
+    private static String hhmm(int minutes) {
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+}
@@ -5,13 +5,17 @@ const API_BASE_URL = import.meta.env.VITE_API_URL || 'https://zybus-5.onrender.c
 export const API_ENDPOINTS = {
     // Auth
     sendOtp: `${API_BASE_URL}/api/auth/send-otp`,
+    verifyOtp: `${API_BASE_URL}/api/auth/verify-otp`,
 
     // Buses
     searchBuses: (from, to, date) => `${API_BASE_URL}/api/buses?from=${from}&to=${to}&date=${date}`,
+    fareQuote: (busId, date) => `${API_BASE_URL}/api/buses/${busId}/fares${date ? `?date=${encodeURIComponent(date)}` : ''}`,
+    seatStream: (busId, date) => `${API_BASE_URL}/api/buses/${busId}/seats/stream${date ? `?date=${encodeURIComponent(date)}` : ''}`,
 
     // Bookings
     createBooking: `${API_BASE_URL}/api/bookings`,
-    getUserBookings: (userId) => `${API_BASE_URL}/api/bookings/user/${userId}`,
+    // Newest first; pass the previous response's X-Next-Cursor header to get the next page
+    getUserBookings: (userId, cursor) => `${API_BASE_URL}/api/bookings/user/${userId}${cursor ? `?cursor=${encodeURIComponent(cursor)}` : ''}`,
 
     // Payments (Razorpay)
     createPaymentOrder: `${API_BASE_URL}/api/payments/create-order`,
@@ -1,11 +1,9 @@
 import React, { useState, useEffect, useRef } from 'react';
 import { useLocation, useNavigate } from 'react-router-dom';
 import { useAuth } from '../context/AuthContext';
-import { db } from '../firebase';
 import { collection, addDoc, serverTimestamp } from 'firebase/firestore';
 import { sendBookingEmail } from '../services/emailService';
 import { createPaymentOrder, openRazorpayCheckout, verifyPayment } from '../services/paymentService';
-import { API_ENDPOINTS } from '../config/api';
 import jsPDF from 'jspdf';
 import html2canvas from 'html2canvas';
 
@@ -26,6 +24,9 @@ const BookingConfirmation = () => {
     const [discount, setDiscount] = useState(0);
 
     const { bus, selectedSeats } = location.state || {};
+    const date = location.state?.date || bus?.date || new Date().toISOString().split('T')[0];
+    // The server prices the order from its own quote; a newer quote replaces this one if fares change
+    const [fare, setFare] = useState(location.state?.fare || null);
 
     useEffect(() => {
         if (!bus || !selectedSeats) {
@@ -35,7 +36,7 @@ const BookingConfirmation = () => {
 
     if (!bus || !selectedSeats) return null;
 
-    const baseFare = selectedSeats.length * bus.price;
+    const baseFare = selectedSeats.reduce((sum, seatNum) => sum + (fare?.seatPrices?.[seatNum - 1] ?? bus.price), 0);
     const discountAmount = couponApplied ? Math.round(baseFare * discount) : 0;
     const totalFare = baseFare - discountAmount;
 
@@ -71,7 +72,14 @@ const BookingConfirmation = () => {
 
         try {
             // Step 1: Create payment order
-            const orderDetails = await createPaymentOrder(totalFare);
+            const orderDetails = await createPaymentOrder(totalFare, {
+                busId: bus.id,
+                date,
+                selectedSeats: selectedSeats,
+                userId: currentUser.uid,
+                email: currentUser.email,
+                couponCode: couponApplied ? couponCode.trim().toUpperCase() : undefined
+            });
 
             // Step 2: Open Razorpay checkout (shows PhonePe, GPay, Paytm UPI options)
             const paymentResult = await openRazorpayCheckout({
@@ -83,82 +91,32 @@ const BookingConfirmation = () => {
                 description: `${bus.name} - ${selectedSeats.length} seat(s)`
             });
 
-            // Step 3: Verify payment on backend
-            await verifyPayment(
+            // Step 3: Verify payment on backend (books the held seats)
+            const verification = await verifyPayment(
                 paymentResult.orderId,
                 paymentResult.paymentId,
-                paymentResult.signature
+                paymentResult.signature,
+                { busId: bus.id, date }
             );
 
-            // Step 4: Payment successful - now create booking
-            await confirmBooking(paymentResult.paymentId);
+            // Step 4: Payment successful - show the booking
+            await confirmBooking(verification.bookingId);
 
         } catch (error) {
             console.error("Payment failed:", error);
-            setPaymentError(error.message || 'Payment failed. Please try again.');
+            if (error.quote) {
+                setFare(error.quote);
+                setPaymentError('Fares have changed. Please review the new total and pay again.');
+            } else {
+                setPaymentError(error.message || 'Payment failed. Please try again.');
+            }
             setLoading(false);
         }
     };
 
-    const confirmBooking = async (paymentId) => {
+    // The server booked the held seats while verifying the payment; never book them again from here
+    const confirmBooking = async (newBookingId) => {
         try {
-            let newBookingId = "ZB" + Math.floor(Math.random() * 1000000);
-            let savedToBackend = false;
-
-            try {
-                const bookingRequest = {
-                    userId: currentUser.uid,
-                    email: currentUser.email,
-                    busId: bus.id,
-                    selectedSeats: selectedSeats,
-                    totalAmount: totalFare,
-                    paymentId: paymentId,
-                    date: bus.date || new Date().toISOString().split('T')[0]
-                };
-
-                const response = await fetch(API_ENDPOINTS.createBooking, {
-                    method: 'POST',
-                    headers: { 'Content-Type': 'application/json' },
-                    body: JSON.stringify(bookingRequest)
-                });
-
-                if (response.ok) {
-                    const data = await response.json();
-                    newBookingId = data.bookingId;
-                    savedToBackend = true;
-                }
-            } catch (apiError) {
-                console.warn("Backend not available, saving to Firestore directly", apiError);
-            }
-
-            // If backend unavailable, save directly to Firestore
-            if (!savedToBackend) {
-                try {
-                    const { doc, setDoc } = await import('firebase/firestore');
-                    await setDoc(doc(db, 'bookings', newBookingId), {
-                        id: newBookingId,
-                        userId: currentUser.uid,
-                        email: currentUser.email,
-                        busId: bus.id,
-                        busName: bus.name,
-                        busType: bus.type,
-                        departure: bus.from || bus.departure,
-                        arrival: bus.to || bus.arrival,
-                        departureTime: bus.departure || '22:00',
-                        arrivalTime: bus.arrival || '06:00',
-                        selectedSeats: selectedSeats,
-                        totalAmount: totalFare,
-                        paymentId: paymentId,
-                        date: bus.date || new Date().toISOString().split('T')[0],
-                        status: 'CONFIRMED',
-                        bookedAt: new Date().toISOString()
-                    });
-                    console.log("Booking saved to Firestore:", newBookingId);
-                } catch (firestoreError) {
-                    console.error("Failed to save to Firestore:", firestoreError);
-                }
-            }
-
             setBookingId(newBookingId);
 
             // Send confirmation email
@@ -179,9 +137,7 @@ const BookingConfirmation = () => {
 
             console.log("Booking Confirmed:", newBookingId);
         } catch (error) {
-            console.error("Booking failed", error);
-            const fallbackId = "ZB" + Math.floor(Math.random() * 1000000);
-            setBookingId(fallbackId);
+            console.error("Booking confirmation failed", error);
         } finally {
             setLoading(false);
         }
@@ -7,33 +7,24 @@ import { API_ENDPOINTS } from '../config/api';
 const ForgotPassword = () => {
     const [email, setEmail] = useState('');
     const [otp, setOtp] = useState('');
-    const [generatedOtp, setGeneratedOtp] = useState('');
     const [step, setStep] = useState(1); // 1: Enter Email, 2: Enter OTP, 3: Success
     const [loading, setLoading] = useState(false);
     const [error, setError] = useState('');
     const [message, setMessage] = useState('');
     const navigate = useNavigate();
 
-    const generateOtp = () => {
-        return Math.floor(100000 + Math.random() * 900000).toString();
-    };
-
     const sendOtpEmail = async (e) => {
         e.preventDefault();
         setLoading(true);
         setError('');
 
         try {
-            // Generate OTP
-            const newOtp = generateOtp();
-            setGeneratedOtp(newOtp);
-
-            // Try to send via backend first
+            // Try to send via backend first (the backend generates the OTP)
             try {
                 const response = await fetch(API_ENDPOINTS.sendOtp, {
                     method: 'POST',
                     headers: { 'Content-Type': 'application/json' },
-                    body: JSON.stringify({ email, otp: newOtp })
+                    body: JSON.stringify({ email })
                 });
 
                 if (response.ok) {
@@ -62,17 +53,28 @@ const ForgotPassword = () => {
         }
     };
 
-    const verifyOtp = (e) => {
+    const verifyOtp = async (e) => {
         e.preventDefault();
         setError('');
 
-        if (otp === generatedOtp) {
-            setMessage('OTP Verified! You can now reset your password.');
-            setStep(3);
-            // In a real app, you would redirect to password reset page
-            // For now, using Firebase's reset link that was sent
-        } else {
-            setError('Invalid OTP. Please try again.');
+        try {
+            const response = await fetch(API_ENDPOINTS.verifyOtp, {
+                method: 'POST',
+                headers: { 'Content-Type': 'application/json' },
+                body: JSON.stringify({ email, otp })
+            });
+
+            if (response.ok) {
+                setMessage('OTP Verified! You can now reset your password.');
+                setStep(3);
+                // In a real app, you would redirect to password reset page
+                // For now, using Firebase's reset link that was sent
+            } else {
+                const data = await response.json().catch(() => ({}));
+                setError(data.error || 'Invalid OTP. Please try again.');
+            }
+        } catch (err) {
+            setError('Could not verify OTP: ' + err.message);
         }
     };
 
@@ -10,6 +10,8 @@ const MyProfile = () => {
     const navigate = useNavigate();
     const [orders, setOrders] = useState([]);
     const [loading, setLoading] = useState(true);
+    const [nextCursor, setNextCursor] = useState(null);
+    const [loadingMore, setLoadingMore] = useState(false);
     const [activeTab, setActiveTab] = useState('orders');
 
     useEffect(() => {
@@ -26,14 +28,9 @@ const MyProfile = () => {
                 try {
                     const response = await fetch(API_ENDPOINTS.getUserBookings(currentUser.uid));
                     if (response.ok) {
-                        const data = await response.json();
-                        // Sort by date: latest first
-                        data.sort((a, b) => {
-                            const dateA = new Date(a.bookedAt || a.createdAt || 0);
-                            const dateB = new Date(b.bookedAt || b.createdAt || 0);
-                            return dateB - dateA;
-                        });
-                        setOrders(data);
+                        // The server pages history newest first
+                        setOrders(await response.json());
+                        setNextCursor(response.headers.get('X-Next-Cursor'));
                         setLoading(false);
                         return;
                     }
@@ -69,6 +66,22 @@ const MyProfile = () => {
         fetchOrders();
     }, [currentUser, navigate]);
 
+    const loadMoreOrders = async () => {
+        setLoadingMore(true);
+        try {
+            const response = await fetch(API_ENDPOINTS.getUserBookings(currentUser.uid, nextCursor));
+            if (response.ok) {
+                const data = await response.json();
+                setOrders((previous) => [...previous, ...data]);
+                setNextCursor(response.headers.get('X-Next-Cursor'));
+            }
+        } catch (err) {
+            console.error("Error fetching more orders:", err);
+        } finally {
+            setLoadingMore(false);
+        }
+    };
+
     if (!currentUser) return null;
 
     return (
@@ -301,6 +314,23 @@ const MyProfile = () => {
                                     </div>
                                 </div>
                             ))}
+                            {nextCursor && (
+                                <button
+                                    onClick={loadMoreOrders}
+                                    disabled={loadingMore}
+                                    style={{
+                                        backgroundColor: 'var(--accent-color)',
+                                        color: 'black',
+                                        border: 'none',
+                                        padding: '0.75rem 1.5rem',
+                                        fontWeight: 'bold',
+                                        cursor: loadingMore ? 'wait' : 'pointer',
+                                        alignSelf: 'center'
+                                    }}
+                                >
+                                    {loadingMore ? 'Loading...' : 'Load more'}
+                                </button>
+                            )}
                         </div>
                     )}
                 </div>
@@ -1,22 +1,52 @@
-import React, { useState } from 'react';
+import React, { useEffect, useState } from 'react';
 import { useLocation, useNavigate } from 'react-router-dom';
 import { useAuth } from '../context/AuthContext';
+import { API_ENDPOINTS } from '../config/api';
 
 const TOTAL_SEATS = 40;
-// Mock booked seats
-const BOOKED_SEATS = [2, 5, 8, 12, 18, 19, 25];
 
 const SeatSelection = () => {
     const location = useLocation();
     const navigate = useNavigate();
     const { currentUser } = useAuth();
     const [selectedSeats, setSelectedSeats] = useState([]);
+    // Held or booked by anyone, kept current by the seat stream
+    const [takenSeats, setTakenSeats] = useState([]);
+    // Per-seat prices from the server; they change as the bus fills up
+    const [fare, setFare] = useState(null);
     const bus = location.state?.bus;
+    const date = location.state?.date || bus?.date;
+
+    useEffect(() => {
+        if (!bus) return undefined;
+        const loadFare = () => fetch(API_ENDPOINTS.fareQuote(bus.id, date))
+            .then(response => (response.ok ? response.json() : null))
+            .then(quote => quote && setFare(quote))
+            .catch(() => {});
+        loadFare();
+        const source = new EventSource(API_ENDPOINTS.seatStream(bus.id, date));
+        source.addEventListener('snapshot', (event) => {
+            const seatMap = JSON.parse(event.data);
+            setTakenSeats([...seatMap.held, ...seatMap.booked]);
+        });
+        source.addEventListener('delta', (event) => {
+            const delta = JSON.parse(event.data);
+            const nowTaken = [...delta.held, ...delta.booked];
+            setTakenSeats(taken => [...taken.filter(s => !delta.free.includes(s) && !nowTaken.includes(s)), ...nowTaken]);
+            // Someone else got there first
+            setSelectedSeats(selected => selected.filter(s => !nowTaken.includes(s)));
+            loadFare();
+        });
+        return () => source.close();
+    }, [bus?.id, date]);
 
     if (!bus) return <div className="container">Invalid Bus Selection</div>;
 
+    const seatPrice = (seatNum) => fare?.seatPrices?.[seatNum - 1] ?? bus.price;
+    const total = selectedSeats.reduce((sum, seatNum) => sum + seatPrice(seatNum), 0);
+
     const toggleSeat = (seatNum) => {
-        if (BOOKED_SEATS.includes(seatNum)) return;
+        if (takenSeats.includes(seatNum)) return;
         if (selectedSeats.includes(seatNum)) {
             setSelectedSeats(selectedSeats.filter(s => s !== seatNum));
         } else {
@@ -31,13 +61,13 @@ const SeatSelection = () => {
             return;
         }
         // Proceed to confirmation
-        navigate('/booking-confirmation', { state: { bus, selectedSeats } });
+        navigate('/booking-confirmation', { state: { bus, selectedSeats, date, fare } });
     };
 
     return (
         <div className="container" style={{ marginTop: '1.5rem', textAlign: 'center', paddingBottom: selectedSeats.length > 0 ? '120px' : '2rem' }}>
             <h2 style={{ fontSize: 'clamp(1.1rem, 4vw, 1.5rem)' }}>Select Seats for {bus.name}</h2>
-            <p style={{ color: 'var(--text-secondary)', fontSize: 'clamp(0.85rem, 2.5vw, 1rem)' }}>{bus.type} - ₹{bus.price}/seat</p>
+            <p style={{ color: 'var(--text-secondary)', fontSize: 'clamp(0.85rem, 2.5vw, 1rem)' }}>{bus.type} - {fare && fare.minPrice !== fare.maxPrice ? `₹${fare.minPrice}–₹${fare.maxPrice}` : `₹${fare?.minPrice ?? bus.price}`}/seat</p>
 
             <div style={{
                 display: 'grid',
@@ -52,12 +82,13 @@ const SeatSelection = () => {
                 justifyContent: 'center'
             }}>
                 {Array.from({ length: TOTAL_SEATS }, (_, i) => i + 1).map(seatNum => {
-                    const isBooked = BOOKED_SEATS.includes(seatNum);
+                    const isBooked = takenSeats.includes(seatNum);
                     const isSelected = selectedSeats.includes(seatNum);
 
                     return (
                         <div
                             key={seatNum}
+                            title={isBooked ? undefined : `₹${seatPrice(seatNum)}`}
                             onClick={() => toggleSeat(seatNum)}
                             style={{
                                 width: 'clamp(36px, 8vw, 45px)',
@@ -126,7 +157,7 @@ const SeatSelection = () => {
                             Seats: {selectedSeats.sort((a, b) => a - b).join(', ')}
                         </div>
                         <div style={{ fontSize: 'clamp(1rem, 3vw, 1.2rem)', fontWeight: 'bold' }}>
-                            Total: ₹{selectedSeats.length * bus.price}
+                            Total: ₹{total}
                         </div>
                     </div>
                     <button
@@ -2,20 +2,24 @@ import { API_ENDPOINTS } from '../config/api';
 
 /**
  * Create a payment order on the backend
- * @param {number} amount - Amount in INR
+ * @param {number} amount - Amount in INR, as shown to the user; the server charges its own fare quote
+ * @param {Object} seatHold - { busId, date, selectedSeats, userId, email, couponCode }; seats are held until payment is verified
  * @returns {Promise<Object>} Order details including orderId and keyId
+ * @throws {Error} with a quote property when the fare has changed since it was shown
  */
-export const createPaymentOrder = async (amount) => {
+export const createPaymentOrder = async (amount, seatHold = {}) => {
     try {
         const response = await fetch(API_ENDPOINTS.createPaymentOrder, {
             method: 'POST',
             headers: { 'Content-Type': 'application/json' },
-            body: JSON.stringify({ amount })
+            body: JSON.stringify({ amount, ...seatHold })
         });
 
         if (!response.ok) {
             const errorData = await response.json().catch(() => ({}));
-            throw new Error(errorData.error || 'Failed to create payment order. Please try again.');
+            const error = new Error(errorData.error || 'Failed to create payment order. Please try again.');
+            error.quote = errorData.quote;
+            throw error;
         }
 
         return response.json();
@@ -32,17 +36,23 @@ export const createPaymentOrder = async (amount) => {
  * @param {string} orderId - Razorpay order ID
  * @param {string} paymentId - Razorpay payment ID
  * @param {string} signature - Razorpay signature
- * @returns {Promise<Object>} Verification result
+ * @param {Object} trip - busId and date of the order, so the server holding its seats gets the request
+ * @returns {Promise<Object>} Verification result with the bookingId of the held seats
+ * @throws {Error} with a status property (e.g. hold_expired) when the payment did not get its seats
  */
-export const verifyPayment = async (orderId, paymentId, signature) => {
+export const verifyPayment = async (orderId, paymentId, signature, trip = {}) => {
     const response = await fetch(API_ENDPOINTS.verifyPayment, {
         method: 'POST',
         headers: { 'Content-Type': 'application/json' },
-        body: JSON.stringify({ orderId, paymentId, signature })
+        body: JSON.stringify({ orderId, paymentId, signature, ...trip })
     });
 
     if (!response.ok) {
-        throw new Error('Payment verification failed');
+        // 409 hold_expired / 500 booking_failed: paid but no seats; the server has recorded a refund
+        const errorData = await response.json().catch(() => ({}));
+        const error = new Error(errorData.error || 'Payment verification failed');
+        error.status = errorData.status;
+        throw error;
     }
 
     return response.json();